@@ -0,0 +1,146 @@
+package com.vanlang.bookstore.cache;
+
+import com.vanlang.bookstore.dto.BookCard;
+import com.vanlang.bookstore.service.AfterCommit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cache các kệ sách trang chủ (nổi bật / mới về / bán chạy / mới nhất)
+ * và thông tin hiển thị từng cuốn theo id (giỏ hàng của mọi session dùng chung).
+ * Bị xoá mỗi khi có sách được thêm / sửa / xoá.
+ * version() đổi theo mỗi lần xoá: dùng làm validator (ETag / Last-Modified) cho trang catalog.
+ * Đổi tồn kho (bán, huỷ đơn) không xoá cache: BookCard không mang tồn kho; chỉ kệ lọc "còn hàng"
+ * và version tồn kho riêng của từng cuốn (trang chi tiết) bị ảnh hưởng.
+ */
+@Component
+public class CatalogCache {
+
+    public record Stats(long hits, long misses, int size) {}
+
+    // kệ chỉ lấy sách còn hàng (stock > 0): bán hết / nhập lại làm đổi thành viên kệ
+    private static final String IN_STOCK_SHELF = "latest:";
+
+    private final TtlCache<String, List<BookCard>> shelves;
+    private final TtlCache<Long, BookCard> cards;
+
+    // epoch millis, luôn tăng; khởi tạo theo giờ start nên không trùng ETag giữa 2 lần chạy
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+    // bookId -> thời điểm (millis, luôn tăng) tồn kho của cuốn đó đổi lần cuối trong tiến trình này (chưa đổi = 0)
+    private final Map<Long, Long> stockVersions = new ConcurrentHashMap<>();
+
+    public CatalogCache(@Value("${bookstore.catalog-cache.ttl-seconds:300}") long ttlSeconds,
+                        @Value("${bookstore.catalog-cache.max-entries:64}") int maxEntries,
+                        @Value("${bookstore.catalog-cache.max-books:5000}") int maxBooks) {
+        this.shelves = new TtlCache<>(Duration.ofSeconds(ttlSeconds), maxEntries);
+        this.cards = new TtlCache<>(Duration.ofSeconds(ttlSeconds), maxBooks);
+    }
+
+    public List<BookCard> shelf(String key, Supplier<List<BookCard>> loader) {
+        return shelves.get(key, k -> List.copyOf(loader.get()));
+    }
+
+    /**
+     * Thông tin hiển thị của các cuốn theo id; cuốn chưa có trong cache nạp bằng 1 lần gọi loader cho tất cả.
+     * Cuốn không còn tồn tại thì không có trong kết quả.
+     */
+    public Map<Long, BookCard> cards(Collection<Long> ids, Function<Collection<Long>, List<BookCard>> loader) {
+        Map<Long, BookCard> out = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            cards.getIfPresent(id).ifPresentOrElse(c -> out.put(id, c), () -> missing.add(id));
+        }
+        if (!missing.isEmpty()) {
+            for (BookCard c : loader.apply(missing)) {
+                cards.put(c.id(), c);
+                out.put(c.id(), c);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Xoá toàn bộ cache ngay, và nếu đang trong transaction thì xoá thêm lần nữa sau commit
+     * (tránh request khác nạp lại dữ liệu cũ trong lúc chưa commit).
+     */
+    public void invalidateAll() {
+        shelves.invalidateAll();
+        cards.invalidateAll();
+        bumpVersion();
+        AfterCommit.run(() -> {
+            shelves.invalidateAll();
+            cards.invalidateAll();
+            bumpVersion();
+        });
+    }
+
+    /**
+     * Tồn kho của các cuốn này vừa giảm: kệ "còn hàng" đang chứa 1 trong số đó bị bỏ (có thể vừa bán hết),
+     * các kệ / thẻ sách khác giữ nguyên. Làm lại sau commit như invalidateAll().
+     */
+    public void stockDecreased(Collection<Long> ids) {
+        Runnable task = () -> {
+            shelves.invalidateIf((key, shelf) -> key.startsWith(IN_STOCK_SHELF)
+                    && shelf.stream().anyMatch(c -> ids.contains(c.id())));
+            bumpStockVersions(ids);
+        };
+        task.run();
+        AfterCommit.run(task);
+    }
+
+    /** Tồn kho của các cuốn này vừa tăng (huỷ đơn, nhập lại): sách hết hàng có thể quay lại kệ "còn hàng" */
+    public void stockIncreased(Collection<Long> ids) {
+        Runnable task = () -> {
+            shelves.invalidateIf((key, shelf) -> key.startsWith(IN_STOCK_SHELF));
+            bumpStockVersions(ids);
+        };
+        task.run();
+        AfterCommit.run(task);
+    }
+
+    /** Version tồn kho riêng của 1 cuốn: trang chi tiết (ETag, page cache) đưa vào validator */
+    public long stockVersion(Long bookId) {
+        return stockVersions.getOrDefault(bookId, 0L);
+    }
+
+    /**
+     * Chỉ đổi version tồn kho của các cuốn này (ETag / page cache trang chi tiết), giữ nguyên kệ sách và version chung.
+     * Dùng khi số còn bán hiển thị thay đổi mà DB không đổi (VD giữ hàng lúc checkout).
+     */
+    public void markStockChanged(Collection<Long> ids) {
+        bumpStockVersions(ids);
+    }
+
+    /** Thời điểm (millis) dữ liệu sách thay đổi lần cuối trong tiến trình này */
+    public long version() {
+        return version.get();
+    }
+
+    private void bumpStockVersions(Collection<Long> ids) {
+        long now = System.currentTimeMillis();
+        for (Long id : ids) stockVersions.merge(id, now, (prev, t) -> Math.max(prev + 1, t));
+    }
+
+    private void bumpVersion() {
+        long now = System.currentTimeMillis();
+        version.accumulateAndGet(now, (prev, t) -> Math.max(prev + 1, t));
+    }
+
+    public long getHits() { return shelves.hitCount(); }
+    public long getMisses() { return shelves.missCount(); }
+
+    public Stats stats() {
+        return new Stats(shelves.hitCount(), shelves.missCount(), shelves.size());
+    }
+}
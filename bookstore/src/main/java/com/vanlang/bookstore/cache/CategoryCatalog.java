@@ -0,0 +1,103 @@
+package com.vanlang.bookstore.cache;
+
+import com.vanlang.bookstore.model.Category;
+import com.vanlang.bookstore.repository.CategoryRepository;
+import com.vanlang.bookstore.service.AfterCommit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ảnh chụp (snapshot) bất biến của danh sách danh mục cho sidebar / form / tra slug.
+ * Danh mục gần như không đổi nên chỉ nạp lại khi CategoryService create / update / delete.
+ * Các Category trong snapshot là bản sao rời (không có proxy / collection lazy).
+ */
+@Component
+@RequiredArgsConstructor
+public class CategoryCatalog {
+
+    /** version (epoch millis) tăng mỗi lần danh mục thay đổi */
+    public record Snapshot(long version,
+                           List<Category> sorted,
+                           Map<Long, Category> byId,
+                           Map<String, Category> bySlug) {}
+
+    private final CategoryRepository categoryRepository;
+
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+    private volatile Snapshot snapshot;
+
+    public Snapshot snapshot() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            s = load();
+        }
+        return s;
+    }
+
+    /** Danh sách sắp theo tên (sidebar, select box) */
+    public List<Category> all() {
+        return snapshot().sorted();
+    }
+
+    public Optional<Category> findById(Long id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(snapshot().byId().get(id));
+    }
+
+    public Optional<Category> findBySlug(String slug) {
+        return slug == null ? Optional.empty() : Optional.ofNullable(snapshot().bySlug().get(slug));
+    }
+
+    /** Version hiện tại (không nạp snapshot, không chạm DB) */
+    public long version() {
+        return version.get();
+    }
+
+    /** Gọi sau khi ghi danh mục: bỏ snapshot hiện tại (sau commit), lần đọc sau sẽ nạp lại */
+    public void invalidate() {
+        bumpVersion();
+        snapshot = null;
+        AfterCommit.run(() -> {
+            bumpVersion();
+            snapshot = null;
+        });
+    }
+
+    private void bumpVersion() {
+        version.accumulateAndGet(System.currentTimeMillis(), (prev, t) -> Math.max(prev + 1, t));
+    }
+
+    private synchronized Snapshot load() {
+        if (snapshot != null) return snapshot;
+
+        long v = version.get();
+        List<Category> sorted = new ArrayList<>();
+        Map<Long, Category> byId = new HashMap<>();
+        Map<String, Category> bySlug = new HashMap<>();
+        for (Category c : categoryRepository.findAllByOrderByNameAsc()) {
+            Category copy = new Category();
+            copy.setId(c.getId());
+            copy.setName(c.getName());
+            copy.setSlug(c.getSlug());
+            copy.setDescription(c.getDescription());
+            sorted.add(copy);
+            byId.put(copy.getId(), copy);
+            if (copy.getSlug() != null) bySlug.put(copy.getSlug(), copy);
+        }
+        Snapshot s = new Snapshot(v, Collections.unmodifiableList(sorted),
+                Collections.unmodifiableMap(byId), Collections.unmodifiableMap(bySlug));
+
+        // Nếu trong lúc nạp có ghi danh mục thì không giữ bản vừa nạp
+        if (v == version.get()) {
+            snapshot = s;
+        }
+        return s;
+    }
+}
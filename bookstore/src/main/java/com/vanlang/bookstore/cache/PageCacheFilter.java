@@ -0,0 +1,202 @@
+package com.vanlang.bookstore.cache;
+
+import com.vanlang.bookstore.service.CartService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.support.SessionFlashMapManager;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Cache nguyên trang HTML cho khách chưa đăng nhập: /, /books/**, /categories/**, /search.
+ * - Chỉ cache / phục vụ khi: GET, ẩn danh, giỏ trống, không có flash message, không phải conditional GET
+ *   -> badge giỏ hàng (0) và trạng thái đăng nhập giống hệt nhau cho mọi khách
+ * - CSRF token được cắt khỏi trang khi lưu, lúc trả trang thì điền token của request hiện tại
+ * - Mục cache ghi kèm version catalog + danh mục (trang chi tiết: thêm version tồn kho của cuốn đó);
+ *   sách / danh mục / tồn kho đổi thì bản cũ tự hết hiệu lực
+ * Filter chạy sau Spring Security (cần SecurityContext + CSRF token), trước DispatcherServlet.
+ */
+@Component
+public class PageCacheFilter extends OncePerRequestFilter {
+
+    private static final Pattern CACHEABLE = Pattern.compile("^/($|books(/.*)?$|categories/.+|search$)");
+    private static final Pattern BOOK_DETAIL = Pattern.compile("^/books/(\\d{1,18})$");
+    private static final String FLASH_MAPS = SessionFlashMapManager.class.getName() + ".FLASH_MAPS";
+
+    /** Trang đã render; html cắt theo vị trí CSRF token */
+    private record Page(String contentType, String[] parts, long catalogVersion, long categoryVersion, long stockVersion) {}
+
+    private final TtlCache<String, Page> pages;
+    private final boolean enabled;
+    private final int maxBodyBytes;
+    private final CatalogCache catalogCache;
+    private final CategoryCatalog categoryCatalog;
+
+    public PageCacheFilter(@Value("${bookstore.page-cache.enabled:true}") boolean enabled,
+                           @Value("${bookstore.page-cache.ttl-seconds:60}") long ttlSeconds,
+                           @Value("${bookstore.page-cache.max-entries:500}") int maxEntries,
+                           @Value("${bookstore.page-cache.max-body-kb:512}") int maxBodyKb,
+                           CatalogCache catalogCache,
+                           CategoryCatalog categoryCatalog) {
+        this.enabled = enabled;
+        this.pages = new TtlCache<>(Duration.ofSeconds(ttlSeconds), maxEntries);
+        this.maxBodyBytes = maxBodyKb * 1024;
+        this.catalogCache = catalogCache;
+        this.categoryCatalog = categoryCatalog;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled
+                || !"GET".equals(request.getMethod())
+                || !CACHEABLE.matcher(request.getRequestURI().substring(request.getContextPath().length())).find();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!isSharedView(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String key = key(request);
+        Long bookId = bookDetailId(request);
+        Page page = pages.getIfPresent(key).orElse(null);
+        if (page != null
+                && page.catalogVersion() == catalogCache.version()
+                && page.categoryVersion() == categoryCatalog.version()
+                && page.stockVersion() == stockVersion(bookId)) {
+            write(request, response, page);
+            return;
+        }
+
+        // Miss: lấy version TRƯỚC khi render, dữ liệu đổi giữa chừng thì lần sau sẽ miss lại
+        long catalogVersion = catalogCache.version();
+        long categoryVersion = categoryCatalog.version();
+        long stockVersion = stockVersion(bookId);
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        wrapper.setHeader("X-Page-Cache", "MISS");
+        chain.doFilter(request, wrapper);
+        try {
+            Page rendered = capture(request, wrapper, catalogVersion, categoryVersion, stockVersion);
+            if (rendered != null) pages.put(key, rendered);
+        } finally {
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    public void invalidateAll() {
+        pages.invalidateAll();
+    }
+
+    public int size() {
+        return pages.size();
+    }
+
+    // ===== helpers =====
+
+    // Trang này có giống hệt nhau với mọi khách ẩn danh không
+    private boolean isSharedView(HttpServletRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+            return false; // để ConditionalGet trả 304
+        }
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)) {
+            return false;
+        }
+        HttpSession session = request.getSession(false);
+        if (session != null && session.getAttribute(FLASH_MAPS) instanceof Collection<?> c && !c.isEmpty()) return false;
+        // giỏ khách trống: chưa có cookie giỏ, hoặc cookie đếm (CartService ghi mỗi lần sửa giỏ) = 0; không đọc CartStore
+        if (WebUtils.getCookie(request, CartService.CART_COOKIE) == null) return true;
+        Cookie count = WebUtils.getCookie(request, CartService.CART_COUNT_COOKIE);
+        return count != null && "0".equals(count.getValue());
+    }
+
+    private static String key(HttpServletRequest request) {
+        StringBuilder sb = new StringBuilder(request.getRequestURI());
+        // sắp tham số để ?a=1&b=2 và ?b=2&a=1 dùng chung 1 mục
+        // tên / giá trị mã hoá lại: ?q=x%26page%3D5 không được trùng khoá với ?q=x&page=5 (đầu độc cache)
+        Map<String, String[]> params = new TreeMap<>(request.getParameterMap());
+        char sep = '?';
+        for (var e : params.entrySet()) {
+            String name = URLEncoder.encode(e.getKey(), StandardCharsets.UTF_8);
+            for (String v : e.getValue()) {
+                sb.append(sep).append(name).append('=').append(URLEncoder.encode(v, StandardCharsets.UTF_8));
+                sep = '&';
+            }
+        }
+        return sb.toString();
+    }
+
+    // Trang chi tiết sách hiện số lượng còn lại -> gắn thêm version tồn kho của cuốn đó
+    private static Long bookDetailId(HttpServletRequest request) {
+        var m = BOOK_DETAIL.matcher(request.getRequestURI().substring(request.getContextPath().length()));
+        return m.matches() ? Long.valueOf(m.group(1)) : null;
+    }
+
+    private long stockVersion(Long bookId) {
+        return (bookId == null) ? 0L : catalogCache.stockVersion(bookId);
+    }
+
+    private Page capture(HttpServletRequest request, ContentCachingResponseWrapper wrapper,
+                         long catalogVersion, long categoryVersion, long stockVersion) {
+        String contentType = wrapper.getContentType();
+        if (wrapper.getStatus() != HttpServletResponse.SC_OK
+                || contentType == null || !contentType.startsWith("text/html")
+                || wrapper.getContentSize() == 0 || wrapper.getContentSize() > maxBodyBytes) {
+            return null;
+        }
+        String html = new String(wrapper.getContentAsByteArray(), StandardCharsets.UTF_8);
+
+        String token = usedCsrfToken(request, html);
+        String[] parts = (token == null) ? new String[]{html} : html.split(Pattern.quote(token), -1);
+        return new Page(contentType, parts, catalogVersion, categoryVersion, stockVersion);
+    }
+
+    private void write(HttpServletRequest request, HttpServletResponse response, Page page) throws IOException {
+        String html;
+        if (page.parts().length == 1) {
+            html = page.parts()[0];
+        } else {
+            CsrfToken token = (CsrfToken) request.getAttribute(CsrfToken.class.getName());
+            html = String.join(token == null ? "" : token.getToken(), page.parts());
+        }
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        response.setContentType(page.contentType());
+        response.setContentLength(body.length);
+        response.setHeader("X-Page-Cache", "HIT");
+        response.getOutputStream().write(body);
+    }
+
+    // Token chỉ được sinh khi template có dùng (form POST) -> không tự tạo session cho trang không có form
+    private static String usedCsrfToken(HttpServletRequest request, String html) {
+        CsrfToken token = (CsrfToken) request.getAttribute(CsrfToken.class.getName());
+        if (token == null || !html.contains("name=\"" + token.getParameterName() + "\"")) return null;
+        String value = token.getToken();
+        return html.contains(value) ? value : null;
+    }
+}
@@ -0,0 +1,125 @@
+package com.vanlang.bookstore.cache;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Cache trong bộ nhớ: có TTL + giới hạn số phần tử + đếm hit/miss.
+ * Dùng cho dữ liệu đọc nhiều, ghi ít (kệ sách trang chủ, ...).
+ */
+public class TtlCache<K, V> {
+
+    private record Entry<V>(V value, long expiresAt) {
+        boolean expired(long now) { return now >= expiresAt; }
+    }
+
+    private final Map<K, Entry<V>> map = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Tăng mỗi lần invalidate -> lần load bắt đầu trước đó sẽ không được ghi đè vào cache
+    private final AtomicLong generation = new AtomicLong();
+
+    public TtlCache(Duration ttl, int maxSize) {
+        if (ttl == null || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("TTL phải > 0");
+        }
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize phải > 0");
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = maxSize;
+    }
+
+    /** Lấy từ cache, nếu không có / hết hạn thì gọi loader rồi lưu lại */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        long now = System.nanoTime();
+        Entry<V> e = map.get(key);
+        if (e != null && !e.expired(now)) {
+            hits.incrementAndGet();
+            return e.value();
+        }
+        misses.incrementAndGet();
+
+        long gen = generation.get();
+        V value = loader.apply(key);
+        if (value != null && gen == generation.get()) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    public Optional<V> getIfPresent(K key) {
+        Entry<V> e = map.get(key);
+        if (e != null && !e.expired(System.nanoTime())) {
+            hits.incrementAndGet();
+            return Optional.of(e.value());
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    public void put(K key, V value) {
+        map.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+        if (map.size() > maxSize) evict();
+    }
+
+    /**
+     * Lưu nếu chưa có (hoặc đã hết hạn), nguyên tử.
+     * @return giá trị đang có trong cache; null = đã lưu value
+     */
+    public V putIfAbsent(K key, V value) {
+        long now = System.nanoTime();
+        Entry<V> fresh = new Entry<>(value, now + ttlNanos);
+        Entry<V> current = map.compute(key, (k, e) -> (e != null && !e.expired(now)) ? e : fresh);
+        if (current != fresh) return current.value();
+        if (map.size() > maxSize) evict();
+        return null;
+    }
+
+    public void invalidate(K key) {
+        generation.incrementAndGet();
+        map.remove(key);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        map.clear();
+    }
+
+    /** Bỏ các phần tử thoả điều kiện (key, value) */
+    public void invalidateIf(BiPredicate<? super K, ? super V> test) {
+        generation.incrementAndGet();
+        map.entrySet().removeIf(en -> test.test(en.getKey(), en.getValue().value()));
+    }
+
+    public int size() { return map.size(); }
+    public long hitCount() { return hits.get(); }
+    public long missCount() { return misses.get(); }
+
+    /** Bỏ phần tử hết hạn trước; nếu vẫn quá size thì bỏ phần tử sắp hết hạn nhất */
+    private void evict() {
+        long now = System.nanoTime();
+        map.entrySet().removeIf(en -> en.getValue().expired(now));
+        while (map.size() > maxSize) {
+            K oldest = null;
+            long min = Long.MAX_VALUE;
+            for (Map.Entry<K, Entry<V>> en : map.entrySet()) {
+                if (en.getValue().expiresAt() < min) {
+                    min = en.getValue().expiresAt();
+                    oldest = en.getKey();
+                }
+            }
+            if (oldest == null) break;
+            map.remove(oldest);
+        }
+    }
+}
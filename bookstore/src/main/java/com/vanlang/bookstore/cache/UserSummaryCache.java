@@ -0,0 +1,37 @@
+package com.vanlang.bookstore.cache;
+
+import com.vanlang.bookstore.dto.UserSummary;
+import com.vanlang.bookstore.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Tên đăng nhập (principal) -> UserSummary, TTL ngắn: đầu trang / checkout / đặt đơn không phải
+ * tìm lại User theo email-hoặc-username mỗi request. Không tìm thấy cũng được cache (Optional rỗng).
+ * Sửa tài khoản (hồ sơ, địa chỉ mặc định, admin) -> invalidateAll; instance khác thấy thay đổi sau tối đa 1 TTL.
+ */
+@Component
+public class UserSummaryCache {
+
+    private final TtlCache<String, Optional<UserSummary>> summaries;
+    private final UserRepository userRepository;
+
+    public UserSummaryCache(@Value("${bookstore.user-summary.ttl-seconds:30}") long ttlSeconds,
+                            @Value("${bookstore.user-summary.max-entries:10000}") int maxEntries,
+                            UserRepository userRepository) {
+        this.summaries = new TtlCache<>(Duration.ofSeconds(ttlSeconds), maxEntries);
+        this.userRepository = userRepository;
+    }
+
+    public Optional<UserSummary> find(String login) {
+        if (login == null || login.isBlank()) return Optional.empty();
+        return summaries.get(login, l -> userRepository.findByEmailOrUsername(l).map(UserSummary::of));
+    }
+
+    public void invalidateAll() {
+        summaries.invalidateAll();
+    }
+}
@@ -0,0 +1,197 @@
+package com.vanlang.bookstore.cart;
+
+import com.vanlang.bookstore.cache.TtlCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Đứng trước CartStore:
+ * - Đọc: near-cache theo khoá giỏ (TTL ngắn), hụt thì nạp từ store; trong TTL không hỏi DB
+ * - Ghi: update() đổi bản trong bộ nhớ ngay và giữ lại thay đổi; flusher cứ flush-interval-ms ghi mỗi giỏ bẩn 1 lần
+ *   -> bấm thêm / sửa liên tục chỉ thành 1 lần ghi xuống store
+ * - Lần ghi kèm version đã đọc: node khác ghi trước (bản ở đây đã cũ) thì nạp lại rồi chạy lại các thay đổi
+ *   trên bản mới -> không ghi đè, không hồi sinh dòng node khác đã xoá (đã mua)
+ * Giỏ đang chờ ghi luôn được đọc từ bản trong bộ nhớ (kể cả khi near-cache đã hết hạn / bị đẩy ra).
+ * Nhiều instance: node khác thấy thay đổi chậm tối đa near-ttl-seconds + flush-interval-ms.
+ */
+@Component
+public class CartCache {
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    /** Giỏ trên node này: lines = base (store ở version) + các thay đổi chưa ghi */
+    private static final class Entry {
+        volatile CartLines lines;
+        List<CartLines.Line> base;
+        long version;
+        final List<Consumer<CartLines>> unsaved = new ArrayList<>();
+
+        Entry(CartStore.Snapshot snapshot) {
+            rebase(snapshot);
+        }
+
+        // Theo bản mới trong store rồi chạy lại các thay đổi chưa ghi
+        void rebase(CartStore.Snapshot snapshot) {
+            base = snapshot.lines();
+            version = snapshot.version();
+            CartLines next = CartLines.of(base);
+            unsaved.forEach(change -> change.accept(next));
+            lines = next;
+        }
+    }
+
+    private final CartStore store;
+    private final TtlCache<String, Entry> near;
+    private final Map<String, Entry> dirty = new ConcurrentHashMap<>();
+    private final long flushIntervalMs;
+    private final int anonymousDays;
+
+    private ScheduledExecutorService flusher;
+
+    public CartCache(CartStore store,
+                     @Value("${bookstore.cart.near-ttl-seconds:2}") long nearTtlSeconds,
+                     @Value("${bookstore.cart.near-max-entries:10000}") int nearMaxEntries,
+                     @Value("${bookstore.cart.flush-interval-ms:200}") long flushIntervalMs,
+                     @Value("${bookstore.cart.anonymous-days:30}") int anonymousDays) {
+        this.store = store;
+        this.near = new TtlCache<>(Duration.ofSeconds(nearTtlSeconds), nearMaxEntries);
+        this.flushIntervalMs = flushIntervalMs;
+        this.anonymousDays = anonymousDays;
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cart-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(this::purgeAnonymous, 1, 60, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (!dirty.isEmpty()) {
+            System.out.println("WARN: " + dirty.size() + " cart(s) not saved on shutdown");
+        }
+    }
+
+    /** Giỏ theo khoá (luôn khác null), chỉ để đọc: muốn sửa thì qua update() */
+    public CartLines get(String cartKey) {
+        return entry(cartKey).lines;
+    }
+
+    /**
+     * Sửa giỏ: áp dụng ngay trên node này, ghi xuống store ở lần flush kế tiếp.
+     * change có thể chạy lại (trên bản mới nạp) nếu node khác ghi xen vào, nên chỉ mô tả ý định (thêm / bỏ sách X).
+     * Trả về giỏ sau khi sửa.
+     */
+    public CartLines update(String cartKey, Consumer<CartLines> change) {
+        while (true) {
+            Entry e = entry(cartKey);
+            synchronized (e) {
+                CartLines next = CartLines.of(e.lines.lines());
+                change.accept(next);
+                if (next.lines().equals(e.lines.lines())) return e.lines;
+                Entry owner = dirty.putIfAbsent(cartKey, e);
+                if (owner != null && owner != e) continue; // bản khác của giỏ đang chờ ghi: sửa trên bản đó
+                e.lines = next;
+                e.unsaved.add(change);
+                return next;
+            }
+        }
+    }
+
+    /** Ghi mọi giỏ đang chờ; giỏ ghi lỗi được giữ lại cho lần sau */
+    public void flush() {
+        for (Map.Entry<String, Entry> d : dirty.entrySet()) {
+            try {
+                save(d.getKey(), d.getValue());
+            } catch (Exception ex) {
+                System.out.println("WARN: cart flush failed for " + d.getKey() + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    // ===== helpers =====
+
+    private Entry entry(String cartKey) {
+        Entry pending = dirty.get(cartKey);
+        if (pending != null) return pending;
+        var cached = near.getIfPresent(cartKey);
+        if (cached.isPresent()) return cached.get();
+
+        Entry loaded = new Entry(store.load(cartKey));
+        Entry current = near.putIfAbsent(cartKey, loaded); // 2 request cùng nạp: chỉ 1 bản thắng
+        return (current != null) ? current : loaded;
+    }
+
+    // Chụp dưới khoá của giỏ, ghi ngoài khoá (request vẫn sửa được trong lúc ghi), rồi bỏ các thay đổi đã ghi
+    private void save(String cartKey, Entry e) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            List<CartLines.Line> base;
+            List<CartLines.Line> after;
+            long version;
+            int count;
+            synchronized (e) {
+                if (e.unsaved.isEmpty()) {
+                    dirty.remove(cartKey, e);
+                    return;
+                }
+                base = e.base;
+                version = e.version;
+                after = e.lines.lines();
+                count = e.unsaved.size();
+                if (after.equals(base)) { // chạy lại trên bản mới thì không còn gì khác (VD sách đã bị bỏ ở node kia)
+                    e.unsaved.clear();
+                    dirty.remove(cartKey, e);
+                    return;
+                }
+            }
+            if (store.save(cartKey, version, base, after)) {
+                synchronized (e) {
+                    e.base = after;
+                    e.version = version + 1;
+                    e.unsaved.subList(0, count).clear();
+                    if (e.unsaved.isEmpty()) dirty.remove(cartKey, e);
+                }
+                near.put(cartKey, e);
+                return;
+            }
+            CartStore.Snapshot fresh = store.load(cartKey); // node khác vừa ghi
+            synchronized (e) {
+                e.rebase(fresh);
+            }
+        }
+        System.out.println("WARN: cart " + cartKey + " still conflicting after " + MAX_ATTEMPTS + " attempts, retrying later");
+    }
+
+    private void purgeAnonymous() {
+        try {
+            store.purgeAnonymous(LocalDateTime.now().minusDays(anonymousDays));
+        } catch (Exception e) {
+            System.out.println("WARN: anonymous cart cleanup failed: " + e.getMessage());
+        }
+    }
+}
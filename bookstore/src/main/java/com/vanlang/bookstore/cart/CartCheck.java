@@ -0,0 +1,54 @@
+package com.vanlang.bookstore.cart;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Kết quả kiểm tra lại giỏ với DB (CartService.revalidate): các dòng đã đổi giá / hết hàng / ngừng bán,
+ * kèm tồn kho hiện tại của các dòng còn lại (để giữ hàng lúc checkout không phải đọc lại).
+ * Giá mới đã được cập nhật vào giỏ và dòng ngừng bán đã bị bỏ khi nhận được kết quả này.
+ */
+public record CartCheck(List<Change> changes, Map<Long, Integer> stock) {
+
+    public static final CartCheck EMPTY = new CartCheck(List.of(), Map.of());
+
+    public enum Kind { PRICE_CHANGED, OUT_OF_STOCK, NOT_ENOUGH_STOCK, UNAVAILABLE }
+
+    public record Change(long bookId, String title, Kind kind,
+                         long oldPrice, long newPrice, int requested, int available) {}
+
+    /** Không có gì thay đổi so với lúc thêm vào giỏ */
+    public boolean clean() {
+        return changes.isEmpty();
+    }
+
+    /** Các sách không đủ hàng cho số lượng trong giỏ */
+    public Set<Long> shortIds() {
+        return changes.stream()
+                .filter(c -> c.kind() == Kind.OUT_OF_STOCK || c.kind() == Kind.NOT_ENOUGH_STOCK)
+                .map(Change::bookId)
+                .collect(Collectors.toSet());
+    }
+
+    /** Thông báo cho người mua, mỗi thay đổi 1 dòng */
+    public List<String> messages() {
+        List<String> out = new ArrayList<>(changes.size());
+        for (Change c : changes) {
+            String title = (c.title() != null) ? "\"" + c.title() + "\"" : "Sách #" + c.bookId();
+            out.add(switch (c.kind()) {
+                case PRICE_CHANGED -> title + " đổi giá từ " + vnd(c.oldPrice()) + " thành " + vnd(c.newPrice());
+                case OUT_OF_STOCK -> title + " đã hết hàng";
+                case NOT_ENOUGH_STOCK -> title + " chỉ còn " + c.available() + " cuốn (giỏ có " + c.requested() + ")";
+                case UNAVAILABLE -> title + " đã ngừng bán, đã bỏ khỏi giỏ";
+            });
+        }
+        return out;
+    }
+
+    private static String vnd(long amount) {
+        return String.format("%,d₫", amount).replace(',', '.');
+    }
+}
@@ -0,0 +1,202 @@
+package com.vanlang.bookstore.cart;
+
+import com.vanlang.bookstore.pricing.PriceEngine;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Nội dung giỏ hàng dạng gọn: bookId -> số lượng + giá bán đã chốt (đồng),
+ * 3 mảng nguyên thuỷ theo thứ tự thêm vào (~20 byte / dòng thay vì cả entity Book kèm description).
+ * Lưu bền ở CartStore, bản đang dùng nằm trong CartCache; tên / ảnh... lấy từ CatalogCache lúc render.
+ * Tổng số cuốn / tổng tiền cộng trừ dần theo từng thay đổi.
+ *
+ * Thêm / sửa / xoá O(1): index bookId -> ô (transient, dựng lại khi cần);
+ * xoá chỉ đánh dấu ô trống (quantity = 0), dồn mảng khi ô trống nhiều hơn ô dùng.
+ * Thread-safe: mọi thao tác khoá trên chính giỏ (CartCache chụp giỏ để ghi trong lúc request khác đang đọc).
+ */
+public final class CartLines implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    /** 1 dòng giỏ (bản chụp, không đổi theo giỏ) */
+    public record Line(long bookId, int quantity, long unitPrice) {}
+
+    private long[] bookIds = new long[4];
+    private int[] quantities = new int[4];
+    private long[] unitPrices = new long[4];
+    private int end;   // số ô đã dùng, kể cả ô đã xoá
+    private int size;  // số dòng còn lại
+
+    private int totalItems;
+    private long totalPrice;
+
+    private transient Map<Long, Integer> index;
+
+    /** Dựng giỏ từ các dòng đã lưu (CartStore) */
+    public static CartLines of(List<Line> lines) {
+        CartLines cart = new CartLines();
+        for (Line l : lines) cart.add(l.bookId(), l.quantity(), l.unitPrice());
+        return cart;
+    }
+
+    /** Thêm quantity cuốn (đã có thì cộng dồn); giá chốt lại theo unitPrice mới */
+    public synchronized void add(long bookId, int quantity, long unitPrice) {
+        if (quantity <= 0) return;
+        Integer slot = index().get(bookId);
+        int i;
+        if (slot == null) {
+            grow();
+            i = end++;
+            bookIds[i] = bookId;
+            index.put(bookId, i);
+            size++;
+        } else {
+            i = slot;
+            untally(i);
+            quantity += quantities[i];
+        }
+        quantities[i] = quantity;
+        unitPrices[i] = unitPrice;
+        tally(i);
+    }
+
+    /** Đặt số lượng; <= 0 thì bỏ dòng. Sách chưa có trong giỏ thì bỏ qua */
+    public synchronized void setQuantity(long bookId, int quantity) {
+        Integer i = index().get(bookId);
+        if (i == null) return;
+        if (quantity <= 0) {
+            removeAt(bookId, i);
+            return;
+        }
+        untally(i);
+        quantities[i] = quantity;
+        tally(i);
+    }
+
+    /** Đổi giá đã chốt của 1 dòng (giá trong DB vừa đổi); false nếu không có dòng / giá không đổi */
+    public synchronized boolean reprice(long bookId, long unitPrice) {
+        Integer i = index().get(bookId);
+        if (i == null || unitPrices[i] == unitPrice) return false;
+        untally(i);
+        unitPrices[i] = unitPrice;
+        tally(i);
+        return true;
+    }
+
+    public synchronized boolean remove(long bookId) {
+        Integer i = index().get(bookId);
+        if (i == null) return false;
+        removeAt(bookId, i);
+        return true;
+    }
+
+    public synchronized void removeAll(Collection<Long> ids) {
+        for (Long id : ids) {
+            if (id != null) remove(id);
+        }
+    }
+
+    public synchronized void clear() {
+        end = 0;
+        size = 0;
+        totalItems = 0;
+        totalPrice = 0L;
+        if (index != null) index.clear();
+    }
+
+    public synchronized int size() { return size; }
+    public synchronized boolean isEmpty() { return size == 0; }
+
+    /** Các dòng theo thứ tự thêm vào */
+    public synchronized List<Line> lines() {
+        List<Line> out = new ArrayList<>(size);
+        for (int i = 0; i < end; i++) {
+            if (quantities[i] > 0) out.add(new Line(bookIds[i], quantities[i], unitPrices[i]));
+        }
+        return out;
+    }
+
+    public synchronized int quantityOf(long bookId) {
+        Integer i = index().get(bookId);
+        return (i == null) ? 0 : quantities[i];
+    }
+
+    public synchronized int totalItems() { return totalItems; }
+    public synchronized long totalPrice() { return totalPrice; }
+
+    // ===== helpers =====
+
+    private Map<Long, Integer> index() {
+        if (index == null) {
+            index = new HashMap<>(Math.max(16, size * 2));
+            for (int i = 0; i < end; i++) {
+                if (quantities[i] > 0) index.put(bookIds[i], i);
+            }
+        }
+        return index;
+    }
+
+    private void removeAt(long bookId, int i) {
+        untally(i);
+        quantities[i] = 0;
+        index.remove(bookId);
+        size--;
+        if (size == 0) {
+            end = 0;
+        } else if (end - size > size) {
+            compact();
+        }
+    }
+
+    // Dồn các ô còn dùng lên đầu, giữ thứ tự; mỗi ô trống chỉ bị dồn 1 lần -> O(1) khấu hao
+    private void compact() {
+        int j = 0;
+        for (int i = 0; i < end; i++) {
+            if (quantities[i] <= 0) continue;
+            if (i != j) {
+                bookIds[j] = bookIds[i];
+                quantities[j] = quantities[i];
+                unitPrices[j] = unitPrices[i];
+                if (index != null) index.put(bookIds[j], j);
+            }
+            j++;
+        }
+        end = j;
+    }
+
+    private void tally(int i) {
+        totalItems += quantities[i];
+        totalPrice = PriceEngine.add(totalPrice, PriceEngine.lineTotal(unitPrices[i], quantities[i]));
+    }
+
+    private void untally(int i) {
+        totalItems -= quantities[i];
+        totalPrice -= PriceEngine.lineTotal(unitPrices[i], quantities[i]);
+    }
+
+    private void grow() {
+        if (end < bookIds.length) return;
+        if (end - size > 0) {
+            compact();
+            if (end < bookIds.length) return;
+        }
+        int n = bookIds.length * 2;
+        bookIds = Arrays.copyOf(bookIds, n);
+        quantities = Arrays.copyOf(quantities, n);
+        unitPrices = Arrays.copyOf(unitPrices, n);
+    }
+
+    // Serialize trong lúc tab khác đang sửa -> khoá cùng monitor, bỏ ô trống trước khi ghi
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        compact();
+        out.defaultWriteObject();
+    }
+}
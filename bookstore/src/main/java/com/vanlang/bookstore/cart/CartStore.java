@@ -0,0 +1,30 @@
+package com.vanlang.bookstore.cart;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Nơi lưu bền giỏ hàng, dùng chung cho mọi instance (không cần sticky session, restart không mất giỏ).
+ * Khoá giỏ: "u:" + tên đăng nhập, hoặc "a:" + id trong cookie với khách chưa đăng nhập (xem CartService).
+ * Mỗi giỏ có version tăng 1 sau mỗi lần ghi: node đọc bản cũ không ghi đè được thay đổi của node khác.
+ * Không gọi trực tiếp từ request: đi qua CartCache (near-cache + gom ghi).
+ */
+public interface CartStore {
+
+    /** Giỏ đã lưu: các dòng theo thứ tự thêm vào + version (0 = chưa có giỏ) */
+    record Snapshot(List<CartLines.Line> lines, long version) {
+        public static final Snapshot EMPTY = new Snapshot(List.of(), 0L);
+    }
+
+    /** Version rồi tới các dòng: dòng không bao giờ cũ hơn version trả về */
+    Snapshot load(String cartKey);
+
+    /**
+     * Ghi phần khác nhau giữa before và after (từng dòng) nếu giỏ vẫn đang ở version; version tăng 1.
+     * false = node khác vừa ghi, không đổi gì: nạp lại rồi làm lại thay đổi.
+     */
+    boolean save(String cartKey, long version, List<CartLines.Line> before, List<CartLines.Line> after);
+
+    /** Xoá giỏ khách vãng lai không đụng tới từ trước thời điểm before; trả về số dòng đã xoá */
+    int purgeAnonymous(LocalDateTime before);
+}
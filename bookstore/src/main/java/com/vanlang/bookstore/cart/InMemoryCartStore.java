@@ -0,0 +1,51 @@
+package com.vanlang.bookstore.cart;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CartStore trong bộ nhớ (bookstore.cart.store=memory): cho test / chạy 1 instance, restart là mất giỏ.
+ * Ghi cả giỏ dưới khoá của map (compute) nên không cần diff từng dòng như JdbcCartStore.
+ */
+@Component
+@ConditionalOnProperty(name = "bookstore.cart.store", havingValue = "memory")
+public class InMemoryCartStore implements CartStore {
+
+    private record Saved(List<CartLines.Line> lines, long version, LocalDateTime updatedAt) {}
+
+    private final Map<String, Saved> carts = new ConcurrentHashMap<>();
+
+    @Override
+    public Snapshot load(String cartKey) {
+        Saved saved = carts.get(cartKey);
+        return (saved == null) ? Snapshot.EMPTY : new Snapshot(saved.lines(), saved.version());
+    }
+
+    @Override
+    public boolean save(String cartKey, long version, List<CartLines.Line> before, List<CartLines.Line> after) {
+        boolean[] saved = {false};
+        carts.compute(cartKey, (k, current) -> {
+            long currentVersion = (current == null) ? 0L : current.version();
+            if (currentVersion != version) return current;
+            saved[0] = true;
+            return new Saved(List.copyOf(after), version + 1, LocalDateTime.now());
+        });
+        return saved[0];
+    }
+
+    @Override
+    public int purgeAnonymous(LocalDateTime before) {
+        int[] removed = {0};
+        carts.entrySet().removeIf(e -> {
+            boolean old = e.getKey().startsWith("a:") && e.getValue().updatedAt().isBefore(before);
+            if (old) removed[0] += e.getValue().lines().size();
+            return old;
+        });
+        return removed[0];
+    }
+}
@@ -0,0 +1,116 @@
+package com.vanlang.bookstore.cart;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CartStore trên DB (mặc định), 1 dòng / món + 1 dòng version / giỏ.
+ * Bảng carts / cart_items tạo bằng db/migration/V1__cart_store.sql (chạy trước khi deploy, app không tự tạo bảng).
+ * Ghi (1 transaction): tăng version nếu còn đúng version đã đọc (khoá dòng carts -> các node ghi lần lượt),
+ * rồi chỉ chèn / sửa / xoá các dòng đã đổi. Dòng node khác vừa xoá (đã mua) không bị chèn lại.
+ * Không giữ khoá ngoại tới books: sách bị xoá thì dòng giỏ tự bị bỏ qua lúc hiển thị.
+ */
+@Component
+@ConditionalOnProperty(name = "bookstore.cart.store", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcCartStore implements CartStore {
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+
+    public JdbcCartStore(JdbcTemplate jdbc, PlatformTransactionManager transactionManager) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public Snapshot load(String cartKey) {
+        // đọc version trước: dòng mới hơn version thì lần ghi sau tự thấy lệch
+        List<Long> v = jdbc.queryForList("SELECT version FROM carts WHERE cart_key = ?", Long.class, cartKey);
+        long version = v.isEmpty() ? 0L : v.get(0);
+        List<CartLines.Line> lines = jdbc.query(
+                "SELECT book_id, quantity, unit_price FROM cart_items WHERE cart_key = ? ORDER BY line_no",
+                (rs, n) -> new CartLines.Line(rs.getLong(1), rs.getInt(2), rs.getLong(3)), cartKey);
+        return new Snapshot(lines, version);
+    }
+
+    @Override
+    public boolean save(String cartKey, long version, List<CartLines.Line> before, List<CartLines.Line> after) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Boolean saved = tx.execute(s -> {
+            if (!bumpVersion(cartKey, version, now)) return false;
+
+            Map<Long, CartLines.Line> old = new HashMap<>();
+            for (CartLines.Line l : before) old.put(l.bookId(), l);
+            List<CartLines.Line> inserts = new ArrayList<>();
+            List<Object[]> updates = new ArrayList<>();
+            for (CartLines.Line l : after) {
+                CartLines.Line prev = old.remove(l.bookId());
+                if (prev == null) {
+                    inserts.add(l);
+                } else if (!prev.equals(l)) {
+                    updates.add(new Object[]{l.quantity(), l.unitPrice(), now, cartKey, l.bookId()});
+                }
+            }
+            if (!old.isEmpty()) {
+                List<Object[]> deletes = new ArrayList<>(old.size());
+                for (Long id : old.keySet()) deletes.add(new Object[]{cartKey, id});
+                jdbc.batchUpdate("DELETE FROM cart_items WHERE cart_key = ? AND book_id = ?", deletes);
+            }
+            if (!updates.isEmpty()) {
+                jdbc.batchUpdate("UPDATE cart_items SET quantity = ?, unit_price = ?, updated_at = ? "
+                        + "WHERE cart_key = ? AND book_id = ?", updates);
+            }
+            if (!inserts.isEmpty()) {
+                // món mới xếp sau mọi dòng đang có (kể cả dòng node khác vừa thêm)
+                Integer last = jdbc.queryForObject(
+                        "SELECT MAX(line_no) FROM cart_items WHERE cart_key = ?", Integer.class, cartKey);
+                int lineNo = (last == null) ? 0 : last + 1;
+                List<Object[]> rows = new ArrayList<>(inserts.size());
+                for (CartLines.Line l : inserts) {
+                    rows.add(new Object[]{cartKey, l.bookId(), l.quantity(), l.unitPrice(), lineNo++, now});
+                }
+                jdbc.batchUpdate("INSERT INTO cart_items (cart_key, book_id, quantity, unit_price, line_no, updated_at) "
+                        + "VALUES (?, ?, ?, ?, ?, ?)", rows);
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(saved);
+    }
+
+    @Override
+    public int purgeAnonymous(LocalDateTime before) {
+        Timestamp t = Timestamp.valueOf(before);
+        Integer removed = tx.execute(s -> {
+            // giỏ không có dòng carts (tạo trước khi có version) cũng bị dọn
+            int lines = jdbc.update("DELETE FROM cart_items WHERE cart_key LIKE 'a:%' "
+                    + "AND cart_key NOT IN (SELECT cart_key FROM carts WHERE updated_at >= ?)", t);
+            jdbc.update("DELETE FROM carts WHERE cart_key LIKE 'a:%' AND updated_at < ?", t);
+            return lines;
+        });
+        return (removed == null) ? 0 : removed;
+    }
+
+    // version 0 = chưa có dòng carts: node khác chèn trước -> trùng khoá = lệch version
+    private boolean bumpVersion(String cartKey, long version, Timestamp now) {
+        if (version == 0L) {
+            try {
+                return jdbc.update("INSERT INTO carts (cart_key, version, updated_at) VALUES (?, 1, ?)", cartKey, now) == 1;
+            } catch (DuplicateKeyException e) {
+                return false;
+            }
+        }
+        return jdbc.update("UPDATE carts SET version = version + 1, updated_at = ? WHERE cart_key = ? AND version = ?",
+                now, cartKey, version) == 1;
+    }
+}
@@ -31,6 +31,7 @@ public class SecurityConfig {
                                 "/register",
                                 "/search",
                                 "/books/**",
+                                "/cart/**",          // khách chưa đăng nhập vẫn có giỏ (cookie), gộp vào tài khoản khi login
                                 "/policy/**",
                                 "/favicon.ico",
                                 "/css/**", "/js/**", "/images/**", "/uploads/**",
@@ -42,7 +43,7 @@ public class SecurityConfig {
                         .requestMatchers("/admin/**").hasRole("ADMIN")
 
                         // Authenticated
-                        .requestMatchers("/cart/**", "/checkout/**", "/orders/**", "/profile/**").authenticated()
+                        .requestMatchers("/checkout/**", "/orders/**", "/profile/**").authenticated()
 
                         .anyRequest().authenticated()
                 )
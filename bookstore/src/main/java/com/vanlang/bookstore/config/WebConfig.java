@@ -1,19 +1,102 @@
 package com.vanlang.bookstore.config;
 
+import com.vanlang.bookstore.controller.HeaderModelInterceptor;
+import com.vanlang.bookstore.service.UploadStorage;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
 
-import java.nio.file.Path;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.function.Function;
 
+/**
+ * Phục vụ /css, /images (classpath) và /uploads (đĩa).
+ * - URL có hash nội dung trong tên file -> Cache-Control: public, max-age=1 năm, immutable
+ *   + /css, /images: hash do Spring tự thêm khi render @{...} (VersionResourceResolver)
+ *   + /uploads: hash có sẵn trong tên file lúc upload (UploadStorage)
+ * - URL cũ không hash -> no-cache, trình duyệt hỏi lại bằng ETag / Last-Modified (304)
+ * Cả hai đều hỗ trợ Range (ResourceHttpRequestHandler).
+ */
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    // tên-<md5 32 hex>.ext (ContentVersionStrategy)
+    private static final String STATIC_FINGERPRINT = "{file:[\\w.-]+-[0-9a-f]{32}\\.\\w+}";
+    // {id}-<hash 16 hex>.ext hoặc {id}-<hash>-{width}.jpg (ảnh thu nhỏ)
+    private static final String UPLOAD_FINGERPRINT =
+            "{file:[\\w.-]+-[0-9a-f]{" + UploadStorage.HASH_LENGTH + "}(?:-\\d+)?\\.\\w+}";
+
+    private static final CacheControl IMMUTABLE =
+            CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePublic();
+
+    // ETag yếu từ thời điểm sửa + kích thước: không phải đọc cả file để băm
+    private static final Function<Resource, String> ETAG = resource -> {
+        try {
+            return "W/\"" + Long.toHexString(resource.lastModified())
+                    + "-" + Long.toHexString(resource.contentLength()) + "\"";
+        } catch (IOException e) {
+            return null;
+        }
+    };
+
+    private final HeaderModelInterceptor headerModelInterceptor;
+
+    public WebConfig(HeaderModelInterceptor headerModelInterceptor) {
+        this.headerModelInterceptor = headerModelInterceptor;
+    }
+
+    /** Đầu trang (giỏ, người đăng nhập) tính lười, 1 lần / request; file tĩnh không cần */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(headerModelInterceptor)
+                .excludePathPatterns("/css/**", "/images/**", "/uploads/**", "/js/**", "/webjars/**", "/favicon.ico");
+    }
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        Path uploadDir = Path.of("uploads").toAbsolutePath().normalize();
+        staticDir(registry, "css");
+        staticDir(registry, "images");
+
+        String uploadDir = "file:" + UploadStorage.ROOT + "/";
+        registry.addResourceHandler("/uploads/*/" + UPLOAD_FINGERPRINT)
+                .addResourceLocations(uploadDir)
+                .setCacheControl(IMMUTABLE)
+                .setEtagGenerator(ETAG);
         registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:" + uploadDir + "/")
-                .setCachePeriod(0); // dev
+                .addResourceLocations(uploadDir)
+                .setCacheControl(REVALIDATE)
+                .setEtagGenerator(ETAG);
+    }
+
+    private void staticDir(ResourceHandlerRegistry registry, String dir) {
+        String location = "classpath:/static/" + dir + "/";
+        // file đã có hash trong URL (ảnh trong thư mục con: /images/books/...)
+        registry.addResourceHandler("/" + dir + "/" + STATIC_FINGERPRINT, "/" + dir + "/*/" + STATIC_FINGERPRINT)
+                .addResourceLocations(location)
+                .setCacheControl(IMMUTABLE)
+                .setEtagGenerator(ETAG)
+                .resourceChain(true)
+                .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
+        // URL không hash; resolver này cũng là nơi ResourceUrlProvider lấy URL có hash cho @{...}
+        registry.addResourceHandler("/" + dir + "/**")
+                .addResourceLocations(location)
+                .setCacheControl(REVALIDATE)
+                .setEtagGenerator(ETAG)
+                .resourceChain(true)
+                .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
+    }
+
+    /** Viết lại link @{/css/...} trong Thymeleaf thành link có hash */
+    @Bean
+    public ResourceUrlEncodingFilter resourceUrlEncodingFilter() {
+        return new ResourceUrlEncodingFilter();
     }
 }
@@ -1,20 +1,20 @@
 package com.vanlang.bookstore.controller;
 
+import com.vanlang.bookstore.cache.CategoryCatalog;
+import com.vanlang.bookstore.dto.BookCard;
 import com.vanlang.bookstore.model.Book;
 import com.vanlang.bookstore.model.Category;
-import com.vanlang.bookstore.repository.CategoryRepository;
 import com.vanlang.bookstore.service.BookService;
-import com.vanlang.bookstore.service.CartService;
+import com.vanlang.bookstore.service.StockReservationService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.util.List;
@@ -25,8 +25,9 @@ import java.util.List;
 public class BookController {
 
     private final BookService bookService;
-    private final CategoryRepository categoryRepository;
-    private final CartService cartService;
+    private final CategoryCatalog categoryCatalog;
+    private final ConditionalGet conditionalGet;
+    private final StockReservationService stockReservations;
 
     // ===== Helper: sort an toàn =====
     private Sort buildSort(String sort) {
@@ -38,6 +39,11 @@ public class BookController {
         };
     }
 
+    // ===== Helper: "Mới nhất" (id desc) dùng keyset; link cũ dạng ?page=N vẫn chạy offset =====
+    private boolean useKeyset(String sort, int page) {
+        return "latest".equals(sort) && page == 0;
+    }
+
     // ===== Helper: nếu page vượt tổng trang -> điều hướng về trang cuối =====
     private String redirectIfOutOfRange(Page<?> pageObj, String basePath, int size, String sort) {
         if (pageObj.getTotalPages() > 0 && pageObj.getNumber() >= pageObj.getTotalPages()) {
@@ -47,58 +53,66 @@ public class BookController {
     }
 
     // TẤT CẢ SÁCH (có phân trang)
+    // sort=latest: phân trang keyset theo cursor (before/after), các sort khác: phân trang offset
     @GetMapping
     public String listBooks(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "12") int size,
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false, defaultValue = "latest") String sort,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
             Model model,
             RedirectAttributes ra) {
 
-        Sort sortSpec = buildSort(sort);
-        Pageable pageable = PageRequest.of(page, size, sortSpec);
-        Page<Book> bookPage;
-
+        Category category = null;
         if (categoryId != null) {
-            Category category = categoryRepository.findById(categoryId).orElse(null);
+            category = categoryCatalog.findById(categoryId).orElse(null);
             if (category == null) {
                 ra.addFlashAttribute("error", "Danh mục không tồn tại hoặc đã bị xóa.");
                 return "redirect:/books";
             }
-            bookPage = bookService.getBooksByCategory(category, page, size, sortSpec);
             model.addAttribute("selectedCategory", category);
-        } else {
-            bookPage = bookService.getBooks(page, size, sortSpec);
         }
 
-        String redirect = redirectIfOutOfRange(bookPage, "/books", size, sort);
-        if (redirect != null) return "redirect:" + redirect;
+        if (useKeyset(sort, page)) {
+            model.addAttribute("bookSlice", bookService.getLatestSlice(categoryId, before, after, size));
+        } else {
+            Sort sortSpec = buildSort(sort);
+            Page<BookCard> bookPage = (category != null)
+                    ? bookService.getBooksByCategory(category, page, size, sortSpec)
+                    : bookService.getBooks(page, size, sortSpec);
 
-        model.addAttribute("bookPage", bookPage);
-        model.addAttribute("categories", categoryRepository.findAll());
-        model.addAttribute("currentPage", page);
-        model.addAttribute("totalPages", bookPage.getTotalPages());
+            String redirect = redirectIfOutOfRange(bookPage, "/books", size, sort);
+            if (redirect != null) return "redirect:" + redirect;
+
+            model.addAttribute("bookPage", bookPage);
+            model.addAttribute("currentPage", page);
+            model.addAttribute("totalPages", bookPage.getTotalPages());
+        }
+
+        model.addAttribute("categories", categoryCatalog.all());
         model.addAttribute("currentSort", sort);
         model.addAttribute("pageSizes", new int[]{6, 12, 24, 48});
-        model.addAttribute("cartItemCount", cartService.getTotalItems());
         return "books";
     }
 
     // CHI TIẾT SÁCH
     @GetMapping("/{id}")
-    public String bookDetail(@PathVariable Long id, Model model, RedirectAttributes ra) {
-        Book book = bookService.getBookById(id).orElse(null);
+    public String bookDetail(@PathVariable Long id, Model model, RedirectAttributes ra, ServletWebRequest webRequest) {
+        Book book = bookService.getBookDetail(id).orElse(null);
         if (book == null) {
             ra.addFlashAttribute("error", "Không tìm thấy sách!");
             return "redirect:/books";
         }
+        // Trình duyệt / bot đã có bản mới nhất -> 304, bỏ qua query sách liên quan + render
+        if (conditionalGet.bookDetail(webRequest, book)) return null;
 
-        List<Book> relatedBooks = bookService.getBooksByCategory(book.getCategory(), 0, 4).getContent();
+        List<BookCard> relatedBooks = bookService.getBooksByCategory(book.getCategory(), 0, 4).getContent();
 
         model.addAttribute("book", book);
+        model.addAttribute("availableStock", stockReservations.available(book.getId(), bookService.stockOf(book))); // trừ phần đang giữ
         model.addAttribute("relatedBooks", relatedBooks);
-        model.addAttribute("cartItemCount", cartService.getTotalItems());
         return "book-detail";
     }
 
@@ -110,7 +124,7 @@ public class BookController {
             @RequestParam(defaultValue = "12") int size,
             Model model) {
 
-        Page<Book> searchResults = bookService.searchBooks(keyword, page, size);
+        Page<BookCard> searchResults = bookService.searchBooks(keyword, page, size);
 
         // nếu vượt tổng trang -> về trang cuối
         if (searchResults.getTotalPages() > 0 && page >= searchResults.getTotalPages()) {
@@ -124,9 +138,8 @@ public class BookController {
         model.addAttribute("currentPage", page);
         model.addAttribute("totalPages", searchResults.getTotalPages());
         model.addAttribute("currentSort", "latest");
-        model.addAttribute("categories", categoryRepository.findAll());
+        model.addAttribute("categories", categoryCatalog.all());
         model.addAttribute("pageSizes", new int[]{6, 12, 24, 48});
-        model.addAttribute("cartItemCount", cartService.getTotalItems());
         return "search-results";
     }
 
@@ -137,40 +150,46 @@ public class BookController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "12") int size,
             @RequestParam(defaultValue = "latest") String sort,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
             Model model,
             RedirectAttributes ra) {
 
-        Category category = categoryRepository.findBySlug(slug).orElse(null);
+        Category category = categoryCatalog.findBySlug(slug).orElse(null);
         if (category == null) {
             ra.addFlashAttribute("error", "Không tìm thấy danh mục!");
             return "redirect:/books";
         }
 
-        Sort sortSpec = buildSort(sort);
-        Page<Book> bookPage = bookService.getBooksByCategory(category, page, size, sortSpec);
+        if (useKeyset(sort, page)) {
+            model.addAttribute("bookSlice", bookService.getLatestSlice(category.getId(), before, after, size));
+        } else {
+            Sort sortSpec = buildSort(sort);
+            Page<BookCard> bookPage = bookService.getBooksByCategory(category, page, size, sortSpec);
+
+            if (bookPage.getTotalPages() > 0 && page >= bookPage.getTotalPages()) {
+                return "redirect:/books/c/" + slug
+                        + "?page=" + (bookPage.getTotalPages() - 1)
+                        + "&size=" + size
+                        + "&sort=" + sort;
+            }
 
-        if (bookPage.getTotalPages() > 0 && page >= bookPage.getTotalPages()) {
-            return "redirect:/books/c/" + slug
-                    + "?page=" + (bookPage.getTotalPages() - 1)
-                    + "&size=" + size
-                    + "&sort=" + sort;
+            model.addAttribute("bookPage", bookPage);
+            model.addAttribute("currentPage", page);
+            model.addAttribute("totalPages", bookPage.getTotalPages());
         }
 
         model.addAttribute("selectedCategory", category);
-        model.addAttribute("bookPage", bookPage);
-        model.addAttribute("categories", categoryRepository.findAll());
+        model.addAttribute("categories", categoryCatalog.all());
         model.addAttribute("currentSort", sort);
-        model.addAttribute("currentPage", page);
-        model.addAttribute("totalPages", bookPage.getTotalPages());
         model.addAttribute("pageSizes", new int[]{6, 12, 24, 48});
-        model.addAttribute("cartItemCount", cartService.getTotalItems());
         return "books";
     }
 
     // Redirect URL cũ -> URL slug
     @GetMapping("/category/{categoryId}")
     public String redirectOldCategory(@PathVariable Long categoryId) {
-        Category cat = categoryRepository.findById(categoryId).orElse(null);
+        Category cat = categoryCatalog.findById(categoryId).orElse(null);
         if (cat == null) return "redirect:/books";
         return "redirect:/books/c/" + cat.getSlug();
     }
@@ -191,7 +210,7 @@ public class BookController {
     @GetMapping("/admin/add")
     public String showAddBookForm(Model model) {
         model.addAttribute("book", new Book());
-        model.addAttribute("categories", categoryRepository.findAll());
+        model.addAttribute("categories", categoryCatalog.all());
         return "admin/add-book";
     }
 
@@ -215,13 +234,14 @@ public class BookController {
 
     @GetMapping("/admin/edit/{id}")
     public String showEditBookForm(@PathVariable Long id, Model model, RedirectAttributes ra) {
-        Book book = bookService.getBookById(id).orElse(null);
+        Book book = bookService.getBookDetail(id).orElse(null);
         if (book == null) {
             ra.addFlashAttribute("error", "Không tìm thấy sách!");
             return "redirect:/books/admin/manage";
         }
+        book.setStock(bookService.stockOf(book)); // sách hot: hiện số trong bộ đếm
         model.addAttribute("book", book);
-        model.addAttribute("categories", categoryRepository.findAll());
+        model.addAttribute("categories", categoryCatalog.all());
         return "admin/edit-book";
     }
 
@@ -229,6 +249,7 @@ public class BookController {
     public String updateBook(@PathVariable Long id,
                              @Valid @ModelAttribute("book") Book book,
                              BindingResult result,
+                             @RequestParam(value = "stockShown", required = false) Integer stockShown,
                              RedirectAttributes redirectAttributes) {
         if (result.hasErrors()) {
             redirectAttributes.addFlashAttribute("error", "Vui lòng kiểm tra lại dữ liệu.");
@@ -236,7 +257,7 @@ public class BookController {
         }
         try {
             book.setId(id);
-            bookService.saveBook(book);
+            bookService.saveBook(book, stockShown);
             redirectAttributes.addFlashAttribute("success", "Cập nhật sách thành công!");
             return "redirect:/books/admin/manage";
         } catch (Exception e) {
@@ -269,7 +290,7 @@ public class BookController {
             default         -> "Tất cả sách";
         };
 
-        List<Book> books = switch (tag.toLowerCase()) {
+        List<BookCard> books = switch (tag.toLowerCase()) {
             case "featured" -> bookService.getFeaturedBooks();
             case "new"      -> bookService.getNewArrivals();
             case "best"     -> bookService.getBestSellers();
@@ -281,10 +302,9 @@ public class BookController {
         model.addAttribute("title", title);
         model.addAttribute("bookPage", null);   // dùng nhánh list
         model.addAttribute("books", books);
-        model.addAttribute("categories", categoryRepository.findAll());
+        model.addAttribute("categories", categoryCatalog.all());
         model.addAttribute("currentSort", "latest");
         model.addAttribute("pageSizes", new int[]{6, 12, 24, 48});
-        model.addAttribute("cartItemCount", cartService.getTotalItems());
         return "books";
     }
 }
@@ -1,5 +1,6 @@
 package com.vanlang.bookstore.controller;
 
+import com.vanlang.bookstore.cart.CartCheck;
 import com.vanlang.bookstore.service.BookService;
 import com.vanlang.bookstore.service.CartService;
 import lombok.RequiredArgsConstructor;
@@ -8,6 +9,10 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 @Controller
 @RequestMapping("/cart")
 @RequiredArgsConstructor
@@ -18,9 +23,17 @@ public class CartController {
 
     @GetMapping
     public String viewCart(Model model) {
+        // Đối chiếu giá / tồn kho / ngừng bán với DB (1 query) trước khi hiện giỏ
+        CartCheck check = cartService.revalidate(null);
+        Set<String> notices = new LinkedHashSet<>();
+        if (model.getAttribute("cartNotices") instanceof List<?> flashed) { // chuyển về từ /checkout
+            flashed.forEach(n -> notices.add(String.valueOf(n)));
+        }
+        notices.addAll(check.messages());
+        model.addAttribute("cartNotices", notices);
+        model.addAttribute("shortIds", check.shortIds());
         model.addAttribute("cartItems", cartService.getItems());
         model.addAttribute("totalPrice", cartService.getTotalPrice());
-        model.addAttribute("cartItemCount", cartService.getTotalItems());
         return "cart";
     }
 
@@ -31,8 +44,11 @@ public class CartController {
             RedirectAttributes redirectAttributes) {
 
         var book = bookService.getBookById(bookId);
-        if (book.isPresent()) {
-            if (book.get().getStock() >= quantity) {
+        if (book.isPresent() && Boolean.FALSE.equals(book.get().getEnabled())) {
+            redirectAttributes.addFlashAttribute("error",
+                    "Sách này hiện không bán!");
+        } else if (book.isPresent()) {
+            if (bookService.stockOf(book.get()) >= quantity) {
                 cartService.addItem(book.get(), quantity);
                 redirectAttributes.addFlashAttribute("success",
                         "Đã thêm sách vào giỏ hàng!");
@@ -55,7 +71,7 @@ public class CartController {
             RedirectAttributes redirectAttributes) {
 
         var book = bookService.getBookById(bookId);
-        if (book.isPresent() && book.get().getStock() >= quantity) {
+        if (book.isPresent() && bookService.stockOf(book.get()) >= quantity) {
             cartService.updateQuantity(bookId, quantity);
             redirectAttributes.addFlashAttribute("success",
                     "Đã cập nhật giỏ hàng!");
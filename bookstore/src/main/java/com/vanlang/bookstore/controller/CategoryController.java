@@ -1,15 +1,17 @@
 // src/main/java/com/vanlang/bookstore/controller/CategoryController.java
 package com.vanlang.bookstore.controller;
 
-import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.cache.CategoryCatalog;
+import com.vanlang.bookstore.dto.BookCard;
 import com.vanlang.bookstore.model.Category;
 import com.vanlang.bookstore.repository.BookRepository;
-import com.vanlang.bookstore.repository.CategoryRepository;
+import com.vanlang.bookstore.service.BookService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.List;
 import java.util.Optional;
@@ -19,8 +21,10 @@ import java.util.Optional;
 @RequestMapping("/categories")
 public class CategoryController {
 
-    private final CategoryRepository categoryRepository;
+    private final CategoryCatalog categoryCatalog;
     private final BookRepository bookRepository;
+    private final BookService bookService;
+    private final ConditionalGet conditionalGet;
 
     @GetMapping("/{slugOrId}")
     public String byCategory(
@@ -28,30 +32,38 @@ public class CategoryController {
             @RequestParam(name = "page", defaultValue = "0") int page,
             @RequestParam(name = "size", defaultValue = "12") int size,
             @RequestParam(name = "q", required = false) String keyword,
-            Model model
+            @RequestParam(name = "before", required = false) Long before,
+            @RequestParam(name = "after", required = false) Long after,
+            Model model,
+            ServletWebRequest webRequest
     ) {
         // 1) Lấy danh mục theo slug hoặc id
         Category category = findCategory(slugOrId)
                 .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy danh mục: " + slugOrId));
 
-        // 2) Phân trang + sắp xếp
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "id"));
+        // Danh mục + sách chưa đổi từ lần xem trước -> 304, không query, không render
+        if (conditionalGet.categoryPage(webRequest)) return null;
 
-        // 3) Lấy sách theo danh mục (có/không có keyword)
-        Page<Book> bookPage;
-        if (keyword != null && !keyword.isBlank()) {
-            bookPage = bookRepository.findByCategoryAndTitleContainingIgnoreCase(category, keyword.trim(), pageable);
+        // 2) + 3) Lấy sách theo danh mục, sắp id desc
+        //    - không keyword: keyset theo cursor (trang sâu không tốn OFFSET / COUNT)
+        //    - có keyword hoặc link cũ ?page=N: phân trang offset như cũ
+        if ((keyword == null || keyword.isBlank()) && page == 0) {
+            model.addAttribute("bookSlice", bookService.getLatestSlice(category.getId(), before, after, size));
         } else {
-            bookPage = bookRepository.findByCategory(category, pageable);
+            Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "id"));
+            Page<BookCard> bookPage = (keyword != null && !keyword.isBlank())
+                    ? bookRepository.findCardsByCategoryIdAndTitle(category.getId(), keyword.trim(), pageable)
+                    : bookRepository.findCardsByCategoryId(category.getId(), pageable);
+            model.addAttribute("bookPage", bookPage);               // danh sách sách
         }
 
         // 4) Đổ dữ liệu ra view
-        List<Category> categories = categoryRepository.findAllByOrderByNameAsc();
+        List<Category> categories = categoryCatalog.all();
 
         model.addAttribute("title", "Danh mục: " + category.getName());
         model.addAttribute("categories", categories);           // sidebar
         model.addAttribute("selectedCategory", category);       // để bôi đậm đang chọn
-        model.addAttribute("bookPage", bookPage);               // danh sách sách
+        model.addAttribute("currentSort", "latest");
         model.addAttribute("keyword", (keyword != null) ? keyword.trim() : "");
         model.addAttribute("currentPath", "/categories/" + slugOrId); // để build link phân trang giữ ngữ cảnh
 
@@ -60,14 +72,15 @@ public class CategoryController {
 
     /**
      * Tìm category theo slug trước, nếu không có thì thử parse id dạng số.
+     * Tra trong CategoryCatalog (bộ nhớ), không chạm DB.
      */
     private Optional<Category> findCategory(String slugOrId) {
-        Optional<Category> bySlug = categoryRepository.findBySlug(slugOrId);
+        Optional<Category> bySlug = categoryCatalog.findBySlug(slugOrId);
         if (bySlug.isPresent()) return bySlug;
 
         try {
             Long id = Long.valueOf(slugOrId);
-            return categoryRepository.findById(id);
+            return categoryCatalog.findById(id);
         } catch (NumberFormatException ignored) {
             return Optional.empty();
         }
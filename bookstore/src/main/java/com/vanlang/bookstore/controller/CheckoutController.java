@@ -1,10 +1,15 @@
 package com.vanlang.bookstore.controller;
 
+import com.vanlang.bookstore.cart.CartCheck;
+import com.vanlang.bookstore.dto.UserSummary;
 import com.vanlang.bookstore.model.CartItem;
 import com.vanlang.bookstore.model.Order;
 import com.vanlang.bookstore.service.CartService;
+import com.vanlang.bookstore.service.CheckoutIdempotency;
 import com.vanlang.bookstore.service.OrderService;
+import com.vanlang.bookstore.service.StockReservationService;
 import com.vanlang.bookstore.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -13,8 +18,13 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Controller
 @RequestMapping("/checkout")
@@ -24,12 +34,15 @@ public class CheckoutController {
     private final CartService cartService;
     private final OrderService orderService;
     private final UserService userService;
+    private final StockReservationService stockReservations;
+    private final CheckoutIdempotency checkoutIdempotency;
 
     /** /cart tick -> submit -> GET /checkout?selectedIds=... */
     @GetMapping
     public String checkout(
             @RequestParam(name = "selectedIds", required = false) List<Long> selectedIds,
             @AuthenticationPrincipal UserDetails principal,
+            HttpServletRequest request,
             Model model,
             RedirectAttributes ra
     ) {
@@ -42,33 +55,58 @@ public class CheckoutController {
             return "redirect:/cart";
         }
 
+        // Giá / tồn kho / ngừng bán có thể đã đổi từ lúc thêm vào giỏ: đổi gì thì về giỏ cho người mua xem lại
+        CartCheck check = cartService.revalidate(selectedIds);
+        if (!check.clean()) {
+            ra.addFlashAttribute("cartNotices", check.messages());
+            return "redirect:/cart";
+        }
+
         List<CartItem> selectedItems = cartService.getItemsByBookIds(selectedIds);
         if (selectedItems.isEmpty()) {
             ra.addFlashAttribute("error", "Không tìm thấy sản phẩm đã chọn trong giỏ.");
             return "redirect:/cart";
         }
 
-        BigDecimal subtotal = cartService.calculateSubtotal(selectedItems);
-        BigDecimal shipping = cartService.calculateShipping(selectedItems);
-        BigDecimal total = subtotal.add(shipping);
+        // Giữ hàng cho các món đã chọn tới khi xác nhận (hết hạn thì tự trả)
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (CartItem ci : selectedItems) {
+            quantities.merge(ci.getBook().id(), ci.getQuantity(), Integer::sum);
+        }
+        Set<Long> shortages = stockReservations.reserve(principal.getUsername(), quantities, check.stock());
+        if (!shortages.isEmpty()) {
+            String titles = selectedItems.stream()
+                    .filter(ci -> shortages.contains(ci.getBook().id()))
+                    .map(ci -> ci.getBook().title())
+                    .collect(Collectors.joining(", "));
+            ra.addFlashAttribute("error", "Không đủ hàng cho: " + titles);
+            return "redirect:/cart";
+        }
+        stockReservations.find(principal.getUsername()).ifPresent(h ->
+                model.addAttribute("holdExpiresAt", LocalDateTime.ofInstant(h.expiresAt(), ZoneId.systemDefault())));
+
+        long subtotal = cartService.calculateSubtotal(selectedItems);
+        long shipping = cartService.calculateShipping(selectedItems);
+        long total = subtotal + shipping;
 
         model.addAttribute("selectedItems", selectedItems);
         model.addAttribute("selectedIds", selectedIds);
         model.addAttribute("subtotal", subtotal);
         model.addAttribute("shipping", shipping);
         model.addAttribute("total", total);
-        model.addAttribute("cartItemCount", cartService.getTotalItems());
+        model.addAttribute("idempotencyKey", checkoutIdempotency.newKey()); // gửi trùng form -> cùng 1 đơn
 
         // Prefill: ưu tiên shipping-default; fallback sang profile info
-        userService.findByLogin(principal.getUsername()).ifPresent(u -> {
+        UserSummary u = HeaderModel.of(request).getUser(); // đã có sẵn cho đầu trang, không đọc lại User
+        if (u != null) {
             model.addAttribute("prefName",
-                    u.getShippingFullName() != null ? u.getShippingFullName() : u.getFullName());
+                    u.shippingFullName() != null ? u.shippingFullName() : u.fullName());
             model.addAttribute("prefPhone",
-                    u.getShippingPhone() != null ? u.getShippingPhone() : u.getPhone());
-            model.addAttribute("prefEmail", u.getEmail()); // email dùng luôn email tài khoản
+                    u.shippingPhone() != null ? u.shippingPhone() : u.phone());
+            model.addAttribute("prefEmail", u.email()); // email dùng luôn email tài khoản
             model.addAttribute("prefAddress",
-                    u.getShippingAddress() != null ? u.getShippingAddress() : u.getAddress());
-        });
+                    u.shippingAddress() != null ? u.shippingAddress() : u.address());
+        }
 
         return "checkout";
     }
@@ -80,6 +118,7 @@ public class CheckoutController {
             @AuthenticationPrincipal UserDetails principal,
             @ModelAttribute Order form, // customerName/Phone/Email/Address/notes/paymentMethod
             @RequestParam(value = "saveAsDefault", required = false) Boolean saveAsDefault,
+            @RequestParam(value = "idempotencyKey", required = false) String idempotencyKey,
             RedirectAttributes ra,
             Model model
     ) {
@@ -92,6 +131,13 @@ public class CheckoutController {
             return "redirect:/cart";
         }
 
+        // Giá đổi / sách ngừng bán trong lúc điền form: không đặt đơn theo giá cũ
+        CartCheck check = cartService.revalidate(selectedIds);
+        if (!check.clean()) {
+            ra.addFlashAttribute("cartNotices", check.messages());
+            return "redirect:/cart";
+        }
+
         try {
             // lưu mặc định nếu được tick
             if (Boolean.TRUE.equals(saveAsDefault)) {
@@ -103,12 +149,13 @@ public class CheckoutController {
                 );
             }
 
-            Order order = orderService.placeOrder(principal.getUsername(), form, selectedIds);
-            cartService.removeItemsByBookIds(selectedIds);
+            // bấm 2 lần / trình duyệt gửi lại: trả đúng đơn đã tạo (hoặc chờ lần gửi đầu), không trừ kho lần nữa
+            // món đã mua được OrderService bỏ khỏi giỏ sau khi đơn commit
+            Order order = checkoutIdempotency.submit(principal.getUsername(), idempotencyKey,
+                    key -> orderService.placeOrder(principal.getUsername(), form, selectedIds, key));
 
             model.addAttribute("orderId", order.getId());
             model.addAttribute("orderCode", order.getOrderNumber());
-            model.addAttribute("cartItemCount", cartService.getTotalItems());
             return "order-success";
         } catch (Exception e) {
             ra.addFlashAttribute("error", "Thanh toán thất bại: " + e.getMessage());
@@ -0,0 +1,92 @@
+package com.vanlang.bookstore.controller;
+
+import com.vanlang.bookstore.cache.CatalogCache;
+import com.vanlang.bookstore.cache.CategoryCatalog;
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.service.CartService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+import java.security.Principal;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Conditional GET cho trang chi tiết sách / trang danh mục: trả 304 trước khi render Thymeleaf.
+ * ETag = dữ liệu trang (updatedAt + version tồn kho của sách, version catalog / danh mục)
+ *      + phần riêng của người xem (session, tên đăng nhập, số món trong giỏ)
+ * -> đổi giỏ hàng, đăng nhập / đăng xuất (đổi session + CSRF token) đều làm ETag đổi.
+ * Last-Modified chỉ gửi cho khách chưa có session (bot), vì nó không mang được phần riêng của người xem
+ * (khách có giỏ theo cookie vẫn được so bằng ETag trước).
+ */
+@Component
+@RequiredArgsConstructor
+public class ConditionalGet {
+
+    private final CatalogCache catalogCache;
+    private final CategoryCatalog categoryCatalog;
+    private final CartService cartService;
+
+    /** true = đã trả 304, controller return null */
+    public boolean bookDetail(ServletWebRequest request, Book book) {
+        long updatedAt = (book.getUpdatedAt() == null) ? 0L
+                : book.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        // khối "sách liên quan" phụ thuộc sách khác -> cộng thêm version catalog
+        long catalog = catalogCache.version();
+        // số lượng còn lại (sách hot không đổi updatedAt) -> version tồn kho của riêng cuốn này
+        long stock = catalogCache.stockVersion(book.getId());
+        return check(request, "b" + book.getId() + "-" + Long.toHexString(updatedAt) + "-" + Long.toHexString(catalog)
+                        + "-" + Long.toHexString(stock),
+                Math.max(updatedAt, Math.max(catalog, stock)));
+    }
+
+    /** Trang danh mục: không cần DB, chỉ so version (query string đã nằm trong URL nên không cần đưa vào) */
+    public boolean categoryPage(ServletWebRequest request) {
+        long catalog = catalogCache.version();
+        long categories = categoryCatalog.version();
+        return check(request, "c" + Long.toHexString(categories) + "-" + Long.toHexString(catalog),
+                Math.max(catalog, categories));
+    }
+
+    private boolean check(ServletWebRequest webRequest, String pageTag, long lastModified) {
+        HttpServletRequest request = webRequest.getRequest();
+        HttpServletResponse response = webRequest.getResponse();
+
+        // Có flash message (sau redirect) -> phải render để hiện thông báo
+        Map<String, ?> flash = RequestContextUtils.getInputFlashMap(request);
+        if (flash != null && !flash.isEmpty()) return false;
+
+        // Cho trình duyệt lưu nhưng luôn hỏi lại (thay cho no-store mặc định của Spring Security)
+        if (response != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+            response.setHeader(HttpHeaders.VARY, "Cookie");
+        }
+
+        HttpSession session = request.getSession(false);
+        String etag = "W/\"" + pageTag + "-" + viewerTag(request, session) + "\"";
+        if (session == null) {
+            return webRequest.checkNotModified(etag, lastModified);
+        }
+        return webRequest.checkNotModified(etag);
+    }
+
+    // Số món trong giỏ lấy từ HeaderModel (trang nào cũng cần cho đầu trang) -> chỉ tính 1 lần
+    // Khách không session, không giỏ (bot) -> "anon"; khách có giỏ theo cookie vẫn có ETag riêng
+    private String viewerTag(HttpServletRequest request, HttpSession session) {
+        HeaderModel header = HeaderModel.of(request);
+        int cartItems = (header != null) ? header.getCartItemCount() : cartService.getTotalItems();
+        if (session == null && cartItems == 0) return "anon";
+        Principal principal = request.getUserPrincipal();
+        int hash = Objects.hash(session == null ? null : session.getId(),
+                principal == null ? null : principal.getName(),
+                cartItems);
+        return Integer.toHexString(hash);
+    }
+}
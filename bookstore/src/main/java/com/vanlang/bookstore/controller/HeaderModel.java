@@ -0,0 +1,53 @@
+package com.vanlang.bookstore.controller;
+
+import com.vanlang.bookstore.cache.UserSummaryCache;
+import com.vanlang.bookstore.dto.UserSummary;
+import com.vanlang.bookstore.service.CartService;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.Optional;
+
+/**
+ * Dữ liệu đầu trang dùng chung mọi trang: số món trong giỏ, người đang đăng nhập.
+ * Mỗi request 1 đối tượng (HeaderModelInterceptor gắn vào request attribute "pageHeader", template đọc ${pageHeader...});
+ * mỗi giá trị chỉ tính khi có người đọc (trang redirect / JSON không tốn gì) và chỉ tính 1 lần.
+ */
+public class HeaderModel {
+
+    public static final String ATTRIBUTE = "pageHeader";
+
+    private final CartService cartService;
+    private final UserSummaryCache userSummaries;
+    private final String login;
+
+    private Integer cartItemCount;
+    private Optional<UserSummary> user;
+
+    HeaderModel(CartService cartService, UserSummaryCache userSummaries, String login) {
+        this.cartService = cartService;
+        this.userSummaries = userSummaries;
+        this.login = login;
+    }
+
+    /** Header của request hiện tại; null nếu request không đi qua interceptor */
+    public static HeaderModel of(HttpServletRequest request) {
+        return (request.getAttribute(ATTRIBUTE) instanceof HeaderModel h) ? h : null;
+    }
+
+    /** Số cuốn trong giỏ (tổng giữ sẵn trong giỏ, không đếm lại) */
+    public int getCartItemCount() {
+        if (cartItemCount == null) cartItemCount = cartService.getTotalItems();
+        return cartItemCount;
+    }
+
+    /** Người đang đăng nhập; khách -> null */
+    public UserSummary getUser() {
+        if (user == null) user = userSummaries.find(login);
+        return user.orElse(null);
+    }
+
+    public String getDisplayName() {
+        UserSummary u = getUser();
+        return (u != null) ? u.displayName() : login;
+    }
+}
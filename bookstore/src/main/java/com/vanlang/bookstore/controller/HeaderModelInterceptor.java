@@ -0,0 +1,30 @@
+package com.vanlang.bookstore.controller;
+
+import com.vanlang.bookstore.cache.UserSummaryCache;
+import com.vanlang.bookstore.service.CartService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.security.Principal;
+
+/** Gắn HeaderModel (chưa tính gì) vào mỗi request trước khi vào controller; xem WebConfig */
+@Component
+@RequiredArgsConstructor
+public class HeaderModelInterceptor implements HandlerInterceptor {
+
+    private final CartService cartService;
+    private final UserSummaryCache userSummaries;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (HeaderModel.of(request) == null) { // forward / trang lỗi: dùng lại của request gốc
+            Principal principal = request.getUserPrincipal();
+            request.setAttribute(HeaderModel.ATTRIBUTE,
+                    new HeaderModel(cartService, userSummaries, principal == null ? null : principal.getName()));
+        }
+        return true;
+    }
+}
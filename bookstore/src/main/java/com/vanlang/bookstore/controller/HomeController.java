@@ -1,15 +1,13 @@
 package com.vanlang.bookstore.controller;
 
-import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.dto.BookCard;
 import com.vanlang.bookstore.service.BookService;
-import com.vanlang.bookstore.service.CartService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
-import java.security.Principal;
 import java.util.Collections;
 import java.util.List;
 
@@ -18,16 +16,15 @@ import java.util.List;
 public class HomeController {
 
     private final BookService bookService;
-    private final CartService cartService;
 
     @GetMapping("/")
-    public String home(Model model, Principal principal) {
+    public String home(Model model) {
         model.addAttribute("title", "Trang Chủ");
 
         // Lấy dữ liệu, null-safe
-        List<Book> featured = safe(bookService.getFeaturedBooks());
-        List<Book> newArr   = safe(bookService.getNewArrivals());
-        List<Book> best     = safe(bookService.getBestSellers());
+        List<BookCard> featured = safe(bookService.getFeaturedBooks());
+        List<BookCard> newArr   = safe(bookService.getNewArrivals());
+        List<BookCard> best     = safe(bookService.getBestSellers());
 
         // Fallback nếu rỗng
         if (featured.isEmpty()) featured = safe(bookService.getLatestBooks(8));
@@ -39,9 +36,6 @@ public class HomeController {
         model.addAttribute("newArrivals",   limit8(newArr));
         model.addAttribute("bestSellers",   limit8(best));
 
-        String username = (principal != null) ? principal.getName() : null;
-        model.addAttribute("cartItemCount", cartService.getCartItemCount(username));
-
         return "index";
     }
 
@@ -49,8 +43,7 @@ public class HomeController {
     public String search(
             @RequestParam String keyword,
             @RequestParam(defaultValue = "0") int page,
-            Model model,
-            Principal principal
+            Model model
     ) {
         model.addAttribute("title", "Tìm Kiếm: " + keyword);
         model.addAttribute("keyword", keyword);
@@ -59,17 +52,14 @@ public class HomeController {
         model.addAttribute("books", books);
         model.addAttribute("currentPage", page);
 
-        String username = (principal != null) ? principal.getName() : null;
-        model.addAttribute("cartItemCount", cartService.getCartItemCount(username));
-
         return "search-results";
     }
 
     // --- helpers ---
-    private static List<Book> safe(List<Book> src) {
+    private static List<BookCard> safe(List<BookCard> src) {
         return (src == null) ? Collections.emptyList() : src;
     }
-    private static List<Book> limit8(List<Book> src) {
+    private static List<BookCard> limit8(List<BookCard> src) {
         return src.size() <= 8 ? src : src.subList(0, 8);
     }
 }
@@ -1,9 +1,8 @@
 // src/main/java/com/vanlang/bookstore/controller/OrderController.java
 package com.vanlang.bookstore.controller;
 
-import com.vanlang.bookstore.model.User;
 import com.vanlang.bookstore.repository.OrderRepository;
-import com.vanlang.bookstore.repository.UserRepository;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -18,15 +17,14 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 public class OrderController {
 
     private final OrderRepository orderRepository;
-    private final UserRepository userRepository;
 
     // Lịch sử đơn hàng của tôi
     @GetMapping("/orders")
-    public String myOrders(@AuthenticationPrincipal UserDetails principal, Model model) {
+    public String myOrders(@AuthenticationPrincipal UserDetails principal, HttpServletRequest request, Model model) {
         if (principal == null) return "redirect:/login";
-        var u = userRepository.findByEmailOrUsername(principal.getUsername()).orElse(null);
+        var u = HeaderModel.of(request).getUser(); // UserSummaryCache, không đọc lại User
         if (u == null) return "redirect:/login";
-        model.addAttribute("orders", orderRepository.findByUserOrderByCreatedAtDesc(u));
+        model.addAttribute("orders", orderRepository.findByUserIdOrderByCreatedAtDesc(u.id()));
         return "orders";
     }
 
@@ -36,7 +34,7 @@ public class OrderController {
                               @AuthenticationPrincipal UserDetails principal,
                               Model model,
                               RedirectAttributes ra) {
-        var orderOpt = orderRepository.findByOrderNumber(orderNumber);
+        var orderOpt = orderRepository.findByOrderNumberWithItems(orderNumber);
         if (orderOpt.isEmpty()) {
             ra.addFlashAttribute("error", "Không tìm thấy đơn hàng");
             return "redirect:/orders";
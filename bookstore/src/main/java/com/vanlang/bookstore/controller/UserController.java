@@ -1,7 +1,6 @@
 package com.vanlang.bookstore.controller;
 
 import com.vanlang.bookstore.model.User;
-import com.vanlang.bookstore.service.CartService;
 import com.vanlang.bookstore.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -25,15 +24,13 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 public class UserController {
 
     private final UserService userService;
-    private final CartService cartService;
 
     // Dùng để reload principal khi username/email thay đổi
     private final UserDetailsService userDetailsService;
 
     // ===================== ĐĂNG NHẬP =====================
     @GetMapping("/login")
-    public String showLoginForm(Model model) {
-        model.addAttribute("cartItemCount", cartService.getTotalItems());
+    public String showLoginForm() {
         return "login";
     }
 
@@ -41,7 +38,6 @@ public class UserController {
     @GetMapping("/register")
     public String showRegistrationForm(Model model) {
         model.addAttribute("user", new User());
-        model.addAttribute("cartItemCount", cartService.getTotalItems());
         return "register";
     }
 
@@ -53,18 +49,15 @@ public class UserController {
                                RedirectAttributes ra,
                                Model model) {
         if (result.hasErrors()) {
-            model.addAttribute("cartItemCount", cartService.getTotalItems());
             return "register";
         }
         if (confirmPassword != null && user.getPassword() != null
                 && !user.getPassword().equals(confirmPassword)) {
             model.addAttribute("error", "Mật khẩu xác nhận không khớp!");
-            model.addAttribute("cartItemCount", cartService.getTotalItems());
             return "register";
         }
         if (userService.existsByEmail(user.getEmail())) {
             model.addAttribute("error", "Email đã được sử dụng!");
-            model.addAttribute("cartItemCount", cartService.getTotalItems());
             return "register";
         }
 
@@ -74,7 +67,6 @@ public class UserController {
             return "redirect:/login";
         } catch (Exception e) {
             model.addAttribute("error", "Đăng ký thất bại: " + e.getMessage());
-            model.addAttribute("cartItemCount", cartService.getTotalItems());
             return "register";
         }
     }
@@ -87,7 +79,6 @@ public class UserController {
         if (userOpt.isEmpty()) return "redirect:/login";
 
         model.addAttribute("user", userOpt.get());
-        model.addAttribute("cartItemCount", cartService.getTotalItems());
         return "profile";
     }
 
@@ -99,7 +90,6 @@ public class UserController {
         if (userOpt.isEmpty()) return "redirect:/login";
 
         model.addAttribute("user", userOpt.get());
-        model.addAttribute("cartItemCount", cartService.getTotalItems());
         return "profile-edit"; // đảm bảo có file templates/profile-edit.html
     }
 
@@ -117,7 +107,6 @@ public class UserController {
         if (principal == null) return "redirect:/login";
 
         if (result.hasErrors()) {
-            model.addAttribute("cartItemCount", cartService.getTotalItems());
             return "profile-edit";
         }
 
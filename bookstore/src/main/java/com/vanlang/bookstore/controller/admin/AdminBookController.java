@@ -1,8 +1,11 @@
 package com.vanlang.bookstore.controller.admin;
 
+import com.vanlang.bookstore.cache.CategoryCatalog;
 import com.vanlang.bookstore.model.Book;
 import com.vanlang.bookstore.repository.BookRepository;
-import com.vanlang.bookstore.repository.CategoryRepository;
+import com.vanlang.bookstore.service.BookService;
+import com.vanlang.bookstore.service.ImageVariantService;
+import com.vanlang.bookstore.service.UploadStorage;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
@@ -14,7 +17,6 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.nio.file.*;
 import java.util.List;
 
 @Controller
@@ -23,7 +25,10 @@ import java.util.List;
 public class AdminBookController {
 
     private final BookRepository bookRepository;
-    private final CategoryRepository categoryRepository;
+    private final CategoryCatalog categoryCatalog;
+    private final BookService bookService; // ghi qua service để xoá cache trang chủ
+    private final ImageVariantService imageVariantService;
+    private final UploadStorage uploadStorage;
 
     // ================= LIST + SEARCH + FILTER (KHÔNG PHÂN TRANG) =================
     @GetMapping
@@ -45,7 +50,7 @@ public class AdminBookController {
         }
 
         model.addAttribute("books", books);
-        model.addAttribute("categories", categoryRepository.findAll());
+        model.addAttribute("categories", categoryCatalog.all());
         model.addAttribute("keyword", keyword);
         model.addAttribute("categoryId", categoryId);
         model.addAttribute("title", "Sách");
@@ -56,7 +61,7 @@ public class AdminBookController {
     @GetMapping("/add")
     public String addForm(Model model) {
         model.addAttribute("book", new Book());
-        model.addAttribute("categories", categoryRepository.findAll());
+        model.addAttribute("categories", categoryCatalog.all());
         model.addAttribute("title", "Thêm sách");
         return "admin/books/form";
     }
@@ -64,10 +69,11 @@ public class AdminBookController {
     // ================= EDIT =================
     @GetMapping("/edit/{id}")
     public String editForm(@PathVariable Long id, Model model) {
-        Book book = bookRepository.findById(id)
+        Book book = bookRepository.findWithCategoryById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy sách id=" + id));
+        book.setStock(bookService.stockOf(book)); // sách hot: hiện số trong bộ đếm
         model.addAttribute("book", book);
-        model.addAttribute("categories", categoryRepository.findAll());
+        model.addAttribute("categories", categoryCatalog.all());
         model.addAttribute("title", "Sửa sách");
         return "admin/books/form";
     }
@@ -77,6 +83,7 @@ public class AdminBookController {
     public String save(@ModelAttribute("book") Book book,
                        BindingResult bindingResult,
                        @RequestParam(value = "imageFile", required = false) MultipartFile imageFile,
+                       @RequestParam(value = "stockShown", required = false) Integer stockShown,
                        RedirectAttributes ra) {
 
         if (bindingResult.hasErrors()) {
@@ -87,20 +94,23 @@ public class AdminBookController {
         if (book.getStock() == null) book.setStock(0);
         if (book.getEnabled() == null) book.setEnabled(true);
 
+        boolean newImage = imageFile != null && !imageFile.isEmpty();
+        String oldImageUrl = (newImage && book.getId() != null)
+                ? bookRepository.findById(book.getId()).map(Book::getImageUrl).orElse(null)
+                : null;
+
         // Lưu lần 1 để có ID
-        book = bookRepository.save(book);
+        book = bookService.saveBook(book, stockShown);
 
         // Nếu upload ảnh mới
         try {
-            if (imageFile != null && !imageFile.isEmpty()) {
-                String original = imageFile.getOriginalFilename();
-                String ext = (original != null && original.contains(".")) ? original.substring(original.lastIndexOf('.')) : ".jpg";
-                Path uploadRoot = Path.of("uploads", "books").toAbsolutePath().normalize();
-                Files.createDirectories(uploadRoot);
-                Path dest = uploadRoot.resolve(book.getId() + ext);
-                Files.copy(imageFile.getInputStream(), dest, StandardCopyOption.REPLACE_EXISTING);
-                book.setImageUrl("/uploads/books/" + book.getId() + ext);
-                bookRepository.save(book);
+            if (newImage) {
+                // tên file có hash nội dung: {id}-{hash}.ext -> URL đổi khi đổi ảnh
+                book.setImageUrl(uploadStorage.store(imageFile, "books", String.valueOf(book.getId())));
+                bookService.saveBook(book);
+                uploadStorage.deleteReplaced(oldImageUrl, book.getImageUrl()); // đã lưu xong -> bỏ ảnh cũ
+                // sinh ảnh thumb / card / detail ở background
+                imageVariantService.submit(book.getImageUrl(), ImageVariantService.Kind.BOOK);
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -114,10 +124,10 @@ public class AdminBookController {
     @PostMapping("/delete/{id}")
     public String delete(@PathVariable Long id, RedirectAttributes ra) {
         try {
-            bookRepository.deleteById(id);
+            bookService.deleteBook(id);
             ra.addFlashAttribute("success", "Đã xóa sách!");
         } catch (Exception e) {
-            bookRepository.findById(id).ifPresent(b -> { b.setEnabled(false); bookRepository.save(b); });
+            bookRepository.findById(id).ifPresent(b -> { b.setEnabled(false); bookService.saveBook(b); });
             ra.addFlashAttribute("warning", "Sách đang được tham chiếu, đã đặt trạng thái INACTIVE.");
         }
         return "redirect:/admin/books";
@@ -1,6 +1,7 @@
 package com.vanlang.bookstore.controller.admin;
 
 import com.vanlang.bookstore.model.Category;
+import com.vanlang.bookstore.service.BookService;
 import com.vanlang.bookstore.service.CategoryService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -16,10 +17,12 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 public class AdminCategoryController {
 
     private final CategoryService service;
+    private final BookService bookService;
 
     @GetMapping
     public String list(Model model) {
         model.addAttribute("categories", service.findAll());
+        model.addAttribute("bookCounts", bookService.countBooksByCategory()); // 1 query group by
         model.addAttribute("title", "Danh mục");
         return "admin/categories/list";
     }
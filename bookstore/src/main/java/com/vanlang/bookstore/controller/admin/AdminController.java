@@ -1,7 +1,11 @@
 package com.vanlang.bookstore.controller.admin;
 
+import com.vanlang.bookstore.dto.BookCard;
+import com.vanlang.bookstore.outbox.OutboxDispatcher;
+import com.vanlang.bookstore.outbox.SalesCounterHandler;
 import com.vanlang.bookstore.repository.OrderRepository;
 import com.vanlang.bookstore.repository.UserRepository;
+import com.vanlang.bookstore.service.BookService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
@@ -21,6 +25,9 @@ public class AdminController {
 
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
+    private final OutboxDispatcher outboxDispatcher;
+    private final SalesCounterHandler salesCounter;
+    private final BookService bookService;
 
     @GetMapping
     public String dashboard(
@@ -109,6 +116,18 @@ public class AdminController {
         model.addAttribute("topBookTitles", topBookTitles);
         model.addAttribute("topBookQty", topBookQty);
 
+        model.addAttribute("outboxStats", outboxDispatcher.stats());
+        model.addAttribute("liveTopSellers", liveTopSellers(5));
+
         return "admin/dashboard";
     }
+
+    // Bán chạy từ lúc khởi động (đếm trong bộ nhớ từ outbox, không query bảng đơn): tên sách -> số cuốn
+    private Map<String, Long> liveTopSellers(int n) {
+        Map<Long, Long> top = salesCounter.top(n);
+        Map<Long, BookCard> cards = bookService.getCards(top.keySet());
+        Map<String, Long> out = new LinkedHashMap<>();
+        top.forEach((id, qty) -> out.merge(cards.containsKey(id) ? cards.get(id).title() : "#" + id, qty, Long::sum));
+        return out;
+    }
 }
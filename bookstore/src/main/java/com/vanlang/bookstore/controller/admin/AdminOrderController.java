@@ -2,8 +2,10 @@ package com.vanlang.bookstore.controller.admin;
 
 import com.vanlang.bookstore.model.Order;
 import com.vanlang.bookstore.repository.OrderRepository;
+import com.vanlang.bookstore.service.BulkOrderStatusService;
 import com.vanlang.bookstore.service.OrderService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -21,15 +23,17 @@ public class AdminOrderController {
 
     private final OrderRepository orderRepository;
     private final OrderService orderService; // dùng service để cập nhật trạng thái
+    private final BulkOrderStatusService bulkOrderStatusService;
 
     // KHÔNG PHÂN TRANG: list tất cả + search đơn giản
     @GetMapping
     public String list(@RequestParam(required = false) String keyword,
                        @RequestParam(required = false) String status,
+                       @RequestParam(required = false) String job,
                        Model model) {
 
-        // Lấy hết, rồi lọc theo keyword/status (đơn giản, tránh thêm query phức tạp)
-        List<Order> orders = orderRepository.findAll();
+        // Lấy hết (kèm user trong cùng query), rồi lọc theo keyword/status
+        List<Order> orders = orderRepository.findAllWithUser();
 
         if (keyword != null && !keyword.isBlank()) {
             String kw = keyword.trim().toLowerCase();
@@ -69,6 +73,8 @@ public class AdminOrderController {
 
         model.addAttribute("keyword", keyword);
         model.addAttribute("status", status);
+        model.addAttribute("statuses", OrderService.STATUSES);
+        if (job != null) bulkOrderStatusService.progress(job).ifPresent(p -> model.addAttribute("bulkJob", p));
 
         return "admin/orders/list";
     }
@@ -110,6 +116,26 @@ public class AdminOrderController {
         return "redirect:/admin/orders/" + id;
     }
 
+    // Chuyển trạng thái các đơn được chọn: chạy nền theo lô, trang danh sách hiển thị tiến độ
+    @PostMapping("/bulk-status")
+    public String bulkStatus(@RequestParam(name = "orderIds", required = false) List<Long> orderIds,
+                             @RequestParam String status,
+                             RedirectAttributes ra) {
+        try {
+            var progress = bulkOrderStatusService.start(orderIds, status);
+            ra.addAttribute("job", progress.id());
+        } catch (Exception e) {
+            ra.addFlashAttribute("error", "Lỗi cập nhật hàng loạt: " + e.getMessage());
+        }
+        return "redirect:/admin/orders";
+    }
+
+    @GetMapping("/bulk-status/{jobId}")
+    @ResponseBody
+    public ResponseEntity<BulkOrderStatusService.Progress> bulkProgress(@PathVariable String jobId) {
+        return ResponseEntity.of(bulkOrderStatusService.progress(jobId));
+    }
+
     @PostMapping("/{id}/delete")
     public String delete(@PathVariable Long id, RedirectAttributes ra) {
         if (!orderRepository.existsById(id)) {
@@ -1,5 +1,6 @@
 package com.vanlang.bookstore.controller.admin;
 
+import com.vanlang.bookstore.cache.UserSummaryCache;
 import com.vanlang.bookstore.model.User;
 import com.vanlang.bookstore.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
@@ -15,6 +16,7 @@ public class AdminUserController {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserSummaryCache userSummaries;
 
     @GetMapping
     public String list(Model model) {
@@ -38,6 +40,7 @@ public class AdminUserController {
             user.setPassword(passwordEncoder.encode(rawPassword));
         }
         userRepository.save(user);
+        userSummaries.invalidateAll();
         return "redirect:/admin/users";
     }
 
@@ -63,12 +66,14 @@ public class AdminUserController {
             u.setPassword(passwordEncoder.encode(rawPassword));
         }
         userRepository.save(u);
+        userSummaries.invalidateAll(); // đầu trang / checkout của người đó thấy ngay
         return "redirect:/admin/users";
     }
 
     @PostMapping("/{id}/delete")
     public String delete(@PathVariable Long id) {
         userRepository.deleteById(id);
+        userSummaries.invalidateAll();
         return "redirect:/admin/users";
     }
 
@@ -77,6 +82,7 @@ public class AdminUserController {
         User u = userRepository.findById(id).orElseThrow();
         u.setEnabled(!Boolean.TRUE.equals(u.getEnabled()));  // đảo trạng thái true/false
         userRepository.save(u);
+        userSummaries.invalidateAll();
         return "redirect:/admin/users";
     }
 
@@ -0,0 +1,17 @@
+package com.vanlang.bookstore.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection gọn cho các trang danh sách (grid sách): chỉ các cột cần hiển thị,
+ * không kéo cột description (TEXT) và không cần proxy Category.
+ * Trang chi tiết sách vẫn dùng entity Book đầy đủ.
+ */
+public record BookCard(Long id,
+                       String title,
+                       String author,
+                       BigDecimal price,
+                       BigDecimal discountPrice,
+                       String imageUrl,
+                       String categorySlug) {
+}
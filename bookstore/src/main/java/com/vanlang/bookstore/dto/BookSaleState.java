@@ -0,0 +1,13 @@
+package com.vanlang.bookstore.dto;
+
+/**
+ * Trạng thái bán hiện tại của 1 cuốn, dùng để kiểm tra lại giỏ hàng:
+ * giá bán (đồng, đã tính discount), tồn kho (kể cả sách hot), còn bật bán không.
+ * Sách không có giá được coi như không bán (available = false).
+ */
+public record BookSaleState(Long id,
+                            String title,
+                            long unitPrice,
+                            int stock,
+                            boolean available) {
+}
@@ -0,0 +1,32 @@
+package com.vanlang.bookstore.dto;
+
+import com.vanlang.bookstore.model.User;
+
+/**
+ * Thông tin gọn của người đang đăng nhập: đầu trang (tên hiển thị, avatar), điền sẵn form checkout, gắn đơn hàng.
+ * Không kèm mật khẩu; lấy qua UserSummaryCache thay cho đọc lại entity User mỗi request.
+ */
+public record UserSummary(Long id,
+                          String username,
+                          String email,
+                          String fullName,
+                          String avatarUrl,
+                          String phone,
+                          String address,
+                          String shippingFullName,
+                          String shippingPhone,
+                          String shippingAddress,
+                          User.Role role) {
+
+    public static UserSummary of(User u) {
+        return new UserSummary(u.getId(), u.getUsername(), u.getEmail(), u.getFullName(), u.getAvatarUrl(),
+                u.getPhone(), u.getAddress(), u.getShippingFullName(), u.getShippingPhone(), u.getShippingAddress(),
+                u.getRole());
+    }
+
+    /** Họ tên, chưa có thì username / email */
+    public String displayName() {
+        if (fullName != null && !fullName.isBlank()) return fullName;
+        return (username != null && !username.isBlank()) ? username : email;
+    }
+}
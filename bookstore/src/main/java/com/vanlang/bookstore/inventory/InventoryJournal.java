@@ -0,0 +1,165 @@
+package com.vanlang.bookstore.inventory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Nhật ký ghi nối (append-only) cho tồn kho sách hot: dùng để khôi phục phần chưa kịp flush xuống DB khi tiến trình chết.
+ * Mỗi dòng 1 bản ghi:
+ *   D seq bookId delta       thay đổi trong bộ nhớ (bán: âm, hoàn: dương)
+ *   S seq bookId value       admin đặt lại tồn kho (bỏ qua các D trước đó của sách này)
+ *   P seq id:old:new,...     flusher sắp ghi DB, đã gồm mọi D có seq <= seq
+ *   C seq                    lần ghi DB đó đã commit
+ * Dòng cuối bị ghi dở (crash giữa chừng) thì bỏ qua.
+ */
+final class InventoryJournal implements Closeable {
+
+    /** Lần flush đã ghi P: sách -> {tồn kho cũ, tồn kho mới} trong DB */
+    record Prepared(long seq, Map<Long, int[]> changes) {
+        // DB đang mang giá trị mới của mọi dòng -> lần ghi đó đã commit dù chưa kịp ghi C
+        boolean appliedTo(Map<Long, Integer> dbStock) {
+            for (var e : changes.entrySet()) {
+                Integer db = dbStock.get(e.getKey());
+                if (db == null || db != e.getValue()[1]) return false;
+            }
+            return true;
+        }
+    }
+
+    /** Nội dung đọc lại từ file */
+    record Replay(long lastSeq, long committedSeq, Prepared uncommitted,
+                  List<long[]> deltas, Map<Long, Long> lastSetSeq) {
+
+        boolean isEmpty() {
+            return deltas.isEmpty() && uncommitted == null;
+        }
+
+        Set<Long> bookIds() {
+            Set<Long> ids = new HashSet<>(lastSetSeq.keySet());
+            for (long[] d : deltas) ids.add(d[1]);
+            if (uncommitted != null) ids.addAll(uncommitted.changes().keySet());
+            return ids;
+        }
+
+        /**
+         * Tồn kho đúng của các sách còn thay đổi chưa vào DB, tính từ tồn kho DB hiện tại.
+         * Sách không còn gì phải cộng / trừ thì không có trong kết quả.
+         */
+        Map<Long, Integer> resolve(Map<Long, Integer> dbStock) {
+            long base = committedSeq;
+            if (uncommitted != null && uncommitted.appliedTo(dbStock)) base = uncommitted.seq();
+
+            Map<Long, Integer> net = new HashMap<>();
+            for (long[] d : deltas) {
+                long from = Math.max(base, lastSetSeq.getOrDefault(d[1], -1L));
+                if (d[0] > from) net.merge(d[1], (int) d[2], Integer::sum);
+            }
+            Map<Long, Integer> out = new HashMap<>();
+            net.forEach((id, delta) -> {
+                if (delta != 0 && dbStock.containsKey(id)) out.put(id, Math.max(0, dbStock.get(id) + delta));
+            });
+            return out;
+        }
+    }
+
+    private final Path path;
+    private final boolean fsync;
+    private FileChannel channel;
+
+    InventoryJournal(Path path, boolean fsync) throws IOException {
+        this.path = path;
+        this.fsync = fsync;
+        Path dir = path.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        open();
+    }
+
+    /** Ghi thêm 1 hay nhiều dòng (mỗi dòng kết thúc bằng \n); FileChannel tự tuần tự hoá các lần write */
+    void append(CharSequence lines) throws IOException {
+        ByteBuffer buf = StandardCharsets.UTF_8.encode(lines.toString());
+        while (buf.hasRemaining()) channel.write(buf);
+        if (fsync) channel.force(false);
+    }
+
+    void sync() throws IOException {
+        channel.force(false);
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    /** Thay toàn bộ file (ghi file tạm rồi đổi tên nguyên tử); người gọi phải chặn mọi append trong lúc này */
+    void rewrite(CharSequence content) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.writeString(tmp, content, StandardCharsets.UTF_8);
+        try (FileChannel c = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            c.force(true);
+        }
+        channel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+    }
+
+    static Replay read(Path path) throws IOException {
+        long lastSeq = 0;
+        long committed = -1;
+        Prepared prepared = null;
+        List<long[]> deltas = new ArrayList<>();
+        Map<Long, Long> sets = new HashMap<>();
+        if (!Files.exists(path)) return new Replay(0, -1, null, deltas, sets);
+
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            String[] f = line.trim().split(" ");
+            try {
+                long seq = Long.parseLong(f[1]);
+                switch (f[0]) {
+                    case "D" -> deltas.add(new long[]{seq, Long.parseLong(f[2]), Long.parseLong(f[3])});
+                    case "S" -> sets.merge(Long.parseLong(f[2]), seq, Math::max);
+                    case "P" -> prepared = new Prepared(seq, parseChanges(f[2]));
+                    case "C" -> committed = Math.max(committed, seq);
+                    default -> { continue; }
+                }
+                lastSeq = Math.max(lastSeq, seq);
+            } catch (RuntimeException torn) {
+                // dòng ghi dở
+            }
+        }
+        Prepared uncommitted = (prepared != null && prepared.seq() > committed) ? prepared : null;
+        return new Replay(lastSeq, committed, uncommitted, deltas, sets);
+    }
+
+    // ===== helpers =====
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static Map<Long, int[]> parseChanges(String s) {
+        Map<Long, int[]> out = new LinkedHashMap<>();
+        for (String part : s.split(",")) {
+            String[] p = part.split(":");
+            out.put(Long.parseLong(p[0]), new int[]{Integer.parseInt(p[1]), Integer.parseInt(p[2])});
+        }
+        return out;
+    }
+}
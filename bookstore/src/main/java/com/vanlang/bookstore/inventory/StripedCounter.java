@@ -0,0 +1,73 @@
+package com.vanlang.bookstore.inventory;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Bộ đếm tồn kho chia thành nhiều ô (stripe), trừ / cộng bằng CAS, không khoá.
+ * Mỗi thread ưu tiên ô "nhà" của mình -> nhiều thread trừ cùng 1 sách ít khi đụng nhau;
+ * ô nhà hết thì lấy tiếp từ các ô khác. Không bao giờ trừ quá tổng (không âm kho).
+ * Gần hết hàng, 2 thread cùng lấy dở rồi trả lại có thể cùng báo "thiếu" (âm tính giả), không có bán lố.
+ */
+final class StripedCounter {
+
+    // 16 int = 64 byte: mỗi ô nằm trên 1 cache line riêng, tránh false sharing
+    private static final int PAD = 16;
+
+    private final int stripes;
+    private final AtomicIntegerArray cells;
+
+    StripedCounter(int stripes, int initial) {
+        this.stripes = Math.max(1, stripes);
+        this.cells = new AtomicIntegerArray(this.stripes * PAD);
+        reset(initial);
+    }
+
+    /**
+     * Trừ q nếu đủ, và sau khi trừ vẫn còn ít nhất keep (phần đang giữ cho người khác).
+     * @return false = không đủ, không thay đổi gì
+     */
+    boolean tryTake(int q, int keep) {
+        int home = home();
+        int taken = 0;
+        for (int i = 0; i < stripes && taken < q; i++) {
+            int idx = ((home + i) % stripes) * PAD;
+            while (true) {
+                int v = cells.get(idx);
+                if (v <= 0) break;
+                int t = Math.min(v, q - taken);
+                if (cells.compareAndSet(idx, v, v - t)) {
+                    taken += t;
+                    break;
+                }
+            }
+        }
+        if (taken < q || (keep > 0 && sum() < keep)) {
+            if (taken > 0) cells.addAndGet(home * PAD, taken);
+            return false;
+        }
+        return true;
+    }
+
+    void add(int delta) {
+        cells.addAndGet(home() * PAD, delta);
+    }
+
+    int sum() {
+        int s = 0;
+        for (int i = 0; i < stripes; i++) s += cells.get(i * PAD);
+        return s;
+    }
+
+    /** Đặt lại tổng, chia đều cho các ô */
+    void reset(int value) {
+        int v = Math.max(0, value);
+        for (int i = 0; i < stripes; i++) {
+            cells.set(i * PAD, v / stripes + (i < v % stripes ? 1 : 0));
+        }
+    }
+
+    private int home() {
+        long id = Thread.currentThread().getId();
+        return (int) Math.floorMod(id * 0x9E3779B97F4A7C15L >>> 32, (long) stripes);
+    }
+}
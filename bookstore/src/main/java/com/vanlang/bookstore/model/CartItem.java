@@ -1,27 +1,24 @@
 package com.vanlang.bookstore.model;
 
+import com.vanlang.bookstore.dto.BookCard;
+import com.vanlang.bookstore.pricing.PriceEngine;
 import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-import java.io.Serializable;
-import java.math.BigDecimal;
+import lombok.Getter;
 
-@Data
-@NoArgsConstructor
+/**
+ * 1 dòng giỏ hàng để hiển thị / đặt đơn: dựng lúc cần từ CartLines (CartCache) + BookCard (CatalogCache),
+ * không được lưu lại.
+ */
+@Getter
 @AllArgsConstructor
-public class CartItem implements Serializable {
+public class CartItem {
 
-    private Book book;
-    private int quantity;
+    private final BookCard book;
+    private final int quantity;
+    /** Giá bán 1 cuốn (đồng), chốt lúc thêm vào giỏ */
+    private final long unitPrice;
 
-    public BigDecimal getSubtotal() {
-        BigDecimal price = book.getDiscountPrice() != null ?
-                book.getDiscountPrice() : book.getPrice();
-        return price.multiply(BigDecimal.valueOf(quantity));
+    public long getSubtotal() {
+        return PriceEngine.lineTotal(unitPrice, quantity);
     }
-
-    public BigDecimal getUnitPrice() {
-        return book.getDiscountPrice() != null ?
-                book.getDiscountPrice() : book.getPrice();
-    }
-}
\ No newline at end of file
+}
@@ -14,7 +14,9 @@ import java.util.List;
 public class Order {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "orders_id")
+    @TableGenerator(name = "orders_id", table = "id_sequences", pkColumnName = "seq_name",
+            valueColumnName = "next_val", pkColumnValue = "orders", allocationSize = 50)
     private Long id;
 
     /** Mã đơn hàng (unique) */
@@ -56,6 +58,13 @@ public class Order {
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
+    /**
+     * Key chống gửi trùng form checkout (UUID phát kèm form); unique trong DB.
+     * MySQL: ALTER TABLE orders ADD COLUMN idempotency_key VARCHAR(36) NULL, ADD UNIQUE KEY uk_orders_idempotency_key (idempotency_key);
+     */
+    @Column(name = "idempotency_key", length = 36, unique = true)
+    private String idempotencyKey;
+
     /** Dòng hàng */
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
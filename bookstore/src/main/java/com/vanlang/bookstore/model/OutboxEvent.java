@@ -0,0 +1,62 @@
+package com.vanlang.bookstore.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sự kiện chờ xử lý sau khi đơn được đặt (transactional outbox): ghi cùng transaction với Order,
+ * OutboxDispatcher đọc ra xử lý ở background.
+ * Bảng: db/migration/V3__outbox_events.sql
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_pending", columnList = "processed_at, failed_at, id"),
+        @Index(name = "idx_outbox_aggregate", columnList = "aggregate_id")
+})
+@Getter @Setter
+@NoArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Đối tượng gốc (id đơn hàng): các sự kiện cùng aggregate được xử lý đúng thứ tự */
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+
+    @Column(length = 50, nullable = false)
+    private String type;
+
+    /** JSON */
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    /** Lần thử lại kế tiếp (null = xử lý ngay) */
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    /** Hết lượt thử lại -> bỏ qua, chờ admin xem */
+    @Column(name = "failed_at")
+    private LocalDateTime failedAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    /** Handler đã chạy xong (OutboxHandler.name(), cách nhau dấu phẩy): lần thử lại chỉ gọi các handler còn lại */
+    @Column(name = "done_handlers", length = 500)
+    private String doneHandlers;
+}
@@ -0,0 +1,41 @@
+package com.vanlang.bookstore.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vanlang.bookstore.model.OutboxEvent;
+import com.vanlang.bookstore.service.BookService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/** Cảnh báo sách sắp hết hàng sau mỗi đơn (1 query tồn kho cho cả đơn) */
+@Component
+public class LowStockAlertHandler implements OutboxHandler {
+
+    private final ObjectMapper objectMapper;
+    private final BookService bookService;
+    private final int threshold;
+
+    public LowStockAlertHandler(ObjectMapper objectMapper, BookService bookService,
+                                @Value("${bookstore.outbox.low-stock-threshold:5}") int threshold) {
+        this.objectMapper = objectMapper;
+        this.bookService = bookService;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public String type() {
+        return OrderPlacedEvent.TYPE;
+    }
+
+    @Override
+    public void handle(OutboxEvent event) throws Exception {
+        OrderPlacedEvent e = objectMapper.readValue(event.getPayload(), OrderPlacedEvent.class);
+        Map<Long, Integer> stock = bookService.currentStock(e.quantities().keySet());
+        stock.forEach((bookId, left) -> {
+            if (left <= threshold) {
+                System.out.println("WARN: sách #" + bookId + " sắp hết hàng: còn " + left + " (sau đơn " + e.orderNumber() + ")");
+            }
+        });
+    }
+}
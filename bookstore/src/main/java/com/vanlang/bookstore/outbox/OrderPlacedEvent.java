@@ -0,0 +1,13 @@
+package com.vanlang.bookstore.outbox;
+
+import java.util.Map;
+
+/**
+ * Payload của sự kiện "đã đặt đơn"; quantities: bookId -> số lượng.
+ * customerEmail để dành cho handler gửi mail xác nhận (chưa có, cần SMTP)
+ */
+public record OrderPlacedEvent(Long orderId, String orderNumber, String customerEmail, long total,
+                               Map<Long, Integer> quantities) {
+
+    public static final String TYPE = "ORDER_PLACED";
+}
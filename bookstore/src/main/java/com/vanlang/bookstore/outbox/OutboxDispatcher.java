@@ -0,0 +1,252 @@
+package com.vanlang.bookstore.outbox;
+
+import com.vanlang.bookstore.model.OutboxEvent;
+import com.vanlang.bookstore.repository.OutboxEventRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Đọc outbox_events theo lô và giao cho các OutboxHandler ở background.
+ * - 1 thread poll (định kỳ + được đánh thức ngay sau khi đơn commit)
+ * - Xử lý trên N "làn", mỗi làn 1 thread; sự kiện cùng đơn luôn vào cùng làn, theo thứ tự id
+ * - Lỗi: thử lại với backoff tăng gấp đôi, chỉ gọi lại các handler chưa xong; sự kiện sau của cùng đơn chờ
+ *   sự kiện lỗi; hết lượt thì đánh dấu failed
+ * - Loại sự kiện chưa có handler (VD bản deploy cũ đọc sự kiện của bản mới) để nguyên chờ, không đánh dấu xong
+ * - Đánh dấu đã xử lý cả lô bằng 1 câu UPDATE
+ * Thời gian checkout không phụ thuộc số handler.
+ */
+@Component
+public class OutboxDispatcher {
+
+    /** Số liệu cho dashboard admin */
+    public record Stats(long processed, long retried, long failed, long pending, long lastLagMillis,
+                        long oldestPendingAgeMillis) {}
+
+    private final boolean enabled;
+    private final long pollIntervalMs;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration retryBase;
+    private final Duration retention;
+
+    private final OutboxEventRepository repository;
+    private final TransactionTemplate tx;
+    private final Map<String, List<OutboxHandler>> handlers = new HashMap<>();
+
+    private final ExecutorService[] lanes;
+    private ScheduledExecutorService poller;
+    private final AtomicBoolean wakeQueued = new AtomicBoolean();
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private volatile String lastWarning;
+    private volatile LocalDateTime lastCleanup = LocalDateTime.MIN;
+
+    public OutboxDispatcher(@Value("${bookstore.outbox.enabled:true}") boolean enabled,
+                            @Value("${bookstore.outbox.poll-interval-ms:1000}") long pollIntervalMs,
+                            @Value("${bookstore.outbox.batch-size:100}") int batchSize,
+                            @Value("${bookstore.outbox.workers:2}") int workers,
+                            @Value("${bookstore.outbox.max-attempts:10}") int maxAttempts,
+                            @Value("${bookstore.outbox.retry-base-ms:1000}") long retryBaseMs,
+                            @Value("${bookstore.outbox.retention-days:7}") long retentionDays,
+                            OutboxEventRepository repository,
+                            PlatformTransactionManager transactionManager,
+                            List<OutboxHandler> handlerBeans) {
+        this.enabled = enabled;
+        this.pollIntervalMs = pollIntervalMs;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBase = Duration.ofMillis(retryBaseMs);
+        this.retention = Duration.ofDays(retentionDays);
+        this.repository = repository;
+        this.tx = new TransactionTemplate(transactionManager);
+        for (OutboxHandler h : handlerBeans) {
+            List<OutboxHandler> sameType = handlers.computeIfAbsent(h.type(), k -> new ArrayList<>());
+            if (sameType.stream().anyMatch(o -> o.name().equals(h.name()))) {
+                throw new IllegalStateException("Trùng tên outbox handler: " + h.name());
+            }
+            sameType.add(h);
+        }
+        this.lanes = new ExecutorService[Math.max(1, workers)];
+        for (int i = 0; i < lanes.length; i++) {
+            String name = "outbox-worker-" + i;
+            // hàng đợi có giới hạn: mỗi lô tối đa batchSize nhóm
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, batchSize)), r -> daemon(r, name),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+    }
+
+    // Chỉ poll khi app đã sẵn sàng (schema / migration xong), không chạy song song với lúc khởi tạo context
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || poller != null) return;
+        poller = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "outbox-poller"));
+        poller.scheduleWithFixedDelay(this::drainQuietly, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (poller != null) poller.shutdownNow();
+        for (ExecutorService lane : lanes) lane.shutdown();
+    }
+
+    /** Có sự kiện mới vừa commit: poll ngay (gộp nhiều lần gọi thành 1) */
+    public void wakeUp() {
+        if (poller == null || poller.isShutdown() || !wakeQueued.compareAndSet(false, true)) return;
+        poller.execute(() -> {
+            wakeQueued.set(false);
+            drainQuietly();
+        });
+    }
+
+    /** Xử lý hết các sự kiện đang sẵn sàng; trả về số sự kiện đã xử lý xong (test gọi trực tiếp) */
+    public synchronized int drain() throws Exception {
+        int done = 0;
+        while (!handlers.isEmpty()) {
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxEvent> batch = repository.findReady(now, handlers.keySet(), PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) break;
+
+            // nhóm theo đơn, giữ thứ tự id trong nhóm
+            Map<Long, List<OutboxEvent>> groups = new LinkedHashMap<>();
+            for (OutboxEvent e : batch) groups.computeIfAbsent(e.getAggregateId(), k -> new ArrayList<>()).add(e);
+
+            List<Long> ok = new ArrayList<>();
+            Map<OutboxEvent, Exception> errors = new ConcurrentHashMap<>();
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (var g : groups.entrySet()) {
+                ExecutorService lane = lanes[(int) Math.floorMod(g.getKey(), (long) lanes.length)];
+                futures.add(lane.submit(() -> runGroup(g.getValue(), errors)));
+            }
+            for (Future<List<Long>> f : futures) ok.addAll(f.get());
+
+            tx.executeWithoutResult(status -> {
+                if (!ok.isEmpty()) repository.markProcessed(ok, LocalDateTime.now());
+                errors.forEach(this::recordFailure);
+            });
+            done += ok.size();
+            // lô thiếu / không tiến triển -> đợi lượt sau
+            if (batch.size() < batchSize || ok.isEmpty()) break;
+        }
+        cleanup();
+        return done;
+    }
+
+    public Stats stats() {
+        long pending = repository.countPending();
+        LocalDateTime oldest = repository.oldestPendingCreatedAt();
+        long age = (oldest == null) ? 0 : Math.max(0, Duration.between(oldest, LocalDateTime.now()).toMillis());
+        return new Stats(processed.get(), retried.get(), repository.countFailed(), pending, lastLagMillis.get(), age);
+    }
+
+    // ===== helpers =====
+
+    // Trong 1 làn: xử lý lần lượt; 1 sự kiện lỗi thì dừng nhóm (sự kiện sau của đơn đó chờ)
+    private List<Long> runGroup(List<OutboxEvent> group, Map<OutboxEvent, Exception> errors) {
+        List<Long> ok = new ArrayList<>();
+        for (OutboxEvent e : group) {
+            Set<String> done = doneHandlers(e);
+            try {
+                for (OutboxHandler h : handlers.get(e.getType())) {
+                    if (done.contains(h.name())) continue; // đã xong ở lần trước
+                    h.handle(e);
+                    done.add(h.name());
+                }
+                ok.add(e.getId());
+                processed.incrementAndGet();
+                lastLagMillis.set(Duration.between(e.getCreatedAt(), LocalDateTime.now()).toMillis());
+            } catch (Exception ex) {
+                e.setDoneHandlers(done.isEmpty() ? null : String.join(",", done)); // recordFailure lưu lại
+                errors.put(e, ex);
+                break;
+            }
+        }
+        return ok;
+    }
+
+    private static Set<String> doneHandlers(OutboxEvent e) {
+        Set<String> done = new LinkedHashSet<>();
+        if (e.getDoneHandlers() != null && !e.getDoneHandlers().isBlank()) {
+            done.addAll(Arrays.asList(e.getDoneHandlers().split(",")));
+        }
+        return done;
+    }
+
+    private void recordFailure(OutboxEvent e, Exception ex) {
+        int attempts = e.getAttempts() + 1;
+        e.setAttempts(attempts);
+        e.setLastError(truncate(ex.getClass().getSimpleName() + ": " + ex.getMessage()));
+        if (attempts >= maxAttempts) {
+            e.setFailedAt(LocalDateTime.now());
+            System.out.println("WARN: outbox event #" + e.getId() + " (" + e.getType() + ") failed: " + e.getLastError());
+        } else {
+            // 1s, 2s, 4s... tối đa 1 giờ
+            long delay = Math.min(retryBase.toMillis() << Math.min(attempts - 1, 20), Duration.ofHours(1).toMillis());
+            e.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(delay)));
+            retried.incrementAndGet();
+        }
+        repository.save(e);
+    }
+
+    // Xoá sự kiện đã xử lý quá hạn lưu, tối đa 1 lần / giờ
+    private void cleanup() {
+        LocalDateTime now = LocalDateTime.now();
+        if (lastCleanup.isAfter(now.minusHours(1))) return;
+        lastCleanup = now;
+        tx.executeWithoutResult(status -> repository.deleteProcessedBefore(now.minus(retention)));
+    }
+
+    private void drainQuietly() {
+        try {
+            drain();
+            lastWarning = null;
+        } catch (Exception e) {
+            // DB chưa sẵn sàng...: chỉ in 1 lần cho mỗi lỗi khác nhau, không spam log mỗi giây
+            String msg = String.valueOf(e.getMessage());
+            if (!Objects.equals(msg, lastWarning)) {
+                System.out.println("WARN: outbox dispatch skipped: " + msg);
+                lastWarning = msg;
+            }
+        }
+    }
+
+    private static String truncate(String s) {
+        return (s.length() <= 500) ? s : s.substring(0, 500);
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,22 @@
+package com.vanlang.bookstore.outbox;
+
+import com.vanlang.bookstore.model.OutboxEvent;
+
+/**
+ * Xử lý 1 loại sự kiện outbox. Khai báo thành bean là OutboxDispatcher tự nhận.
+ * Giao ít nhất 1 lần: 1 handler lỗi thì lần thử lại chỉ gọi các handler chưa xong của sự kiện đó,
+ * nhưng tiến trình chết giữa chừng vẫn có thể gọi lại handler đã xong -> handler phải chịu được chạy lặp.
+ */
+public interface OutboxHandler {
+
+    /** Loại sự kiện xử lý (VD OrderPlacedEvent.TYPE) */
+    String type();
+
+    /** Ném exception = thất bại, sự kiện được thử lại sau */
+    void handle(OutboxEvent event) throws Exception;
+
+    /** Tên lưu trong outbox_events.done_handlers, không trùng giữa các handler cùng loại */
+    default String name() {
+        return getClass().getName();
+    }
+}
@@ -0,0 +1,39 @@
+package com.vanlang.bookstore.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vanlang.bookstore.model.OutboxEvent;
+import com.vanlang.bookstore.repository.OutboxEventRepository;
+import com.vanlang.bookstore.service.AfterCommit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/** Ghi sự kiện vào outbox trong transaction đang chạy (bắt buộc có): rollback thì sự kiện cũng mất theo */
+@Component
+@RequiredArgsConstructor
+public class OutboxPublisher {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxDispatcher dispatcher;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(Long aggregateId, String type, Object payload) {
+        OutboxEvent e = new OutboxEvent();
+        e.setAggregateId(aggregateId);
+        e.setType(type);
+        try {
+            e.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Không serialize được sự kiện " + type, ex);
+        }
+        e.setCreatedAt(LocalDateTime.now());
+        outboxEventRepository.save(e);
+        // commit xong thì gọi dispatcher chạy luôn, không chờ tới lượt poll
+        AfterCommit.run(dispatcher::wakeUp);
+    }
+}
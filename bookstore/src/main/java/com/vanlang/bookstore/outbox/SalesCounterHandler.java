@@ -0,0 +1,58 @@
+package com.vanlang.bookstore.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vanlang.bookstore.model.OutboxEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Đếm số cuốn bán được theo sách kể từ lúc khởi động (số liệu "bán chạy" tức thời, không query bảng đơn).
+ * Ghi nhớ id sự kiện đã đếm để giao lặp không đếm 2 lần.
+ */
+@Component
+@RequiredArgsConstructor
+public class SalesCounterHandler implements OutboxHandler {
+
+    private final ObjectMapper objectMapper;
+    private final Map<Long, LongAdder> sold = new ConcurrentHashMap<>();
+    // id sự kiện đã đếm gần đây (giới hạn kích thước)
+    private final Set<Long> counted = Collections.newSetFromMap(Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > 10_000;
+        }
+    }));
+
+    @Override
+    public String type() {
+        return OrderPlacedEvent.TYPE;
+    }
+
+    @Override
+    public void handle(OutboxEvent event) throws Exception {
+        if (counted.contains(event.getId())) return;
+        OrderPlacedEvent e = objectMapper.readValue(event.getPayload(), OrderPlacedEvent.class);
+        if (!counted.add(event.getId())) return;
+        e.quantities().forEach((bookId, q) -> sold.computeIfAbsent(bookId, k -> new LongAdder()).add(q));
+    }
+
+    /** n sách bán nhiều nhất: bookId -> số cuốn */
+    public Map<Long, Long> top(int n) {
+        Map<Long, Long> out = new LinkedHashMap<>();
+        List<Map.Entry<Long, LongAdder>> entries = sold.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<Long, LongAdder> en) -> en.getValue().sum()).reversed())
+                .limit(n)
+                .toList();
+        entries.forEach(en -> out.put(en.getKey(), en.getValue().sum()));
+        return out;
+    }
+}
@@ -0,0 +1,44 @@
+package com.vanlang.bookstore.pricing;
+
+import com.vanlang.bookstore.model.Book;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Tính tiền bằng long (đồng VND, không có phần lẻ) thay cho BigDecimal: cùng đơn vị với OrderItem.price / Order.total.
+ * Giá bán (discountPrice nếu có, không thì price) chỉ quy đổi 1 lần khi giỏ thay đổi; cộng / nhân sau đó không tạo object.
+ * Tràn số -> ArithmeticException (không âm thầm sai tiền).
+ */
+public final class PriceEngine {
+
+    private PriceEngine() {}
+
+    /** Giá bán 1 cuốn (đồng) */
+    public static long unitPrice(Book book) {
+        if (book.getDiscountPrice() == null && book.getPrice() == null) {
+            throw new IllegalStateException("Sản phẩm không có giá hợp lệ: " + book.getTitle());
+        }
+        return unitPrice(book.getPrice(), book.getDiscountPrice());
+    }
+
+    /** Như trên, từ 2 cột giá (projection); cả 2 null -> IllegalStateException */
+    public static long unitPrice(BigDecimal price, BigDecimal discountPrice) {
+        BigDecimal selling = (discountPrice != null) ? discountPrice : price;
+        if (selling == null) throw new IllegalStateException("Sản phẩm không có giá hợp lệ");
+        return toVnd(selling);
+    }
+
+    /** Làm tròn về đồng (HALF_UP, như lúc lưu đơn trước đây) */
+    public static long toVnd(BigDecimal amount) {
+        return amount.setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    public static long lineTotal(long unitPrice, int quantity) {
+        return Math.multiplyExact(unitPrice, (long) quantity);
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+}
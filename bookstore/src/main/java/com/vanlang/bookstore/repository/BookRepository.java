@@ -1,17 +1,24 @@
 package com.vanlang.bookstore.repository;
 
+import com.vanlang.bookstore.dto.BookCard;
 import com.vanlang.bookstore.model.Book;
 import com.vanlang.bookstore.model.Category;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookStockRepository {
     // Giữ nguyên các hàm cũ
     Page<Book> findByCategory(Category category, Pageable pageable);
     Page<Book> findByTitleContainingIgnoreCase(String title, Pageable pageable);
@@ -33,4 +40,84 @@ public interface BookRepository extends JpaRepository<Book, Long> {
     List<Book> findByTitleContainingIgnoreCase(String title, Sort sort);
     List<Book> findByCategoryId(Long categoryId, Sort sort);
     List<Book> findByTitleContainingIgnoreCaseAndCategoryId(String title, Long categoryId, Sort sort);
+
+    // ======= Trang chi tiết / form sửa: lấy kèm category (open-in-view = false) =======
+    @EntityGraph(attributePaths = "category")
+    @Query("select b from Book b where b.id = :id")
+    Optional<Book> findWithCategoryById(@Param("id") Long id);
+
+    // Số sách theo danh mục (thay cho cat.books.size() gây N+1)
+    @Query("select b.category.id, count(b) from Book b where b.category is not null group by b.category.id")
+    List<Object[]> countGroupByCategory();
+
+    // ======= BookCard: projection cho trang danh sách (không kéo description), kèm slug danh mục =======
+    String CARD_SELECT = "select new com.vanlang.bookstore.dto.BookCard("
+            + "b.id, b.title, b.author, b.price, b.discountPrice, b.imageUrl, c.slug) "
+            + "from Book b left join b.category c";
+
+    @Query(value = CARD_SELECT, countQuery = "select count(b) from Book b")
+    Page<BookCard> findAllCards(Pageable pageable);
+
+    @Query(value = CARD_SELECT + " where c.id = :categoryId",
+            countQuery = "select count(b) from Book b where b.category.id = :categoryId")
+    Page<BookCard> findCardsByCategoryId(@Param("categoryId") Long categoryId, Pageable pageable);
+
+    @Query(value = CARD_SELECT + " where lower(b.title) like lower(concat('%', :kw, '%'))",
+            countQuery = "select count(b) from Book b where lower(b.title) like lower(concat('%', :kw, '%'))")
+    Page<BookCard> findCardsByTitle(@Param("kw") String keyword, Pageable pageable);
+
+    @Query(value = CARD_SELECT + " where c.id = :categoryId and lower(b.title) like lower(concat('%', :kw, '%'))",
+            countQuery = "select count(b) from Book b where b.category.id = :categoryId"
+                    + " and lower(b.title) like lower(concat('%', :kw, '%'))")
+    Page<BookCard> findCardsByCategoryIdAndTitle(@Param("categoryId") Long categoryId,
+                                                 @Param("kw") String keyword,
+                                                 Pageable pageable);
+
+    @Query(CARD_SELECT + " where b.id in :ids")
+    List<BookCard> findCardsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(CARD_SELECT + " where b.featured = true")
+    List<BookCard> findFeaturedCards();
+
+    @Query(CARD_SELECT + " where b.newArrival = true")
+    List<BookCard> findNewArrivalCards();
+
+    @Query(CARD_SELECT + " where b.bestSeller = true")
+    List<BookCard> findBestSellerCards();
+
+    @Query(CARD_SELECT + " where b.stock > 0 order by b.createdAt desc")
+    List<BookCard> findLatestCards(Pageable pageable);
+
+    // ======= Keyset (seek) theo id: không OFFSET, không COUNT =======
+    // before = lùi về sách cũ hơn (trang sau), after = sách mới hơn (trang trước)
+    @Query(CARD_SELECT + " where b.id < :before order by b.id desc")
+    Slice<BookCard> findCardsBefore(@Param("before") Long before, Pageable pageable);
+
+    @Query(CARD_SELECT + " where b.id > :after order by b.id asc")
+    Slice<BookCard> findCardsAfter(@Param("after") Long after, Pageable pageable);
+
+    @Query(CARD_SELECT + " where c.id = :categoryId and b.id < :before order by b.id desc")
+    Slice<BookCard> findCategoryCardsBefore(@Param("categoryId") Long categoryId,
+                                            @Param("before") Long before, Pageable pageable);
+
+    @Query(CARD_SELECT + " where c.id = :categoryId and b.id > :after order by b.id asc")
+    Slice<BookCard> findCategoryCardsAfter(@Param("categoryId") Long categoryId,
+                                           @Param("after") Long after, Pageable pageable);
+
+    // Dùng để build BookSearchIndex: chỉ lấy các cột cần index, đọc theo lô id tăng dần
+    @Query("select b.id, b.title, b.author, b.publisher, b.isbn from Book b where b.id > :afterId order by b.id")
+    List<Object[]> findSearchRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Kiểm tra lại giỏ hàng: giá, tồn kho, còn bán hay không của mọi dòng trong 1 query
+    @Query("select b.id, b.title, b.price, b.discountPrice, b.stock, b.enabled from Book b where b.id in :ids")
+    List<Object[]> findSaleRows(@Param("ids") Collection<Long> ids);
+
+    // {id, title, stock} của vài cuốn, không nạp entity (báo thiếu hàng, đọc tồn kho)
+    @Query("select b.id, b.title, b.stock from Book b where b.id in :ids")
+    List<Object[]> findStockRows(@Param("ids") Collection<Long> ids);
+
+    // Flusher của HotStockService: chỉ ghi khi DB vẫn đúng giá trị nó đã biết (chạy lại không cộng 2 lần)
+    @Modifying
+    @Query("update Book b set b.stock = :newStock where b.id = :id and b.stock = :oldStock")
+    int compareAndSetStock(@Param("id") Long id, @Param("oldStock") int oldStock, @Param("newStock") int newStock);
 }
@@ -0,0 +1,27 @@
+package com.vanlang.bookstore.repository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Thao tác tồn kho bằng câu UPDATE có điều kiện (không đọc - sửa - ghi trong Java).
+ * Gộp vào BookRepository như một fragment, phần cài đặt ở BookStockRepositoryImpl.
+ */
+public interface BookStockRepository {
+
+    /**
+     * Trừ kho nhiều sách trong 1 câu UPDATE: stock = stock - q, updated_at = now WHERE stock >= q + keep.
+     * Tất cả hoặc không: thiếu hàng ở 1 dòng thì các dòng khác cũng không bị trừ (savepoint, transaction vẫn dùng tiếp).
+     * @param quantities bookId -> số lượng (> 0)
+     * @param keep       bookId -> số phải để lại sau khi trừ (hàng đang giữ cho người khác), thiếu = 0
+     * @param now        ghi vào updated_at của các dòng được trừ
+     * @return quantities.size() nếu trừ được hết; 0 nếu có sách không đủ hàng
+     */
+    int decrementStock(Map<Long, Integer> quantities, Map<Long, Integer> keep, LocalDateTime now);
+
+    /**
+     * Cộng kho nhiều sách (huỷ đơn...) trong 1 câu UPDATE: stock = stock + q, updated_at = now.
+     * @return số dòng được cộng
+     */
+    int incrementStock(Map<Long, Integer> quantities, LocalDateTime now);
+}
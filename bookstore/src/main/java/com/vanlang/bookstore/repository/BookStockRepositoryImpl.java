@@ -0,0 +1,83 @@
+package com.vanlang.bookstore.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.hibernate.Session;
+
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+class BookStockRepositoryImpl implements BookStockRepository {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public int decrementStock(Map<Long, Integer> quantities, Map<Long, Integer> keep, LocalDateTime now) {
+        if (quantities.isEmpty()) return 0;
+
+        // Sắp theo id: mọi giao dịch khoá dòng theo cùng thứ tự -> tránh deadlock giữa 2 đơn
+        Map<Long, Integer> sorted = new TreeMap<>(quantities);
+
+        // qty: số trừ; min: tồn kho tối thiểu trước khi trừ = số trừ + phần đang giữ cho người khác
+        StringBuilder qty = new StringBuilder("(case b.id");
+        StringBuilder min = new StringBuilder("(case b.id");
+        int i = 0;
+        for (Long id : sorted.keySet()) {
+            qty.append(" when :id").append(i).append(" then :q").append(i);
+            min.append(" when :id").append(i).append(" then :m").append(i);
+            i++;
+        }
+        qty.append(" else 0 end)");
+        min.append(" else 0 end)");
+
+        Query q = em.createQuery("update Book b set b.stock = b.stock - " + qty
+                + ", b.updatedAt = :now"
+                + " where b.id in :ids and b.stock >= " + min);
+        i = 0;
+        for (var e : sorted.entrySet()) {
+            q.setParameter("id" + i, e.getKey());
+            q.setParameter("q" + i, e.getValue());
+            q.setParameter("m" + i, e.getValue() + keep.getOrDefault(e.getKey(), 0));
+            i++;
+        }
+        q.setParameter("ids", sorted.keySet());
+        q.setParameter("now", now);
+
+        // nhiều dòng: savepoint trước khi trừ, thiếu ở 1 dòng thì trả lại cả các dòng vừa trừ (vẫn trong transaction)
+        Session session = em.unwrap(Session.class);
+        Savepoint savepoint = (sorted.size() > 1) ? session.doReturningWork(Connection::setSavepoint) : null;
+        int updated = q.executeUpdate();
+        if (updated == sorted.size()) return updated;
+        if (savepoint != null) session.doWork(c -> c.rollback(savepoint));
+        return 0;
+    }
+
+    @Override
+    public int incrementStock(Map<Long, Integer> quantities, LocalDateTime now) {
+        if (quantities.isEmpty()) return 0;
+
+        Map<Long, Integer> sorted = new TreeMap<>(quantities); // cùng thứ tự khoá dòng như decrementStock
+        StringBuilder qty = new StringBuilder("(case b.id");
+        for (int i = 0; i < sorted.size(); i++) {
+            qty.append(" when :id").append(i).append(" then :q").append(i);
+        }
+        qty.append(" else 0 end)");
+
+        Query q = em.createQuery("update Book b set b.stock = b.stock + " + qty
+                + ", b.updatedAt = :now where b.id in :ids");
+        int i = 0;
+        for (var e : sorted.entrySet()) {
+            q.setParameter("id" + i, e.getKey());
+            q.setParameter("q" + i, e.getValue());
+            i++;
+        }
+        q.setParameter("ids", sorted.keySet());
+        q.setParameter("now", now);
+        return q.executeUpdate();
+    }
+}
@@ -6,6 +6,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
 
@@ -16,4 +18,13 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     """)
     Long sumItemsBetween(@Param("start") LocalDateTime start,
                          @Param("end") LocalDateTime end);
+
+    /** Tổng số lượng theo sách của các đơn: mỗi dòng {bookId, sum(quantity)} */
+    @Query("""
+        select i.book.id, sum(i.quantity)
+        from OrderItem i
+        where i.order.id in :orderIds
+        group by i.book.id
+    """)
+    List<Object[]> sumQuantityByBook(@Param("orderIds") Collection<Long> orderIds);
 }
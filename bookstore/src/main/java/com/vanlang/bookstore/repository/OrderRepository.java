@@ -6,12 +6,16 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.EntityGraph;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,15 +25,52 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     // ======= CRUD & lookup thường dùng =======
     Optional<Order> findByOrderNumber(String orderNumber);
     boolean existsByOrderNumber(String orderNumber);
+    // Đơn theo key chống gửi trùng, chỉ khi đúng chủ đơn (đăng nhập bằng email hoặc username)
+    @Query("select o from Order o join o.user u where o.idempotencyKey = :key and (u.email = :login or u.username = :login)")
+    Optional<Order> findByIdempotencyKeyForUser(@Param("key") String idempotencyKey, @Param("login") String login);
 
-    List<Order> findByUserOrderByCreatedAtDesc(User user);
+    List<Order> findByUserIdOrderByCreatedAtDesc(Long userId);
     Page<Order> findByUserOrderByCreatedAtDesc(User user, Pageable pageable);
 
     // ======= Dành cho màn detail: fetch full để tránh Lazy =======
+    @EntityGraph(attributePaths = {"items", "items.book", "user"})
+    @Query("select o from Order o where o.orderNumber = :orderNumber")
+    Optional<Order> findByOrderNumberWithItems(@Param("orderNumber") String orderNumber);
+
+    // Màn list admin: lấy kèm user trong 1 query
+    @EntityGraph(attributePaths = "user")
+    @Query("select o from Order o")
+    List<Order> findAllWithUser();
+
     @EntityGraph(attributePaths = {"items", "items.book", "user"})
     @Query("select o from Order o where o.id = :id")
     Optional<Order> findByIdWithItems(@Param("id") Long id);
 
+    // ======= Chuyển trạng thái theo lô (không nạp entity) =======
+
+    /** {id, status} của các đơn, khoá dòng tới hết transaction (2 admin cùng huỷ 1 đơn không hoàn kho 2 lần) */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o.id, o.status from Order o where o.id in :ids")
+    List<Object[]> lockStatusRows(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("update Order o set o.status = :status where o.id in :ids")
+    int updateStatusIn(@Param("ids") Collection<Long> ids, @Param("status") String status);
+
+    // Huỷ: total = 0 để dashboard/report tự trừ doanh thu
+    @Modifying
+    @Query("update Order o set o.status = 'CANCELED', o.total = 0 where o.id in :ids")
+    int cancelIn(@Param("ids") Collection<Long> ids);
+
+    // Khôi phục: tính lại total từ các dòng hàng
+    @Modifying
+    @Query("""
+        update Order o set o.status = :status,
+            o.total = (select coalesce(sum(i.quantity * i.price), 0) from OrderItem i where i.order = o)
+        where o.id in :ids
+    """)
+    int restoreIn(@Param("ids") Collection<Long> ids, @Param("status") String status);
+
     // ======= Dashboard / thống kê =======
     List<Order> findTop10ByOrderByCreatedAtDesc();
 
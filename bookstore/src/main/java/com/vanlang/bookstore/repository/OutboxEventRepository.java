@@ -0,0 +1,43 @@
+package com.vanlang.bookstore.repository;
+
+import com.vanlang.bookstore.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Sự kiện chờ xử lý theo id, chỉ các loại có handler; bỏ qua cả aggregate nếu có sự kiện của nó
+    // đang chờ thử lại (giữ thứ tự trong 1 đơn)
+    @Query("select e from OutboxEvent e where e.processedAt is null and e.failedAt is null and e.type in :types"
+            + " and not exists (select p.id from OutboxEvent p where p.aggregateId = e.aggregateId"
+            + " and p.processedAt is null and p.failedAt is null and p.nextAttemptAt > :now)"
+            + " order by e.id")
+    List<OutboxEvent> findReady(@Param("now") LocalDateTime now, @Param("types") Collection<String> types,
+                                Pageable pageable);
+
+    @Modifying
+    @Query("update OutboxEvent e set e.processedAt = :now, e.lastError = null where e.id in :ids")
+    int markProcessed(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    @Query("select count(e) from OutboxEvent e where e.processedAt is null and e.failedAt is null")
+    long countPending();
+
+    @Query("select count(e) from OutboxEvent e where e.failedAt is not null")
+    long countFailed();
+
+    @Query("select min(e.createdAt) from OutboxEvent e where e.processedAt is null and e.failedAt is null")
+    LocalDateTime oldestPendingCreatedAt();
+
+    @Modifying
+    @Query("delete from OutboxEvent e where e.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,251 @@
+package com.vanlang.bookstore.search;
+
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.repository.BookRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index trong bộ nhớ cho tìm kiếm sách theo tiêu đề / tác giả / NXB / ISBN.
+ * - Bỏ dấu tiếng Việt: "tieng viet" tìm được "Tiếng Việt"
+ * - Xếp hạng theo trọng số field + độ hiếm của từ (idf)
+ * - Cập nhật từng cuốn khi lưu / xoá sách (BookService gọi)
+ * Nếu chưa build được (VD DB lỗi lúc khởi động) thì isReady() = false và BookService dùng LIKE như cũ.
+ */
+@Component
+@RequiredArgsConstructor
+public class BookSearchIndex {
+
+    private static final int W_TITLE = 4;
+    private static final int W_ISBN = 4;
+    private static final int W_AUTHOR = 2;
+    private static final int W_PUBLISHER = 1;
+
+    private static final int BUILD_BATCH = 5000;
+    private static final int MIN_PREFIX = 2;
+
+    private final BookRepository bookRepository;
+
+    // term -> (bookId -> trọng số)
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    // để tìm theo tiền tố (từ cuối đang gõ dở)
+    private final NavigableSet<String> terms = new TreeSet<>();
+    // bookId -> các term của cuốn đó (để xoá / cập nhật)
+    private final Map<Long, Set<String>> docTerms = new HashMap<>();
+
+    // cập nhật xảy ra trong lúc rebuild đang đọc DB: ghi lại để áp lên index mới khi thay (null = xoá)
+    private Map<Long, Map<String, Integer>> pendingDuringRebuild;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            // Không cho app crash nếu DB đang lỗi -> fallback LIKE
+            System.out.println("WARN: BookSearchIndex skipped: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Nạp lại toàn bộ index, đọc theo lô (keyset theo id) để không giữ cả bảng trong 1 query.
+     * index() / remove() gọi trong lúc đang đọc vẫn vào index cũ và được áp lại lên index mới
+     * ngay khi thay -> không mất cập nhật nào. Mỗi lúc chỉ 1 lần rebuild.
+     */
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingDuringRebuild = new LinkedHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Long, Map<String, Integer>> docs = new HashMap<>();
+        try {
+            long afterId = 0L;
+            while (true) {
+                List<Object[]> rows = bookRepository.findSearchRowsAfter(afterId, PageRequest.of(0, BUILD_BATCH));
+                if (rows.isEmpty()) break;
+                for (Object[] r : rows) {
+                    Long id = (Long) r[0];
+                    docs.put(id, weigh((String) r[1], (String) r[2], (String) r[3], (String) r[4]));
+                    afterId = id;
+                }
+                if (rows.size() < BUILD_BATCH) break;
+            }
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                pendingDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            terms.clear();
+            docTerms.clear();
+            docs.forEach(this::addDoc);
+            pendingDuringRebuild.forEach((id, weights) -> {
+                removeDoc(id);
+                if (weights != null) addDoc(id, weights);
+            });
+            pendingDuringRebuild = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() { return ready; }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docTerms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Thêm / cập nhật 1 cuốn */
+    public void index(Book b) {
+        if (b == null || b.getId() == null) return;
+        Map<String, Integer> weights = weigh(b.getTitle(), b.getAuthor(), b.getPublisher(), b.getIsbn());
+        lock.writeLock().lock();
+        try {
+            removeDoc(b.getId());
+            addDoc(b.getId(), weights);
+            if (pendingDuringRebuild != null) pendingDuringRebuild.put(b.getId(), weights);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long bookId) {
+        if (bookId == null) return;
+        lock.writeLock().lock();
+        try {
+            removeDoc(bookId);
+            if (pendingDuringRebuild != null) pendingDuringRebuild.put(bookId, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tìm và trả về toàn bộ id khớp, đã xếp hạng (điểm cao trước, cùng điểm thì id mới trước).
+     * Mọi từ trong câu tìm đều phải khớp; từ cuối được khớp theo tiền tố.
+     */
+    public List<Long> search(String query) {
+        List<String> qTokens = TextFolding.tokens(query);
+        if (qTokens.isEmpty()) return List.of();
+
+        lock.readLock().lock();
+        try {
+            int n = Math.max(1, docTerms.size());
+            Map<Long, Double> scores = null;
+
+            for (int i = 0; i < qTokens.size(); i++) {
+                String tok = qTokens.get(i);
+                boolean last = (i == qTokens.size() - 1);
+                Map<Long, Double> tokScores = new HashMap<>();
+
+                accumulate(tokScores, tok, 1.0, n);
+                if (last && tok.length() >= MIN_PREFIX) {
+                    for (String t : terms.subSet(tok, false, tok + Character.MAX_VALUE, false)) {
+                        accumulate(tokScores, t, 0.5, n);
+                    }
+                }
+
+                if (scores == null) {
+                    scores = tokScores;
+                } else {
+                    // AND: chỉ giữ những cuốn khớp cả từ này
+                    Map<Long, Double> merged = new HashMap<>();
+                    for (var e : scores.entrySet()) {
+                        Double s = tokScores.get(e.getKey());
+                        if (s != null) merged.put(e.getKey(), e.getValue() + s);
+                    }
+                    scores = merged;
+                }
+                if (scores.isEmpty()) return List.of();
+            }
+
+            List<Map.Entry<Long, Double>> ranked = new ArrayList<>(scores.entrySet());
+            ranked.sort(Map.Entry.<Long, Double>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.<Long, Double>comparingByKey().reversed()));
+            List<Long> ids = new ArrayList<>(ranked.size());
+            for (var e : ranked) ids.add(e.getKey());
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ===== helpers (gọi khi đã giữ lock) =====
+
+    private void accumulate(Map<Long, Double> acc, String term, double factor, int n) {
+        Map<Long, Integer> post = postings.get(term);
+        if (post == null || post.isEmpty()) return;
+        double idf = Math.log(1.0 + (double) n / post.size());
+        for (var e : post.entrySet()) {
+            acc.merge(e.getKey(), e.getValue() * idf * factor, Double::sum);
+        }
+    }
+
+    private void addDoc(Long id, Map<String, Integer> weights) {
+        if (weights.isEmpty()) return;
+        for (var e : weights.entrySet()) {
+            postings.computeIfAbsent(e.getKey(), k -> new HashMap<>()).put(id, e.getValue());
+            terms.add(e.getKey());
+        }
+        docTerms.put(id, new HashSet<>(weights.keySet()));
+    }
+
+    private void removeDoc(Long id) {
+        Set<String> old = docTerms.remove(id);
+        if (old == null) return;
+        for (String t : old) {
+            Map<Long, Integer> post = postings.get(t);
+            if (post == null) continue;
+            post.remove(id);
+            if (post.isEmpty()) {
+                postings.remove(t);
+                terms.remove(t);
+            }
+        }
+    }
+
+    private static Map<String, Integer> weigh(String title, String author, String publisher, String isbn) {
+        Map<String, Integer> w = new HashMap<>();
+        addField(w, title, W_TITLE);
+        addField(w, author, W_AUTHOR);
+        addField(w, publisher, W_PUBLISHER);
+        addField(w, isbn, W_ISBN);
+        if (isbn != null) {
+            // ISBN gõ liền không gạch: 978604...
+            String compact = TextFolding.fold(isbn).replaceAll("[^a-z0-9]", "");
+            if (!compact.isEmpty()) w.merge(compact, W_ISBN, Math::max);
+        }
+        return w;
+    }
+
+    private static void addField(Map<String, Integer> w, String text, int weight) {
+        for (String t : TextFolding.tokens(text)) {
+            w.merge(t, weight, Integer::sum);
+        }
+    }
+}
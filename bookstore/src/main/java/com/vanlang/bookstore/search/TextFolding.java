@@ -0,0 +1,33 @@
+package com.vanlang.bookstore.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Chuẩn hoá chuỗi tiếng Việt để tìm kiếm: bỏ dấu (NFD giống Category.toSlug),
+ * đổi đ -> d, về chữ thường rồi tách thành các từ.
+ * VD: "Tiếng Việt" -> ["tieng", "viet"]
+ */
+public final class TextFolding {
+
+    private TextFolding() {}
+
+    public static String fold(String input) {
+        if (input == null) return "";
+        String s = Normalizer.normalize(input.trim(), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "");
+        // đ/Đ không tách dấu được bằng NFD
+        s = s.replace('đ', 'd').replace('Đ', 'D');
+        return s.toLowerCase(Locale.ROOT);
+    }
+
+    public static List<String> tokens(String input) {
+        List<String> out = new ArrayList<>();
+        for (String t : fold(input).split("[^a-z0-9]+")) {
+            if (!t.isEmpty()) out.add(t);
+        }
+        return out;
+    }
+}
@@ -1,15 +1,32 @@
 package com.vanlang.bookstore.service;
 
+import com.vanlang.bookstore.cache.CatalogCache;
+import com.vanlang.bookstore.dto.BookCard;
+import com.vanlang.bookstore.dto.BookSaleState;
+import com.vanlang.bookstore.inventory.HotStockService;
 import com.vanlang.bookstore.model.Book;
 import com.vanlang.bookstore.model.Category;
+import com.vanlang.bookstore.pricing.PriceEngine;
 import com.vanlang.bookstore.repository.BookRepository;
+import com.vanlang.bookstore.search.BookSearchIndex;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -17,6 +34,16 @@ import java.util.Optional;
 public class BookService {
 
     private final BookRepository bookRepository;
+    private final CatalogCache catalogCache;
+    private final BookSearchIndex searchIndex;
+    private final HotStockService hotStock;
+
+    /** Một "lát" danh sách theo cursor id: next = xem sách cũ hơn, prev = xem sách mới hơn */
+    public record BookSlice(List<BookCard> content, Long nextCursor, Long prevCursor, int size) {
+        public boolean hasNext() { return nextCursor != null; }
+        public boolean hasPrevious() { return prevCursor != null; }
+        public boolean isEmpty() { return content.isEmpty(); }
+    }
 
     public List<Book> getAllBooks() {
         return bookRepository.findAll();
@@ -32,70 +59,268 @@ public class BookService {
         return bookRepository.findById(id);
     }
 
-    public Page<Book> searchBooks(String keyword, int page, int size) {
+    /** Tham chiếu để gán khoá ngoại (VD OrderItem.book), không SELECT */
+    public Book getReference(Long id) {
+        return bookRepository.getReferenceById(id);
+    }
+
+    /** Thông tin hiển thị các cuốn theo id, qua CatalogCache (thiếu thì nạp 1 query) */
+    @Transactional(readOnly = true)
+    public Map<Long, BookCard> getCards(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) return Map.of();
+        return catalogCache.cards(ids, bookRepository::findCardsByIdIn);
+    }
+
+    /** Lấy sách kèm category (trang chi tiết / form sửa cần category.name, slug) */
+    @Transactional(readOnly = true)
+    public Optional<Book> getBookDetail(Long id) {
+        return bookRepository.findWithCategoryById(id);
+    }
+
+    /** categoryId -> số sách */
+    @Transactional(readOnly = true)
+    public Map<Long, Long> countBooksByCategory() {
+        Map<Long, Long> out = new HashMap<>();
+        for (Object[] row : bookRepository.countGroupByCategory()) {
+            out.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+        return out;
+    }
+
+    /** Tìm theo tiêu đề / tác giả / NXB / ISBN qua BookSearchIndex (xếp theo độ liên quan) */
+    @Transactional(readOnly = true)
+    public Page<BookCard> searchBooks(String keyword, int page, int size) {
+        if (keyword == null || keyword.isBlank()) {
+            return getBooks(page, size, null); // ô tìm để trống: liệt kê mọi sách như trước, mới nhất trước
+        }
         Pageable pageable = PageRequest.of(page, size);
-        return bookRepository.findByTitleContainingIgnoreCase(keyword, pageable);
+        if (!searchIndex.isReady()) {
+            return bookRepository.findCardsByTitle(keyword, pageable);
+        }
+        List<Long> ids = searchIndex.search(keyword);
+        int from = (int) Math.min(pageable.getOffset(), ids.size());
+        int to = Math.min(from + size, ids.size());
+        List<Long> pageIds = ids.subList(from, to);
+
+        // 1 query cho cả trang, giữ nguyên thứ tự xếp hạng
+        Map<Long, BookCard> byId = bookRepository.findCardsByIdIn(pageIds).stream()
+                .collect(Collectors.toMap(BookCard::id, Function.identity()));
+        List<BookCard> content = pageIds.stream().map(byId::get).filter(Objects::nonNull).toList();
+        return new PageImpl<>(content, pageable, ids.size());
     }
 
-    public Page<Book> getBooksByCategory(Category category, int page, int size) {
+    /** Sách cùng danh mục (dạng BookCard) cho khối "Sách liên quan" */
+    @Transactional(readOnly = true)
+    public Page<BookCard> getBooksByCategory(Category category, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        return bookRepository.findByCategory(category, pageable);
+        if (category == null || category.getId() == null) return Page.empty(pageable);
+        return bookRepository.findCardsByCategoryId(category.getId(), pageable);
     }
 
-    public List<Book> getFeaturedBooks() {
-        return bookRepository.findByFeaturedTrue();
+    // 3 kệ sách trang chủ: đọc qua CatalogCache
+    @Transactional(readOnly = true)
+    public List<BookCard> getFeaturedBooks() {
+        return catalogCache.shelf("featured", bookRepository::findFeaturedCards);
     }
 
-    public List<Book> getNewArrivals() {
-        return bookRepository.findByNewArrivalTrue();
+    @Transactional(readOnly = true)
+    public List<BookCard> getNewArrivals() {
+        return catalogCache.shelf("new", bookRepository::findNewArrivalCards);
     }
 
-    public List<Book> getBestSellers() {
-        return bookRepository.findByBestSellerTrue();
+    @Transactional(readOnly = true)
+    public List<BookCard> getBestSellers() {
+        return catalogCache.shelf("best", bookRepository::findBestSellerCards);
     }
 
-    public List<Book> getLatestBooks(int limit) {
+    @Transactional(readOnly = true)
+    public List<BookCard> getLatestBooks(int limit) {
         // lùi về trang 0, sort theo createdAt desc nếu repo đã có query sắp sẵn
         Pageable pageable = PageRequest.of(0, limit);
-        return bookRepository.findLatestBooks(pageable);
+        return catalogCache.shelf("latest:" + limit, () -> bookRepository.findLatestCards(pageable));
     }
 
     public Book saveBook(Book book) {
-        return bookRepository.save(book);
+        return saveBook(book, null);
+    }
+
+    /** stockShown: tồn kho form sửa đã hiện lúc mở (sách hot: admin sửa = cộng / trừ phần chênh vào bộ đếm) */
+    public Book saveBook(Book book, Integer stockShown) {
+        hotStock.beforeSave(book, stockShown); // sách hot: tồn kho thật nằm trong bộ đếm
+        Book saved = bookRepository.save(book);
+        catalogCache.invalidateAll();
+        AfterCommit.run(() -> searchIndex.index(saved));
+        return saved;
     }
 
     public void deleteBook(Long id) {
         bookRepository.deleteById(id);
+        catalogCache.invalidateAll();
+        AfterCommit.run(() -> searchIndex.remove(id));
+    }
+
+    /**
+     * Trừ kho cho cả đơn bằng 1 câu UPDATE có điều kiện (stock >= số lượng), không đọc trước.
+     * Thiếu hàng ở bất kỳ dòng nào -> IllegalStateException, transaction rollback cả các dòng đã trừ.
+     */
+    public void decrementStock(Map<Long, Integer> quantities) {
+        decrementStock(quantities, Map.of());
     }
 
-    public boolean updateStock(Long bookId, int quantity) {
-        Optional<Book> bookOpt = bookRepository.findById(bookId);
-        if (bookOpt.isPresent()) {
-            Book book = bookOpt.get();
-            if (book.getStock() >= quantity) {
-                book.setStock(book.getStock() - quantity);
-                bookRepository.save(book);
-                return true;
+    /**
+     * Như trên, nhưng phải để lại keep[bookId] cuốn (đang được giữ cho người khác).
+     * Sách hot (HotStockService) trừ trong bộ nhớ, phần còn lại trừ bằng UPDATE có điều kiện.
+     */
+    public void decrementStock(Map<Long, Integer> quantities, Map<Long, Integer> keep) {
+        if (quantities == null || quantities.isEmpty()) return;
+        quantities.forEach((id, q) -> {
+            if (q == null || q <= 0) throw new IllegalArgumentException("Số lượng không hợp lệ cho sách #" + id);
+        });
+
+        Map<Long, Integer> hot = new HashMap<>();
+        Map<Long, Integer> rest = new HashMap<>();
+        quantities.forEach((id, q) -> (hotStock.isHot(id) ? hot : rest).put(id, q));
+
+        if (!hot.isEmpty()) {
+            Set<Long> shortages = hotStock.take(hot, keep); // rollback phía dưới thì tự cộng trả
+            if (!shortages.isEmpty()) {
+                throw new IllegalStateException("Không đủ hàng trong kho cho sản phẩm: " + titlesOf(shortages));
             }
+            if (rest.isEmpty()) return;
+        }
+
+        int updated = bookRepository.decrementStock(rest, keep, LocalDateTime.now());
+        if (updated != rest.size()) {
+            throw new IllegalStateException("Không đủ hàng trong kho cho sản phẩm: " + shortageTitles(rest, keep));
         }
-        return false;
+        catalogCache.stockDecreased(rest.keySet()); // kệ / thẻ sách không mang tồn kho -> giữ cache
+    }
+
+    /**
+     * Cộng trả kho (huỷ đơn...): sách thường cộng bằng 1 câu UPDATE cho mọi sách, sách hot cộng vào bộ đếm sau commit.
+     */
+    public void restock(Map<Long, Integer> quantities) {
+        if (quantities == null || quantities.isEmpty()) return;
+
+        Map<Long, Integer> hot = new HashMap<>();
+        Map<Long, Integer> rest = new HashMap<>();
+        quantities.forEach((id, q) -> {
+            if (q != null && q > 0) (hotStock.isHot(id) ? hot : rest).put(id, q);
+        });
+
+        if (!hot.isEmpty()) hotStock.restock(hot);
+        if (!rest.isEmpty()) {
+            bookRepository.incrementStock(rest, LocalDateTime.now());
+            catalogCache.stockIncreased(rest.keySet());
+        }
+    }
+
+    // Chỉ chạy khi thất bại: decrementStock không để lại dòng nào bị trừ dở -> tồn kho đọc được là tồn kho trước khi trừ,
+    // thiếu = stock < số trừ + phần giữ cho người khác
+    private String shortageTitles(Map<Long, Integer> quantities, Map<Long, Integer> keep) {
+        List<String> titles = new ArrayList<>();
+        for (Object[] r : bookRepository.findStockRows(quantities.keySet())) {
+            Integer stock = (Integer) r[2];
+            Long id = (Long) r[0];
+            if (stock == null || stock < quantities.get(id) + keep.getOrDefault(id, 0)) {
+                titles.add((String) r[1]);
+            }
+        }
+        // không xác định được (VD tồn kho đổi giữa lúc đọc và lúc trừ, sách bị xoá giữa chừng)
+        return titles.isEmpty() ? "(vui lòng kiểm tra lại giỏ hàng)" : String.join(", ", titles);
+    }
+
+    private String titlesOf(Collection<Long> ids) {
+        return bookRepository.findStockRows(ids).stream()
+                .map(r -> (String) r[1])
+                .collect(Collectors.joining(", "));
+    }
+
+    /** Tồn kho hiện tại của 1 cuốn (sách hot: bộ đếm trong bộ nhớ, mới hơn giá trị trong DB) */
+    public int stockOf(Book book) {
+        Integer stock = hotStock.stockOr(book.getId(), book.getStock());
+        return (stock == null) ? 0 : stock;
+    }
+
+    /** Tồn kho hiện tại của vài cuốn (1 query), bookId -> stock */
+    @Transactional(readOnly = true)
+    public Map<Long, Integer> currentStock(Collection<Long> ids) {
+        Map<Long, Integer> out = new HashMap<>();
+        if (ids == null || ids.isEmpty()) return out;
+        for (Object[] r : bookRepository.findStockRows(ids)) {
+            Integer stock = hotStock.stockOr((Long) r[0], (Integer) r[2]);
+            out.put((Long) r[0], stock == null ? 0 : stock);
+        }
+        return out;
+    }
+
+    /** Giá bán / tồn kho / còn bán của vài cuốn (1 query), bookId -> trạng thái; sách đã xoá không có trong map */
+    @Transactional(readOnly = true)
+    public Map<Long, BookSaleState> saleStates(Collection<Long> ids) {
+        Map<Long, BookSaleState> out = new HashMap<>();
+        if (ids == null || ids.isEmpty()) return out;
+        for (Object[] r : bookRepository.findSaleRows(ids)) {
+            Long id = (Long) r[0];
+            BigDecimal price = (BigDecimal) r[2], discount = (BigDecimal) r[3];
+            Integer stock = hotStock.stockOr(id, (Integer) r[4]);
+            boolean priced = price != null || discount != null;
+            out.put(id, new BookSaleState(id, (String) r[1],
+                    priced ? PriceEngine.unitPrice(price, discount) : 0L,
+                    (stock == null) ? 0 : stock,
+                    priced && !Boolean.FALSE.equals(r[5])));
+        }
+        return out;
+    }
+
+    /**
+     * Danh sách mới nhất (id desc) theo keyset: trang sâu tốn như trang đầu, không cần COUNT(*).
+     * categoryId = null -> tất cả sách. Truyền before (trang sau) hoặc after (trang trước), không truyền -> trang đầu.
+     */
+    @Transactional(readOnly = true)
+    public BookSlice getLatestSlice(Long categoryId, Long before, Long after, int size) {
+        Pageable limit = PageRequest.of(0, size);
+
+        if (after != null) {
+            Slice<BookCard> s = (categoryId == null)
+                    ? bookRepository.findCardsAfter(after, limit)
+                    : bookRepository.findCategoryCardsAfter(categoryId, after, limit);
+            List<BookCard> content = new ArrayList<>(s.getContent());
+            Collections.reverse(content);
+            if (content.isEmpty()) {
+                return getLatestSlice(categoryId, null, null, size);
+            }
+            Long next = content.get(content.size() - 1).id();
+            Long prev = s.hasNext() ? content.get(0).id() : null;
+            return new BookSlice(content, next, prev, size);
+        }
+
+        long from = (before == null) ? Long.MAX_VALUE : before;
+        Slice<BookCard> s = (categoryId == null)
+                ? bookRepository.findCardsBefore(from, limit)
+                : bookRepository.findCategoryCardsBefore(categoryId, from, limit);
+        List<BookCard> content = s.getContent();
+        Long next = (s.hasNext() && !content.isEmpty()) ? content.get(content.size() - 1).id() : null;
+        Long prev = (before != null && !content.isEmpty()) ? content.get(0).id() : null;
+        return new BookSlice(content, next, prev, size);
     }
 
     /* ====== API mới: hỗ trợ Sort linh hoạt cho list / category / search ====== */
 
-    /** Danh sách tất cả sách với Sort tuỳ biến */
-    public Page<Book> getBooks(int page, int size, Sort sort) {
+    /** Danh sách tất cả sách với Sort tuỳ biến (BookCard cho trang grid) */
+    @Transactional(readOnly = true)
+    public Page<BookCard> getBooks(int page, int size, Sort sort) {
         // Nếu field sort không tồn tại (VD thiếu createdAt), có thể fallback sang id
         Sort safeSort = (sort == null) ? Sort.by("createdAt").descending() : sort;
         Pageable pageable = PageRequest.of(page, size, safeSort);
-        return bookRepository.findAll(pageable);
+        return bookRepository.findAllCards(pageable);
     }
 
-    /** Tìm theo danh mục + Sort */
-    public Page<Book> getBooksByCategory(Category category, int page, int size, Sort sort) {
+    /** Tìm theo danh mục + Sort (BookCard cho trang grid) */
+    @Transactional(readOnly = true)
+    public Page<BookCard> getBooksByCategory(Category category, int page, int size, Sort sort) {
         Sort safeSort = (sort == null) ? Sort.by("createdAt").descending() : sort;
         Pageable pageable = PageRequest.of(page, size, safeSort);
-        return bookRepository.findByCategory(category, pageable);
+        return bookRepository.findCardsByCategoryId(category.getId(), pageable);
     }
 
     /** Search theo tiêu đề + Sort */
@@ -0,0 +1,152 @@
+package com.vanlang.bookstore.service;
+
+import com.vanlang.bookstore.cache.TtlCache;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chuyển trạng thái hàng loạt cho màn quản trị đơn (VD đánh dấu SHIPPED cả ngày, huỷ 1 lô).
+ * - Chạy nền trên 1 thread, chia lô chunk-size đơn, mỗi lô 1 transaction (OrderService.updateStatuses)
+ * - Lô lỗi (VD thiếu hàng khi khôi phục) thì làm lại từng đơn của lô đó để chỉ đơn lỗi bị bỏ qua
+ * - Tiến độ giữ trong bộ nhớ theo jobId, trang danh sách đơn poll để hiển thị
+ */
+@Service
+public class BulkOrderStatusService {
+
+    /** Tiến độ 1 lần chạy (trả về JSON cho trang admin) */
+    public record Progress(String id, String status, int total, int processed, int updated, int skipped,
+                           int failed, List<String> errors, boolean finished, long elapsedMillis, long ordersPerSecond) {}
+
+    private static final int MAX_ERRORS = 20;
+
+    private final OrderService orderService;
+    private final int chunkSize;
+    private final TtlCache<String, Job> jobs;
+    private final ThreadPoolExecutor executor;
+
+    public BulkOrderStatusService(@Value("${bookstore.bulk-status.chunk-size:500}") int chunkSize,
+                                  @Value("${bookstore.bulk-status.queue-size:4}") int queueSize,
+                                  OrderService orderService) {
+        this.orderService = orderService;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.jobs = new TtlCache<>(Duration.ofHours(1), 100);
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), r -> {
+                    Thread t = new Thread(r, "bulk-order-status");
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /** Xếp hàng 1 lần chuyển trạng thái; trả về tiến độ ban đầu (có jobId để poll) */
+    public Progress start(Collection<Long> orderIds, String status) {
+        if (!OrderService.STATUSES.contains(status)) {
+            throw new IllegalArgumentException("Trạng thái không hợp lệ: " + status);
+        }
+        if (orderIds == null || orderIds.isEmpty()) {
+            throw new IllegalArgumentException("Bạn chưa chọn đơn hàng nào.");
+        }
+        Job job = new Job(UUID.randomUUID().toString().substring(0, 8), status, new ArrayList<>(new LinkedHashSet<>(orderIds)));
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.invalidate(job.id);
+            throw new IllegalStateException("Đang có nhiều lượt cập nhật hàng loạt, vui lòng thử lại sau.");
+        }
+        return job.progress();
+    }
+
+    public Optional<Progress> progress(String jobId) {
+        return jobs.getIfPresent(jobId).map(Job::progress);
+    }
+
+    // ===== helpers =====
+
+    private void run(Job job) {
+        job.startedAt = System.nanoTime();
+        try {
+            for (int from = 0; from < job.orderIds.size(); from += chunkSize) {
+                List<Long> chunk = job.orderIds.subList(from, Math.min(from + chunkSize, job.orderIds.size()));
+                try {
+                    int n = orderService.updateStatuses(chunk, job.status);
+                    job.updated.addAndGet(n);
+                    job.skipped.addAndGet(chunk.size() - n);
+                } catch (RuntimeException e) {
+                    runOneByOne(job, chunk);
+                }
+                job.processed.addAndGet(chunk.size());
+            }
+        } finally {
+            job.finishedAt = System.nanoTime();
+        }
+    }
+
+    private void runOneByOne(Job job, List<Long> chunk) {
+        for (Long id : chunk) {
+            try {
+                int n = orderService.updateStatuses(List.of(id), job.status);
+                job.updated.addAndGet(n);
+                job.skipped.addAndGet(1 - n);
+            } catch (RuntimeException e) {
+                job.failed.incrementAndGet();
+                job.error("#" + id + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Job {
+        final String id;
+        final String status;
+        final List<Long> orderIds;
+        final AtomicInteger processed = new AtomicInteger();
+        final AtomicInteger updated = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final List<String> errors = new ArrayList<>();
+        volatile long startedAt;
+        volatile long finishedAt;
+
+        Job(String id, String status, List<Long> orderIds) {
+            this.id = id;
+            this.status = status;
+            this.orderIds = orderIds;
+        }
+
+        synchronized void error(String message) {
+            if (errors.size() < MAX_ERRORS) errors.add(message);
+        }
+
+        synchronized List<String> errorsSnapshot() {
+            return List.copyOf(errors);
+        }
+
+        Progress progress() {
+            boolean finished = finishedAt != 0;
+            long elapsed = (startedAt == 0) ? 0 : ((finished ? finishedAt : System.nanoTime()) - startedAt) / 1_000_000;
+            int done = processed.get();
+            long rate = (elapsed == 0) ? 0 : done * 1000L / elapsed;
+            return new Progress(id, status, orderIds.size(), done, updated.get(), skipped.get(), failed.get(),
+                    errorsSnapshot(), finished, elapsed, rate);
+        }
+    }
+}
@@ -1,51 +1,74 @@
 // src/main/java/com/vanlang/bookstore/service/CartService.java
 package com.vanlang.bookstore.service;
 
+import com.vanlang.bookstore.cart.CartCache;
+import com.vanlang.bookstore.cart.CartCheck;
+import com.vanlang.bookstore.cart.CartLines;
+import com.vanlang.bookstore.dto.BookCard;
+import com.vanlang.bookstore.dto.BookSaleState;
 import com.vanlang.bookstore.model.Book;
 import com.vanlang.bookstore.model.CartItem; // <-- dùng CartItem riêng
+import com.vanlang.bookstore.pricing.PriceEngine;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.web.context.annotation.SessionScope;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.WebUtils;
 
-import java.io.Serializable;
-import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
+/**
+ * Giỏ hàng của người đang xem: tài khoản đã đăng nhập, hoặc khách theo cookie CART_ID.
+ * Giỏ (CartLines: bookId, số lượng, giá đã chốt) nằm ở CartStore qua CartCache, không nằm trong session
+ * -> chạy nhiều instance không cần sticky session, restart không mất giỏ.
+ * Tên / ảnh / tác giả lấy từ CatalogCache dùng chung khi cần hiển thị.
+ * Giỏ khách đổi thì ghi kèm cookie CART_COUNT (số cuốn): PageCacheFilter biết giỏ trống mà không đọc CartStore.
+ */
 @Service
-@SessionScope
-public class CartService implements Serializable {
+@RequiredArgsConstructor
+public class CartService {
 
-    private final List<CartItem> items = new ArrayList<>();
+    public static final String CART_COOKIE = "CART_ID";
+    public static final String CART_COUNT_COOKIE = "CART_COUNT";
+    static final String USER_PREFIX = "u:";
+    static final String ANONYMOUS_PREFIX = "a:";
+    private static final int COOKIE_DAYS = 30;
+
+    private final BookService bookService;
+    private final CartCache carts;
 
     public void addItem(Book book, int quantity) {
-        Optional<CartItem> existing = items.stream()
-                .filter(i -> i.getBook() != null && i.getBook().getId().equals(book.getId()))
-                .findFirst();
-        if (existing.isPresent()) {
-            existing.get().setQuantity(existing.get().getQuantity() + quantity);
-        } else {
-            items.add(new CartItem(book, quantity));
-        }
+        long unitPrice = PriceEngine.unitPrice(book); // chốt lại giá theo sách vừa đọc
+        update(cartKey(true), lines -> lines.add(book.getId(), quantity, unitPrice));
     }
 
     public void updateQuantity(Long bookId, int quantity) {
-        items.stream()
-                .filter(i -> i.getBook()!=null && i.getBook().getId().equals(bookId))
-                .findFirst()
-                .ifPresent(i -> {
-                    if (quantity <= 0) items.remove(i);
-                    else i.setQuantity(quantity);
-                });
+        String key = cartKey(false);
+        if (key == null || bookId == null) return;
+        update(key, lines -> lines.setQuantity(bookId, quantity));
     }
 
     public void removeItem(Long bookId) {
-        items.removeIf(i -> i.getBook()!=null && i.getBook().getId().equals(bookId));
+        String key = cartKey(false);
+        if (key == null || bookId == null) return;
+        update(key, lines -> lines.remove(bookId));
     }
 
     /** Xoá các món có id đã thanh toán */
     public void removeByBookIds(Set<Long> bookIds) {
         if (bookIds == null || bookIds.isEmpty()) return;
-        items.removeIf(i -> i.getBook()!=null && bookIds.contains(i.getBook().getId()));
+        String key = cartKey(false);
+        if (key == null) return;
+        update(key, lines -> lines.removeAll(bookIds));
     }
 
     /** Bọc tiện dụng cho controller (nhận List) */
@@ -54,44 +77,203 @@ public class CartService implements Serializable {
         removeByBookIds(new HashSet<>(bookIds));
     }
 
-    public void clear() { items.clear(); }
+    public void clear() {
+        String key = cartKey(false);
+        if (key == null) return;
+        update(key, CartLines::clear);
+    }
 
-    public List<CartItem> getItems() { return new ArrayList<>(items); }
+    /** Các dòng giỏ theo thứ tự thêm vào; sách đã bị xoá khỏi catalog thì không hiện */
+    public List<CartItem> getItems() {
+        CartLines lines = lines();
+        if (lines == null || lines.isEmpty()) return new ArrayList<>();
+        return toItems(lines, null);
+    }
 
     public int getTotalItems() {
-        return items.stream().mapToInt(CartItem::getQuantity).sum();
+        CartLines lines = lines();
+        return (lines == null) ? 0 : lines.totalItems();
     }
 
-    public BigDecimal getTotalPrice() {
-        return items.stream()
-                .map(CartItem::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    /** Tổng tiền cả giỏ (đồng) */
+    public long getTotalPrice() {
+        CartLines lines = lines();
+        return (lines == null) ? 0L : lines.totalPrice();
     }
 
-    public boolean isEmpty() { return items.isEmpty(); }
+    public boolean isEmpty() {
+        CartLines lines = lines();
+        return lines == null || lines.isEmpty();
+    }
 
     // ====== Helpers cho flow “tick chọn ở giỏ” ======
     public List<CartItem> getItemsByBookIds(List<Long> bookIds) {
         if (bookIds == null || bookIds.isEmpty()) return List.of();
-        Set<Long> set = new HashSet<>(bookIds);
-        return items.stream()
-                .filter(i -> i.getBook()!=null && set.contains(i.getBook().getId()))
-                .collect(Collectors.toList());
+        CartLines lines = lines();
+        if (lines == null || lines.isEmpty()) return List.of();
+        return toItems(lines, new HashSet<>(bookIds));
+    }
+
+    /**
+     * Đối chiếu giỏ (hoặc chỉ các món only, null = cả giỏ) với DB bằng 1 query:
+     * giá đổi -> cập nhật giá trong giỏ; sách đã xoá / ngừng bán -> bỏ khỏi giỏ; hết / thiếu hàng -> chỉ báo.
+     */
+    public CartCheck revalidate(Collection<Long> only) {
+        String key = cartKey(false);
+        if (key == null) return CartCheck.EMPTY;
+        List<CartLines.Line> lines = carts.get(key).lines();
+        if (only != null) {
+            Set<Long> wanted = new HashSet<>(only);
+            lines.removeIf(l -> !wanted.contains(l.bookId()));
+        }
+        if (lines.isEmpty()) return CartCheck.EMPTY;
+
+        List<Long> ids = new ArrayList<>(lines.size());
+        for (CartLines.Line l : lines) ids.add(l.bookId());
+        Map<Long, BookSaleState> states = bookService.saleStates(ids);
+
+        List<CartCheck.Change> changes = new ArrayList<>();
+        Map<Long, Integer> stock = new HashMap<>();
+        List<Long> unavailable = new ArrayList<>();
+        Map<Long, Long> prices = new HashMap<>();
+        for (CartLines.Line l : lines) {
+            BookSaleState s = states.get(l.bookId());
+            if (s == null || !s.available()) {
+                unavailable.add(l.bookId());
+                changes.add(new CartCheck.Change(l.bookId(), (s == null) ? null : s.title(), CartCheck.Kind.UNAVAILABLE,
+                        l.unitPrice(), l.unitPrice(), l.quantity(), 0));
+                continue;
+            }
+            stock.put(l.bookId(), s.stock());
+            if (l.unitPrice() != s.unitPrice()) {
+                prices.put(l.bookId(), s.unitPrice());
+                changes.add(new CartCheck.Change(l.bookId(), s.title(), CartCheck.Kind.PRICE_CHANGED,
+                        l.unitPrice(), s.unitPrice(), l.quantity(), s.stock()));
+            }
+            if (s.stock() < l.quantity()) {
+                changes.add(new CartCheck.Change(l.bookId(), s.title(),
+                        (s.stock() <= 0) ? CartCheck.Kind.OUT_OF_STOCK : CartCheck.Kind.NOT_ENOUGH_STOCK,
+                        s.unitPrice(), s.unitPrice(), l.quantity(), Math.max(0, s.stock())));
+            }
+        }
+        if (!unavailable.isEmpty() || !prices.isEmpty()) {
+            update(key, cart -> {
+                cart.removeAll(unavailable);
+                prices.forEach(cart::reprice);
+            });
+        }
+        return new CartCheck(changes, stock);
     }
 
-    public BigDecimal calculateSubtotal(List<CartItem> selected) {
-        if (selected == null) return BigDecimal.ZERO;
-        return selected.stream()
-                .map(CartItem::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    /** Tạm tính các món đã chọn (đồng) */
+    public long calculateSubtotal(List<CartItem> selected) {
+        if (selected == null) return 0L;
+        long sum = 0L;
+        for (CartItem i : selected) sum = PriceEngine.add(sum, i.getSubtotal());
+        return sum;
     }
 
     /** Tuỳ bài: hiện cho 0 để đơn giản */
-    public BigDecimal calculateShipping(List<CartItem> selected) {
-        return BigDecimal.ZERO;
+    public long calculateShipping(List<CartItem> selected) {
+        return 0L;
+    }
+
+    // ===== helpers =====
+
+    // Sửa giỏ; giỏ khách thì cập nhật luôn cookie đếm theo giỏ sau khi sửa
+    private void update(String key, Consumer<CartLines> change) {
+        CartLines after = carts.update(key, change);
+        if (key.startsWith(ANONYMOUS_PREFIX)
+                && RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attrs
+                && attrs.getResponse() != null) {
+            attrs.getResponse().addCookie(cartCookie(CART_COUNT_COOKIE, String.valueOf(after.totalItems()),
+                    (int) Duration.ofDays(COOKIE_DAYS).toSeconds()));
+        }
+    }
+
+    // Giỏ để đọc; khách chưa có cookie giỏ -> null
+    private CartLines lines() {
+        String key = cartKey(false);
+        return (key == null) ? null : carts.get(key);
     }
 
-    // Giữ API cũ mà vài nơi đang gọi
-    public int getCartItemCount(String ignoredUsername) { return getTotalItems(); }
-    public int getCartItemCount() { return getTotalItems(); }
+    private List<CartItem> toItems(CartLines cart, Set<Long> only) {
+        List<CartLines.Line> lines = cart.lines(); // chụp 1 lần dưới khoá của giỏ
+        if (only != null) lines.removeIf(l -> !only.contains(l.bookId()));
+        List<Long> ids = new ArrayList<>(lines.size());
+        for (CartLines.Line l : lines) ids.add(l.bookId());
+        Map<Long, BookCard> cards = bookService.getCards(ids);
+        List<CartItem> out = new ArrayList<>(lines.size());
+        for (CartLines.Line l : lines) {
+            BookCard card = cards.get(l.bookId());
+            if (card != null) out.add(new CartItem(card, l.quantity(), l.unitPrice()));
+        }
+        return out;
+    }
+
+    /** Đăng nhập xong: gộp giỏ khách (cookie) vào giỏ của tài khoản rồi bỏ giỏ khách */
+    @EventListener
+    public void onLogin(AuthenticationSuccessEvent event) {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attrs)) return;
+        String anonymousId = anonymousId(attrs.getRequest());
+        if (anonymousId == null) return;
+
+        String anonymousKey = ANONYMOUS_PREFIX + anonymousId;
+        List<CartLines.Line> guest = carts.get(anonymousKey).lines();
+        if (!guest.isEmpty()) {
+            String userKey = USER_PREFIX + event.getAuthentication().getName();
+            carts.update(userKey, mine -> {
+                for (CartLines.Line l : guest) mine.add(l.bookId(), l.quantity(), l.unitPrice());
+            });
+            carts.update(anonymousKey, CartLines::clear);
+        }
+        if (attrs.getResponse() != null) {
+            attrs.getResponse().addCookie(cartCookie(CART_COOKIE, "", 0));
+            attrs.getResponse().addCookie(cartCookie(CART_COUNT_COOKIE, "", 0));
+        }
+    }
+
+    // create = false: khách chưa có cookie giỏ -> null (giỏ trống, không chạm store)
+    private static String cartKey(boolean create) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)) {
+            return USER_PREFIX + auth.getName();
+        }
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attrs)) {
+            if (create) throw new IllegalStateException("Giỏ hàng chỉ dùng được trong request HTTP.");
+            return null;
+        }
+        HttpServletRequest request = attrs.getRequest();
+        String id = anonymousId(request);
+        if (id == null) {
+            id = (String) request.getAttribute(CART_COOKIE); // cookie vừa cấp trong chính request này
+        }
+        if (id == null && create) {
+            id = UUID.randomUUID().toString();
+            request.setAttribute(CART_COOKIE, id);
+            if (attrs.getResponse() != null) {
+                attrs.getResponse().addCookie(cartCookie(CART_COOKIE, id, (int) Duration.ofDays(COOKIE_DAYS).toSeconds()));
+            }
+        }
+        return (id == null) ? null : ANONYMOUS_PREFIX + id;
+    }
+
+    private static String anonymousId(HttpServletRequest request) {
+        Cookie cookie = WebUtils.getCookie(request, CART_COOKIE);
+        if (cookie == null) return null;
+        try {
+            return UUID.fromString(cookie.getValue()).toString(); // cookie sửa tay -> bỏ qua
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Cookie cartCookie(String name, String value, int maxAgeSeconds) {
+        Cookie cookie = new Cookie(name, value);
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge(maxAgeSeconds);
+        cookie.setAttribute("SameSite", "Lax");
+        return cookie;
+    }
 }
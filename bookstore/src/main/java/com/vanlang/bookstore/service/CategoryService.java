@@ -1,5 +1,6 @@
 package com.vanlang.bookstore.service;
 
+import com.vanlang.bookstore.cache.CategoryCatalog;
 import com.vanlang.bookstore.model.Category;
 import com.vanlang.bookstore.repository.CategoryRepository;
 import lombok.RequiredArgsConstructor;
@@ -15,6 +16,7 @@ import java.util.Locale;
 public class CategoryService {
 
     private final CategoryRepository repo;
+    private final CategoryCatalog catalog; // snapshot cho sidebar / form, nạp lại khi ghi
 
     public List<Category> findAll() {
         return repo.findAll();
@@ -38,7 +40,9 @@ public class CategoryService {
         if (c.getSlug() == null || c.getSlug().isBlank()) {
             c.setSlug(makeSlug(c.getName()));
         }
-        return repo.save(c);
+        Category saved = repo.save(c);
+        catalog.invalidate();
+        return saved;
     }
 
     @Transactional
@@ -63,12 +67,15 @@ public class CategoryService {
                 ? makeSlug(form.getName())
                 : form.getSlug().trim());
 
-        return repo.save(c);
+        Category saved = repo.save(c);
+        catalog.invalidate();
+        return saved;
     }
 
     @Transactional
     public void delete(Long id) {
         repo.deleteById(id);
+        catalog.invalidate();
     }
 
     private String makeSlug(String s) {
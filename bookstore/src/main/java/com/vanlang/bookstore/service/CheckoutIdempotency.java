@@ -0,0 +1,107 @@
+package com.vanlang.bookstore.service;
+
+import com.vanlang.bookstore.cache.TtlCache;
+import com.vanlang.bookstore.model.Order;
+import com.vanlang.bookstore.repository.OrderRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Chống đặt đơn trùng khi bấm "Xác nhận" 2 lần / trình duyệt gửi lại form.
+ * - Mỗi lần mở trang checkout phát 1 key (UUID) trong hidden input
+ * - (người đặt, key) -> CompletableFuture của đơn, trong TtlCache (giới hạn số lượng + hết hạn):
+ *   lần gửi đầu chạy placeOrder, lần gửi trùng (đang chạy hay đã xong) chờ / lấy lại đúng đơn đó, không trừ kho lần 2
+ * - Cột orders.idempotency_key unique: bộ nhớ đã quên key (hết hạn, khởi động lại, node khác) thì DB chặn
+ * - Chỉ trả lại đơn của chính người đặt: gửi key của người khác (lộ qua log, form bị chép) không xem được đơn đó
+ * Lần gửi lỗi (VD hết hàng) bị xoá khỏi bộ nhớ để gửi lại được.
+ */
+@Service
+public class CheckoutIdempotency {
+
+    private final TtlCache<String, CompletableFuture<Order>> submissions;
+    private final OrderRepository orderRepository;
+    private final long waitSeconds;
+
+    public CheckoutIdempotency(@Value("${bookstore.idempotency.ttl-minutes:30}") long ttlMinutes,
+                               @Value("${bookstore.idempotency.max-entries:10000}") int maxEntries,
+                               @Value("${bookstore.idempotency.wait-seconds:30}") long waitSeconds,
+                               OrderRepository orderRepository) {
+        this.submissions = new TtlCache<>(Duration.ofMinutes(ttlMinutes), maxEntries);
+        this.orderRepository = orderRepository;
+        this.waitSeconds = waitSeconds;
+    }
+
+    /** Key mới cho form checkout */
+    public String newKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Chạy placeOrder đúng 1 lần cho mỗi key của mỗi người đặt.
+     * @param login email / username của người đặt (chủ đơn)
+     * @param key key từ form; null / sai định dạng -> chạy như bình thường (form cũ)
+     * @param placeOrder nhận key (đã chuẩn hoá) để lưu vào đơn
+     */
+    public Order submit(String login, String key, Function<String, Order> placeOrder) {
+        String k = normalize(key);
+        if (k == null) return placeOrder.apply(null);
+
+        String slot = login + "\n" + k;
+        CompletableFuture<Order> mine = new CompletableFuture<>();
+        CompletableFuture<Order> existing = submissions.putIfAbsent(slot, mine);
+        if (existing != null) return await(existing);
+
+        try {
+            Order order = orderRepository.findByIdempotencyKeyForUser(k, login).orElse(null);
+            if (order == null) {
+                try {
+                    order = placeOrder.apply(k);
+                } catch (DataIntegrityViolationException duplicate) {
+                    // đơn với key này đã được tạo ở nơi khác (node khác / trước khi khởi động lại);
+                    // key thuộc đơn của người khác thì không trả đơn đó, báo lỗi như cũ
+                    order = orderRepository.findByIdempotencyKeyForUser(k, login).orElseThrow(() -> duplicate);
+                }
+            }
+            mine.complete(order);
+            return order;
+        } catch (RuntimeException e) {
+            submissions.invalidate(slot);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // ===== helpers =====
+
+    private Order await(CompletableFuture<Order> existing) {
+        try {
+            return existing.get(waitSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Đơn hàng đang được xử lý, vui lòng kiểm tra lại trong lịch sử đơn hàng.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Đã huỷ chờ xử lý đơn hàng.");
+        }
+    }
+
+    private static String normalize(String key) {
+        if (key == null || key.isBlank()) return null;
+        try {
+            return UUID.fromString(key.trim()).toString();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.vanlang.bookstore.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Sinh ảnh thu nhỏ cho ảnh upload (bìa sách, avatar): decode 1 lần, xuất nhiều cỡ JPEG nén,
+ * chạy trên executor giới hạn (không chiếm thread request).
+ * File biến thể nằm cạnh ảnh gốc: /uploads/books/12-{hash}.png -> /uploads/books/12-{hash}-320.jpg ...
+ * Template gọi srcset(url) / pick(url, width) để dùng các biến thể đã có.
+ *
+ * Registry theo tên ảnh có hash nội dung (UploadStorage): tên đó chỉ ứng với đúng 1 nội dung nên biến thể
+ * tìm thấy trên đĩa chắc chắn là của ảnh này. Ảnh cũ không có hash (12.png) không dùng biến thể
+ * (12-320.jpg có thể là của ảnh trước đó). Ảnh đang sinh dở không được quét / cache;
+ * "chưa có biến thể" chỉ được nhớ trong negative-ttl rồi quét lại.
+ */
+@Service
+public class ImageVariantService {
+
+    /** Bộ cỡ theo loại ảnh */
+    public enum Kind {
+        BOOK(160, 320, 640),   // thumb (giỏ hàng), card (grid), detail (trang chi tiết)
+        AVATAR(64, 128, 256);
+
+        final int[] widths;
+
+        Kind(int... widths) { this.widths = widths; }
+    }
+
+    private static final float JPEG_QUALITY = 0.82f;
+    private static final Duration NEGATIVE_TTL = Duration.ofSeconds(30);
+
+    // {tên}-{hash16}.{ext} như UploadStorage.store sinh ra
+    private static final Pattern HASHED_NAME =
+            Pattern.compile("^/uploads/.+-[0-9a-f]{" + UploadStorage.HASH_LENGTH + "}\\.[a-z0-9]+$");
+
+    /** Kết quả tra biến thể: urls rỗng = chưa có (chỉ tin tới expiresAt) */
+    private record Variants(Map<Integer, String> urls, long expiresAtNanos) {
+        boolean expired() {
+            return urls.isEmpty() && System.nanoTime() - expiresAtNanos > 0;
+        }
+    }
+
+    private final Path uploadRoot;
+    private final long negativeTtlNanos;
+    private final ThreadPoolExecutor executor;
+
+    // url ảnh gốc (có hash) -> biến thể
+    private final Map<String, Variants> registry = new ConcurrentHashMap<>();
+    // ảnh đang chờ / đang sinh biến thể
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public ImageVariantService() {
+        this(UploadStorage.ROOT, NEGATIVE_TTL);
+    }
+
+    ImageVariantService(Path uploadRoot, Duration negativeTtl) {
+        this.uploadRoot = uploadRoot.toAbsolutePath().normalize();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        AtomicInteger n = new AtomicInteger();
+        // 2 thread, hàng đợi 64 ảnh; đầy thì thread gọi tự làm (giảm tốc upload thay vì mất ảnh)
+        this.executor = new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(64),
+                r -> {
+                    Thread t = new Thread(r, "image-variants-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /** Đưa ảnh gốc (đã lưu trên đĩa, url dạng /uploads/...) vào hàng đợi sinh biến thể */
+    public Future<?> submit(String originalUrl, Kind kind) {
+        inFlight.add(originalUrl);
+        registry.remove(originalUrl);
+        return executor.submit(() -> {
+            try {
+                generate(originalUrl, kind);
+            } catch (Exception e) {
+                System.out.println("WARN: image variants failed for " + originalUrl + ": " + e.getMessage());
+            } finally {
+                inFlight.remove(originalUrl);
+            }
+        });
+    }
+
+    /** Chuỗi srcset ("url 160w, url 320w, ...") hoặc null nếu chưa có biến thể */
+    public String srcset(String originalUrl) {
+        return variants(originalUrl)
+                .map(m -> m.entrySet().stream()
+                        .map(e -> e.getValue() + " " + e.getKey() + "w")
+                        .collect(Collectors.joining(", ")))
+                .orElse(null);
+    }
+
+    /** Biến thể nhỏ nhất có width >= yêu cầu; chưa có thì trả lại url gốc */
+    public String pick(String originalUrl, int width) {
+        if (originalUrl == null || originalUrl.isBlank()) return originalUrl;
+        return variants(originalUrl)
+                .flatMap(m -> m.entrySet().stream()
+                        .filter(e -> e.getKey() >= width)
+                        .map(Map.Entry::getValue)
+                        .findFirst())
+                .orElse(originalUrl);
+    }
+
+    private Optional<Map<Integer, String>> variants(String originalUrl) {
+        if (originalUrl == null || !HASHED_NAME.matcher(originalUrl).matches()) return Optional.empty();
+        if (inFlight.contains(originalUrl)) return Optional.empty(); // đang sinh: chưa đủ cỡ, không cache
+
+        Variants v = registry.get(originalUrl);
+        if (v == null || v.expired()) {
+            // generate() có thể vừa ghi xong trong lúc quét: bản đã có biến thể luôn thắng
+            v = registry.merge(originalUrl, scanDisk(originalUrl),
+                    (old, scanned) -> old.urls().isEmpty() ? scanned : old);
+        }
+        return v.urls().isEmpty() ? Optional.empty() : Optional.of(v.urls());
+    }
+
+    // Lần đầu gặp url (VD sau khi restart) hoặc hết hạn "chưa có": xem trên đĩa đã có biến thể nào
+    private Variants scanDisk(String originalUrl) {
+        Map<Integer, String> found = new LinkedHashMap<>();
+        for (Kind kind : Kind.values()) {
+            for (int w : kind.widths) {
+                if (Files.exists(toPath(variantUrl(originalUrl, w)))) {
+                    found.put(w, variantUrl(originalUrl, w));
+                }
+            }
+            if (!found.isEmpty()) break;
+        }
+        return found.isEmpty()
+                ? new Variants(Map.of(), System.nanoTime() + negativeTtlNanos)
+                : new Variants(found, 0L);
+    }
+
+    private void generate(String originalUrl, Kind kind) throws IOException {
+        BufferedImage src = ImageIO.read(toPath(originalUrl).toFile());
+        if (src == null) return; // không phải ảnh ImageIO đọc được -> giữ ảnh gốc
+
+        BufferedImage rgb = toRgb(src);
+        Map<Integer, String> out = new LinkedHashMap<>();
+        for (int w : kind.widths) {
+            BufferedImage scaled = rgb.getWidth() > w ? scale(rgb, w) : rgb;
+            String url = variantUrl(originalUrl, w);
+            writeJpeg(scaled, toPath(url));
+            out.put(w, url);
+        }
+        registry.put(originalUrl, new Variants(out, 0L));
+    }
+
+    // ===== helpers =====
+
+    static String variantUrl(String originalUrl, int width) {
+        int slash = originalUrl.lastIndexOf('/');
+        int dot = originalUrl.lastIndexOf('.');
+        String base = (dot > slash) ? originalUrl.substring(0, dot) : originalUrl;
+        return base + "-" + width + ".jpg";
+    }
+
+    private Path toPath(String uploadUrl) {
+        Path p = uploadRoot.resolve(uploadUrl.substring("/uploads/".length())).normalize();
+        if (!p.startsWith(uploadRoot)) {
+            throw new IllegalArgumentException("Đường dẫn ảnh không hợp lệ: " + uploadUrl);
+        }
+        return p;
+    }
+
+    // JPEG không có alpha: vẽ lên nền trắng
+    private static BufferedImage toRgb(BufferedImage src) {
+        if (src.getType() == BufferedImage.TYPE_INT_RGB) return src;
+        BufferedImage rgb = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, src.getWidth(), src.getHeight());
+        g.drawImage(src, 0, 0, null);
+        g.dispose();
+        return rgb;
+    }
+
+    // Thu nhỏ từng nửa một rồi bước cuối tới đúng cỡ: nét hơn thu 1 lần, rẻ hơn bicubic
+    private static BufferedImage scale(BufferedImage src, int targetW) {
+        BufferedImage cur = src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+        while (w > targetW) {
+            int nw = Math.max(targetW, w / 2);
+            int nh = Math.max(1, (int) Math.round((double) h * nw / w));
+            BufferedImage next = new BufferedImage(nw, nh, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(cur, 0, 0, nw, nh, null);
+            g.dispose();
+            cur = next;
+            w = nw;
+            h = nh;
+        }
+        return cur;
+    }
+
+    private static void writeJpeg(BufferedImage img, Path dest) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) throw new IOException("Không có JPEG writer");
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(JPEG_QUALITY);
+        param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+
+        // ghi ra file tạm rồi move -> không ai đọc được file ghi dở
+        Path tmp = Files.createTempFile(dest.getParent(), ".variant-", ".tmp");
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(tmp.toFile())) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        Files.move(tmp, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
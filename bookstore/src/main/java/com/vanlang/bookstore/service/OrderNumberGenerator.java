@@ -0,0 +1,128 @@
+package com.vanlang.bookstore.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sinh mã đơn hàng duy nhất, không cần hỏi DB: ORD-yyyyMMdd-XXXXXXXXC
+ * - XXXXXXXX (Crockford base32, 39 bit) = giây trong ngày (17 bit) | số thứ tự trong giây (12 bit) | node id (10 bit)
+ * - C = ký tự kiểm tra (Luhn mod 32) -> gõ sai 1 ký tự là biết ngay
+ * Số thứ tự lấy bằng 1 phép CAS trên AtomicLong (không khoá). Hết 4096 mã trong 1 giây thì "mượn" giây kế tiếp,
+ * nên mã luôn tăng và không lặp trong 1 node; node id khác nhau -> không lặp giữa các node.
+ */
+@Component
+public class OrderNumberGenerator {
+
+    public static final String PREFIX = "ORD-";
+
+    private static final int SEQ_BITS = 12;
+    private static final int NODE_BITS = 10;
+    private static final int PAYLOAD_CHARS = 8;              // 40 bit >= 17 (86400 giây) + 12 + 10
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray(); // Crockford
+    private static final DateTimeFormatter DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final int nodeId;
+    private final ZoneOffset offset;
+    private final Clock clock;
+
+    // (epochSecond << SEQ_BITS) | seq của mã vừa cấp
+    private final AtomicLong state = new AtomicLong();
+
+    @Autowired
+    public OrderNumberGenerator(@Value("${bookstore.node-id:-1}") int nodeId,
+                                @Value("${bookstore.order-number.utc-offset:+07:00}") String utcOffset) {
+        this(nodeId >= 0 ? nodeId : defaultNodeId(), ZoneOffset.of(utcOffset), Clock.systemUTC());
+    }
+
+    OrderNumberGenerator(int nodeId, ZoneOffset offset, Clock clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("node id phải trong khoảng 0.." + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.offset = offset;
+        this.clock = clock;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public String next() {
+        long base = (clock.instant().getEpochSecond() + offset.getTotalSeconds()) << SEQ_BITS;
+        long s = state.accumulateAndGet(base, (prev, b) -> Math.max(prev + 1, b));
+
+        long localSecond = s >>> SEQ_BITS;
+        long seq = s & ((1L << SEQ_BITS) - 1);
+        long day = Math.floorDiv(localSecond, 86_400L);
+        long secOfDay = Math.floorMod(localSecond, 86_400L);
+
+        long payload = (((secOfDay << SEQ_BITS) | seq) << NODE_BITS) | nodeId;
+        String date = LocalDate.ofEpochDay(day).format(DATE);
+
+        char[] body = new char[date.length() + PAYLOAD_CHARS];
+        date.getChars(0, date.length(), body, 0);
+        for (int i = body.length - 1; i >= date.length(); i--) {
+            body[i] = ALPHABET[(int) (payload & 31)];
+            payload >>>= 5;
+        }
+        return PREFIX + date + "-" + new String(body, date.length(), PAYLOAD_CHARS) + checkChar(body);
+    }
+
+    /** Kiểm tra định dạng + ký tự kiểm tra (không chạm DB) */
+    public static boolean isValid(String orderNumber) {
+        int len = PREFIX.length() + 8 + 1 + PAYLOAD_CHARS + 1;
+        if (orderNumber == null || orderNumber.length() != len || !orderNumber.startsWith(PREFIX)
+                || orderNumber.charAt(PREFIX.length() + 8) != '-') {
+            return false;
+        }
+        String date = orderNumber.substring(PREFIX.length(), PREFIX.length() + 8);
+        String payload = orderNumber.substring(PREFIX.length() + 9, len - 1);
+        char[] body = (date + payload).toCharArray();
+        for (char c : body) {
+            if (indexOf(c) < 0) return false;
+        }
+        return checkChar(body) == orderNumber.charAt(len - 1);
+    }
+
+    // ===== helpers =====
+
+    // Luhn mod 32 trên chữ số ngày + payload
+    private static char checkChar(char[] body) {
+        int factor = 2;
+        int sum = 0;
+        for (int i = body.length - 1; i >= 0; i--) {
+            int addend = factor * indexOf(body[i]);
+            factor = (factor == 2) ? 1 : 2;
+            sum += addend / 32 + addend % 32;
+        }
+        return ALPHABET[(32 - sum % 32) % 32];
+    }
+
+    private static int indexOf(char c) {
+        for (int i = 0; i < ALPHABET.length; i++) {
+            if (ALPHABET[i] == c) return i;
+        }
+        return -1;
+    }
+
+    // Không cấu hình bookstore.node-id: lấy từ tên máy (chạy nhiều node thì nên đặt tay để chắc không trùng)
+    private static int defaultNodeId() {
+        String host = System.getenv("HOSTNAME");
+        try {
+            if (host == null || host.isBlank()) host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "localhost";
+        }
+        return Math.floorMod(host.hashCode(), MAX_NODE_ID + 1);
+    }
+}
@@ -1,20 +1,22 @@
 package com.vanlang.bookstore.service;
 
+import com.vanlang.bookstore.cache.UserSummaryCache;
 import com.vanlang.bookstore.model.Order;
 import com.vanlang.bookstore.model.OrderItem;
+import com.vanlang.bookstore.outbox.OrderPlacedEvent;
+import com.vanlang.bookstore.outbox.OutboxPublisher;
+import com.vanlang.bookstore.pricing.PriceEngine;
 import com.vanlang.bookstore.model.User;
+import com.vanlang.bookstore.repository.OrderItemRepository;
 import com.vanlang.bookstore.repository.OrderRepository;
 import com.vanlang.bookstore.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -22,35 +24,52 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class OrderService {
 
+    /** Các trạng thái đơn admin được chọn */
+    public static final List<String> STATUSES = List.of("PLACED", "PAID", "SHIPPED", "DONE", "CANCELED");
+
     private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
     private final UserRepository userRepository;
+    private final UserSummaryCache userSummaries;
     private final CartService cartService;
     private final BookService bookService;
+    private final OrderNumberGenerator orderNumberGenerator;
+    private final StockReservationService stockReservations;
+    private final OutboxPublisher outbox;
+    private final TransactionTemplate tx;
 
-    private String genOrderNumberOnce() {
-        String date = LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
-        String rand = UUID.randomUUID().toString().replace("-", "").substring(0, 5).toUpperCase();
-        return "ORD-" + date + "-" + rand;
+    public Order placeOrder(String loginEmailOrUsername, Order form, List<Long> selectedIds) {
+        return placeOrder(loginEmailOrUsername, form, selectedIds, null);
     }
 
-    private String newOrderNumber() {
-        for (int i = 0; i < 5; i++) {
-            String candidate = genOrderNumberOnce();
-            if (!orderRepository.existsByOrderNumber(candidate)) return candidate;
+    /**
+     * idempotencyKey: lưu vào đơn (unique) -> gửi trùng thì INSERT lỗi, rollback cả phần trừ kho.
+     * Mã đơn sinh không hỏi DB; nếu vẫn trùng (2 node cùng bookstore.node-id, đồng hồ lùi sau restart)
+     * thì cả transaction rollback và đặt lại 1 lần với mã mới. Trùng idempotencyKey thì không thử lại.
+     */
+    public Order placeOrder(String loginEmailOrUsername, Order form, List<Long> selectedIds, String idempotencyKey) {
+        String orderNumber = orderNumberGenerator.next();
+        try {
+            return tx.execute(s -> placeOrderOnce(loginEmailOrUsername, form, selectedIds, idempotencyKey, orderNumber));
+        } catch (DataIntegrityViolationException e) {
+            if (!orderRepository.existsByOrderNumber(orderNumber)) throw e;
+            System.out.println("WARN: mã đơn " + orderNumber + " đã tồn tại (trùng bookstore.node-id?), đặt lại với mã mới");
+            String retryNumber = orderNumberGenerator.next();
+            return tx.execute(s -> placeOrderOnce(loginEmailOrUsername, form, selectedIds, idempotencyKey, retryNumber));
         }
-        return genOrderNumberOnce();
     }
 
-    @Transactional
-    public Order placeOrder(String loginEmailOrUsername, Order form, List<Long> selectedIds) {
+    private Order placeOrderOnce(String loginEmailOrUsername, Order form, List<Long> selectedIds,
+                                 String idempotencyKey, String orderNumber) {
         if (selectedIds == null || selectedIds.isEmpty()) {
             throw new IllegalStateException("Bạn chưa chọn sản phẩm nào để thanh toán.");
         }
         Set<Long> chosen = new HashSet<>(selectedIds);
 
-        User user = (loginEmailOrUsername == null)
-                ? null
-                : userRepository.findByEmailOrUsername(loginEmailOrUsername).orElse(null);
+        // id lấy từ UserSummaryCache, gắn bằng reference: không SELECT users lúc đặt đơn
+        User user = userSummaries.find(loginEmailOrUsername)
+                .map(u -> userRepository.getReferenceById(u.id()))
+                .orElse(null);
 
         var cartItems = cartService.getItems();
         if (cartItems == null || cartItems.isEmpty()) {
@@ -58,8 +77,8 @@ public class OrderService {
         }
 
         var filtered = cartItems.stream()
-                .filter(ci -> ci.getBook()!=null && ci.getBook().getId()!=null
-                        && chosen.contains(ci.getBook().getId()))
+                .filter(ci -> ci.getBook()!=null && ci.getBook().id()!=null
+                        && chosen.contains(ci.getBook().id()))
                 .collect(Collectors.toList());
 
         if (filtered.isEmpty()) {
@@ -67,8 +86,9 @@ public class OrderService {
         }
 
         Order o = new Order();
-        o.setOrderNumber(newOrderNumber());
+        o.setOrderNumber(orderNumber); // không cần hỏi DB xem trùng chưa
         o.setUser(user);
+        o.setIdempotencyKey(idempotencyKey);
 
         o.setCustomerName(form.getCustomerName());
         o.setCustomerPhone(form.getCustomerPhone());
@@ -79,40 +99,33 @@ public class OrderService {
         o.setStatus("PLACED");
         o.setCreatedAt(LocalDateTime.now());
 
-        BigDecimal total = BigDecimal.ZERO;
+        long total = 0L;
+        Map<Long, Integer> quantities = new HashMap<>();
         for (var ci : filtered) {
-            var price = ci.getUnitPrice();
-            if (price == null) {
-                throw new IllegalStateException("Sản phẩm không có giá hợp lệ: " + ci.getBook().getTitle());
-            }
-
-            // trừ kho
-            boolean stockUpdated = bookService.updateStock(ci.getBook().getId(), ci.getQuantity());
-            if (!stockUpdated) {
-                throw new IllegalStateException("Không đủ hàng trong kho cho sản phẩm: " + ci.getBook().getTitle());
-            }
+            quantities.merge(ci.getBook().id(), ci.getQuantity(), Integer::sum);
 
             OrderItem it = new OrderItem();
-            it.setBook(ci.getBook());
+            it.setBook(bookService.getReference(ci.getBook().id()));
             it.setQuantity(ci.getQuantity());
-            it.setPrice(price.setScale(0, RoundingMode.HALF_UP).longValue());
+            it.setPrice(ci.getUnitPrice()); // giá đã chốt trong giỏ (đồng)
             o.addItem(it);
-            total = total.add(price.multiply(BigDecimal.valueOf(ci.getQuantity())));
+            total = PriceEngine.add(total, ci.getSubtotal());
         }
 
-        o.setTotal(total.setScale(0, RoundingMode.HALF_UP).longValue());
-
-        for (int attempt = 0; attempt < 3; attempt++) {
-            try {
-                Order saved = orderRepository.save(o);
-                cartService.removeByBookIds(chosen);
-                return saved;
-            } catch (DataIntegrityViolationException ex) {
-                o.setOrderNumber(genOrderNumberOnce());
-                if (attempt == 2) throw ex;
-            }
-        }
-        throw new IllegalStateException("Không thể tạo đơn hàng.");
+        o.setTotal(total);
+
+        // trừ kho cả đơn trong 1 câu lệnh, chừa lại phần người khác đang giữ; thiếu 1 dòng -> exception, rollback toàn bộ
+        bookService.decrementStock(quantities, stockReservations.heldByOthers(loginEmailOrUsername, quantities.keySet()));
+        // đặt xong thì bỏ lần giữ hàng của mình (hàng đã trừ thật trong DB)
+        AfterCommit.run(() -> stockReservations.release(loginEmailOrUsername));
+
+        Order saved = orderRepository.save(o);
+        // việc phụ (thông báo, cảnh báo tồn kho, thống kê) ghi vào outbox cùng transaction, xử lý ở background
+        outbox.publish(saved.getId(), OrderPlacedEvent.TYPE, new OrderPlacedEvent(saved.getId(),
+                saved.getOrderNumber(), saved.getCustomerEmail(), saved.getTotal(), quantities));
+        // bỏ khỏi giỏ khi đơn đã commit: lần đặt bị rollback (VD trùng mã, đặt lại) không làm mất giỏ
+        AfterCommit.run(() -> cartService.removeByBookIds(chosen));
+        return saved;
     }
 
     public Order findById(Long id) {
@@ -121,57 +134,60 @@ public class OrderService {
     }
 
     // ✅ QUAN TRỌNG: cập nhật qua service để kho + doanh thu chuẩn
+    // Huỷ: hoàn kho + total = 0; khôi phục: trừ kho lại (kiểm tra đủ hàng) + tính lại total.
+    // Số câu SQL không phụ thuộc số dòng hàng của đơn (xem updateStatuses)
     @Transactional
     public void updateStatus(Long orderId, String newStatus) {
-        // Lấy kèm items để thao tác trong 1 transaction
-        Order order = orderRepository.findByIdWithItems(orderId)
-                .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
-
-        String oldStatus = order.getStatus();
-        if (Objects.equals(oldStatus, newStatus)) return;
-
-        // Hủy: hoàn kho + total = 0
-        if (!"CANCELED".equals(oldStatus) && "CANCELED".equals(newStatus)) {
-            if (order.getItems() != null) {
-                for (OrderItem item : order.getItems()) {
-                    var book = item.getBook();
-                    if (book != null) {
-                        book.setStock(book.getStock() + item.getQuantity());
-                        bookService.saveBook(book);
-                    }
-                }
-            }
-            order.setStatus("CANCELED");
-            order.setTotal(0L); // 💥 để dashboard/report tự trừ doanh thu
-            orderRepository.save(order);
-            return;
+        if (updateStatuses(List.of(orderId), newStatus) == 0 && !orderRepository.existsById(orderId)) {
+            throw new RuntimeException("Order not found: " + orderId);
         }
+    }
 
-        // Khôi phục: trừ kho lại + tính lại total
-        if ("CANCELED".equals(oldStatus) && !"CANCELED".equals(newStatus)) {
-            long recomputed = 0L;
-            if (order.getItems() != null) {
-                for (OrderItem item : order.getItems()) {
-                    var book = item.getBook();
-                    if (book != null) {
-                        if (book.getStock() >= item.getQuantity()) {
-                            book.setStock(book.getStock() - item.getQuantity());
-                            bookService.saveBook(book);
-                        } else {
-                            throw new IllegalStateException("Không đủ tồn kho để khôi phục đơn #" + order.getId());
-                        }
-                        recomputed += (long) item.getQuantity() * (item.getPrice() == null ? 0L : item.getPrice());
-                    }
-                }
-            }
-            order.setStatus(newStatus);
-            order.setTotal(recomputed); // 💥 cộng lại doanh thu
-            orderRepository.save(order);
-            return;
+    /**
+     * Chuyển trạng thái nhiều đơn trong 1 transaction, không nạp entity:
+     * huỷ -> cộng kho gộp theo sách (1 câu UPDATE), khôi phục -> trừ kho gộp theo sách (thiếu hàng: exception, rollback cả lô),
+     * trạng thái / total đổi bằng UPDATE ... WHERE id IN (...).
+     * @return số đơn thật sự đổi trạng thái (đơn không tồn tại / đã ở trạng thái mới thì bỏ qua)
+     */
+    @Transactional
+    public int updateStatuses(Collection<Long> orderIds, String newStatus) {
+        if (!STATUSES.contains(newStatus)) {
+            throw new IllegalArgumentException("Trạng thái không hợp lệ: " + newStatus);
+        }
+        if (orderIds == null || orderIds.isEmpty()) return 0;
+
+        List<Long> cancel = new ArrayList<>();
+        List<Long> restore = new ArrayList<>();
+        List<Long> other = new ArrayList<>();
+        for (Object[] r : orderRepository.lockStatusRows(orderIds)) {
+            Long id = (Long) r[0];
+            String oldStatus = (String) r[1];
+            if (Objects.equals(oldStatus, newStatus)) continue;
+            if ("CANCELED".equals(newStatus)) cancel.add(id);
+            else if ("CANCELED".equals(oldStatus)) restore.add(id);
+            else other.add(id);
+        }
+
+        if (!cancel.isEmpty()) {
+            bookService.restock(quantitiesByBook(cancel));
+            orderRepository.cancelIn(cancel);
         }
+        if (!restore.isEmpty()) {
+            bookService.decrementStock(quantitiesByBook(restore));
+            orderRepository.restoreIn(restore, newStatus);
+        }
+        if (!other.isEmpty()) {
+            orderRepository.updateStatusIn(other, newStatus);
+        }
+        return cancel.size() + restore.size() + other.size();
+    }
 
-        // Các chuyển trạng thái khác
-        order.setStatus(newStatus);
-        orderRepository.save(order);
+    // bookId -> tổng số lượng trong các đơn (1 câu GROUP BY)
+    private Map<Long, Integer> quantitiesByBook(Collection<Long> orderIds) {
+        Map<Long, Integer> out = new HashMap<>();
+        for (Object[] r : orderItemRepository.sumQuantityByBook(orderIds)) {
+            out.put((Long) r[0], ((Number) r[1]).intValue());
+        }
+        return out;
     }
 }
@@ -0,0 +1,171 @@
+package com.vanlang.bookstore.service;
+
+import com.vanlang.bookstore.cache.CatalogCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Giữ hàng tạm (TTL) từ lúc mở trang checkout tới lúc xác nhận đơn, trong bộ nhớ.
+ * - Mỗi người dùng có tối đa 1 lần giữ; mở lại trang checkout thì thay lần giữ cũ
+ * - held[bookId] cộng dồn sẵn -> available(bookId) = stock - held là O(1), không query gom nhóm
+ * - Hết hạn: DelayQueue + 1 thread nền trả hàng, không quét bảng
+ * - placeOrder trừ kho với điều kiện chừa lại phần đang giữ cho người khác, rồi release() lần giữ của mình
+ */
+@Service
+public class StockReservationService {
+
+    /** Lần giữ hàng của 1 người */
+    public record Hold(long id, String holder, Map<Long, Integer> quantities, Instant expiresAt) {}
+
+    private record Expiry(long holdId, String holder, long deadlineNanos) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(deadlineNanos, ((Expiry) o).deadlineNanos);
+        }
+    }
+
+    private final Duration ttl;
+    private final CatalogCache catalogCache;
+
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> held = new ConcurrentHashMap<>();
+    private final DelayQueue<Expiry> expiries = new DelayQueue<>();
+    private final AtomicLong ids = new AtomicLong();
+    private Thread reaper;
+
+    public StockReservationService(@Value("${bookstore.reservation.ttl-seconds:600}") long ttlSeconds,
+                                   CatalogCache catalogCache) {
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.catalogCache = catalogCache;
+    }
+
+    @PostConstruct
+    public void start() {
+        reaper = new Thread(this::reapLoop, "stock-reservation-reaper");
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (reaper != null) reaper.interrupt();
+    }
+
+    /**
+     * Giữ hàng cho holder (thay lần giữ cũ nếu có).
+     * @param currentStock tồn kho hiện tại trong DB của các sách cần giữ
+     * @return các bookId không đủ hàng (đã trừ phần người khác đang giữ); rỗng = giữ thành công
+     */
+    public synchronized Set<Long> reserve(String holder, Map<Long, Integer> quantities, Map<Long, Integer> currentStock) {
+        Hold previous = holds.get(holder);
+        Set<Long> shortages = new LinkedHashSet<>();
+        for (var e : quantities.entrySet()) {
+            int mine = (previous == null) ? 0 : previous.quantities().getOrDefault(e.getKey(), 0);
+            int others = heldCount(e.getKey()) - mine;
+            if (currentStock.getOrDefault(e.getKey(), 0) - others < e.getValue()) {
+                shortages.add(e.getKey());
+            }
+        }
+        if (!shortages.isEmpty()) return shortages;
+
+        Set<Long> changed = new HashSet<>(quantities.keySet());
+        if (previous != null) {
+            removeHold(previous);
+            changed.addAll(previous.quantities().keySet());
+        }
+        Hold hold = new Hold(ids.incrementAndGet(), holder, Map.copyOf(quantities), Instant.now().plus(ttl));
+        holds.put(holder, hold);
+        hold.quantities().forEach((bookId, q) -> held.computeIfAbsent(bookId, k -> new AtomicInteger()).addAndGet(q));
+        expiries.add(new Expiry(hold.id(), holder, System.nanoTime() + ttl.toNanos()));
+        catalogCache.markStockChanged(changed);
+        return shortages;
+    }
+
+    /** Trả lại hàng đang giữ (đã đặt đơn xong hoặc huỷ) */
+    public synchronized void release(String holder) {
+        if (holder == null) return;
+        Hold hold = holds.get(holder);
+        if (hold != null) {
+            removeHold(hold);
+            catalogCache.markStockChanged(hold.quantities().keySet());
+        }
+    }
+
+    public Optional<Hold> find(String holder) {
+        return Optional.ofNullable(holder == null ? null : holds.get(holder));
+    }
+
+    /** Tổng số cuốn đang được giữ (mọi người) */
+    public int heldCount(Long bookId) {
+        AtomicInteger n = held.get(bookId);
+        return (n == null) ? 0 : n.get();
+    }
+
+    /** Số cuốn còn bán được = tồn kho - đang giữ */
+    public int available(Long bookId, Integer stock) {
+        return Math.max(0, (stock == null ? 0 : stock) - heldCount(bookId));
+    }
+
+    /** Phần người khác đang giữ cho các sách này (để placeOrder chừa lại) */
+    public Map<Long, Integer> heldByOthers(String holder, Collection<Long> bookIds) {
+        Hold mine = (holder == null) ? null : holds.get(holder);
+        Map<Long, Integer> out = new HashMap<>();
+        for (Long id : bookIds) {
+            int others = heldCount(id) - (mine == null ? 0 : mine.quantities().getOrDefault(id, 0));
+            if (others > 0) out.put(id, others);
+        }
+        return out;
+    }
+
+    // ===== helpers =====
+
+    private void removeHold(Hold hold) {
+        holds.remove(hold.holder(), hold);
+        hold.quantities().forEach((bookId, q) -> {
+            AtomicInteger n = held.get(bookId);
+            if (n != null && n.addAndGet(-q) <= 0) held.remove(bookId, n);
+        });
+    }
+
+    private void reapLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                expire(expiries.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Chỉ trả hàng nếu lần giữ đó vẫn còn (chưa bị thay / đã đặt đơn)
+    private synchronized void expire(Expiry expiry) {
+        Hold hold = holds.get(expiry.holder());
+        if (hold != null && hold.id() == expiry.holdId()) {
+            removeHold(hold);
+            catalogCache.markStockChanged(hold.quantities().keySet());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.vanlang.bookstore.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Lưu file upload vào uploads/{folder}/ với tên có hash nội dung: {baseName}-{hash16}{ext}.
+ * Đổi ảnh là đổi URL -> trình duyệt được phép cache ảnh vĩnh viễn (xem WebConfig).
+ * Ảnh cũ bị thay được xoá (kèm các biến thể) sau khi entity trỏ sang ảnh mới đã commit.
+ */
+@Service
+public class UploadStorage {
+
+    public static final Path ROOT = Path.of("uploads").toAbsolutePath().normalize();
+
+    // 16 ký tự hex = 64 bit đầu của SHA-256, đủ để không trùng giữa các phiên bản ảnh
+    public static final int HASH_LENGTH = 16;
+
+    /** Lưu file, trả về URL công khai dạng /uploads/{folder}/{baseName}-{hash}{ext} */
+    public String store(MultipartFile file, String folder, String baseName) throws IOException {
+        Path dir = ROOT.resolve(folder).normalize();
+        if (!dir.startsWith(ROOT)) {
+            throw new IllegalArgumentException("Thư mục upload không hợp lệ: " + folder);
+        }
+        Files.createDirectories(dir);
+
+        // Ghi ra file tạm và tính hash cùng lúc (chỉ đọc stream 1 lần)
+        MessageDigest md = sha256();
+        Path tmp = Files.createTempFile(dir, ".upload-", ".tmp");
+        try (InputStream in = new DigestInputStream(file.getInputStream(), md)) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        String hash = HexFormat.of().formatHex(md.digest()).substring(0, HASH_LENGTH);
+        String fileName = baseName + "-" + hash + extension(file.getOriginalFilename());
+        Files.move(tmp, dir.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+        return "/uploads/" + folder + "/" + fileName;
+    }
+
+    /**
+     * oldUrl vừa bị newUrl thay: xoá file cũ + biến thể ({tên}-{width}.jpg) sau khi transaction hiện tại commit
+     * (rollback thì entity vẫn trỏ ảnh cũ -> giữ). Không có transaction thì xoá ngay.
+     */
+    public void deleteReplaced(String oldUrl, String newUrl) {
+        if (oldUrl == null || oldUrl.equals(newUrl) || !oldUrl.startsWith("/uploads/")) return;
+        AfterCommit.run(() -> delete(oldUrl));
+    }
+
+    private void delete(String url) {
+        Path file = ROOT.resolve(url.substring("/uploads/".length())).normalize();
+        if (!file.startsWith(ROOT) || file.getParent() == null) return;
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = (dot > 0) ? name.substring(0, dot) : name;
+        Pattern variant = Pattern.compile(Pattern.quote(base) + "-\\d{1,4}\\.jpg");
+        try {
+            Files.deleteIfExists(file);
+            try (DirectoryStream<Path> siblings = Files.newDirectoryStream(file.getParent())) {
+                for (Path p : siblings) {
+                    if (variant.matcher(p.getFileName().toString()).matches()) Files.deleteIfExists(p);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("WARN: could not delete replaced upload " + url + ": " + e.getMessage());
+        }
+    }
+
+    // Chỉ giữ phần mở rộng ảnh an toàn, mặc định .jpg
+    static String extension(String originalName) {
+        if (originalName == null) return ".jpg";
+        int dot = originalName.lastIndexOf('.');
+        if (dot < 0) return ".jpg";
+        String ext = originalName.substring(dot).toLowerCase(Locale.ROOT);
+        return ext.matches("\\.(jpg|jpeg|png|gif|webp|bmp)") ? ext : ".jpg";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.vanlang.bookstore.service;
 
+import com.vanlang.bookstore.cache.UserSummaryCache;
 import com.vanlang.bookstore.model.User;
 import com.vanlang.bookstore.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
@@ -9,10 +10,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.Optional;
 
 @Service
@@ -21,6 +18,9 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ImageVariantService imageVariantService;
+    private final UploadStorage uploadStorage;
+    private final UserSummaryCache userSummaries;
 
     public boolean existsByEmail(String email) {
         return userRepository.existsByEmail(email);
@@ -91,41 +91,25 @@ public class UserService {
 
         // upload avatar
         if (avatarFile != null && !avatarFile.isEmpty()) {
-            String original = avatarFile.getOriginalFilename();
-            String ext = getExtensionSafe(original);
-            String fileName = "avatar-" + u.getId() + ext;
-
-            Path uploadDir = Paths.get("uploads", "avatars").toAbsolutePath().normalize();
-            Path dest = uploadDir.resolve(fileName);
-
             try {
-                Files.createDirectories(uploadDir);
-                Files.copy(avatarFile.getInputStream(), dest, StandardCopyOption.REPLACE_EXISTING);
-                u.setAvatarUrl("/uploads/avatars/" + fileName);
+                // tên file có hash nội dung -> URL đổi khi đổi ảnh; ảnh cũ xoá sau khi commit
+                String oldAvatar = u.getAvatarUrl();
+                u.setAvatarUrl(uploadStorage.store(avatarFile, "avatars", "avatar-" + u.getId()));
+                uploadStorage.deleteReplaced(oldAvatar, u.getAvatarUrl());
+                imageVariantService.submit(u.getAvatarUrl(), ImageVariantService.Kind.AVATAR);
             } catch (Exception e) {
                 throw new RuntimeException("Upload avatar lỗi: " + e.getMessage(), e);
             }
         } else if (form.getAvatarUrl() != null && !form.getAvatarUrl().isBlank()) {
+            String oldAvatar = u.getAvatarUrl();
             u.setAvatarUrl(form.getAvatarUrl().trim());
+            uploadStorage.deleteReplaced(oldAvatar, u.getAvatarUrl());
         }
 
+        AfterCommit.run(userSummaries::invalidateAll); // tên / avatar trên đầu trang
         return userRepository.save(u);
     }
 
-    private String sanitize(String name) {
-        if (name == null) return "noname";
-        return name.replaceAll("[^a-zA-Z0-9._-]", "_");
-    }
-
-    private String getExtensionSafe(String originalName) {
-        String safe = sanitize(originalName);
-        int dot = safe.lastIndexOf('.');
-        if (dot >= 0 && dot < safe.length() - 1) {
-            return safe.substring(dot);
-        }
-        return ".png";
-    }
-
     private String trimOrNull(String s) {
         return (s == null) ? null : s.trim();
     }
@@ -153,5 +137,6 @@ public class UserService {
         u.setShippingPhone(phone);
         u.setShippingAddress(address);
         userRepository.save(u);
+        AfterCommit.run(userSummaries::invalidateAll); // form checkout lần sau điền theo địa chỉ mới
     }
 }
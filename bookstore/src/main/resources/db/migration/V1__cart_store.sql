@@ -0,0 +1,17 @@
+-- Giỏ hàng dùng chung giữa các instance (JdbcCartStore): 1 dòng version / giỏ + 1 dòng / món
+CREATE TABLE IF NOT EXISTS carts (
+    cart_key   VARCHAR(100) NOT NULL PRIMARY KEY,
+    version    BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
+
+-- Không có khoá ngoại tới books: sách bị xoá thì dòng giỏ tự bị bỏ qua lúc hiển thị
+CREATE TABLE IF NOT EXISTS cart_items (
+    cart_key   VARCHAR(100) NOT NULL,
+    book_id    BIGINT NOT NULL,
+    quantity   INT NOT NULL,
+    unit_price BIGINT NOT NULL,
+    line_no    INT NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (cart_key, book_id)
+);
@@ -0,0 +1,30 @@
+-- Id cấp theo khối cho entity (@TableGenerator, optimizer pooled-lo): 1 dòng / bảng,
+-- next_val = id đầu của khối kế tiếp; mỗi lần hỏi DB lấy 50 id -> Hibernate gom INSERT thành batch được
+CREATE TABLE IF NOT EXISTS id_sequences (
+    seq_name VARCHAR(64) NOT NULL PRIMARY KEY,
+    next_val BIGINT NOT NULL
+);
+
+-- Bắt đầu sau MAX(id) đang có (dòng cũ từ AUTO_INCREMENT).
+-- Sau đó mọi INSERT vào các bảng này phải đi qua ứng dụng: INSERT nhờ AUTO_INCREMENT từ ngoài sẽ lấy id
+-- nằm trong khối đã cấp -> trùng khoá. Nên bỏ AUTO_INCREMENT để INSERT thiếu id báo lỗi ngay:
+--   ALTER TABLE orders MODIFY id BIGINT NOT NULL;  (tương tự books, categories, users, order_items)
+INSERT INTO id_sequences (seq_name, next_val)
+SELECT 'users', t.next_val FROM (SELECT COALESCE(MAX(id), 0) + 1 AS next_val FROM users) t
+WHERE NOT EXISTS (SELECT 1 FROM id_sequences WHERE seq_name = 'users');
+
+INSERT INTO id_sequences (seq_name, next_val)
+SELECT 'categories', t.next_val FROM (SELECT COALESCE(MAX(id), 0) + 1 AS next_val FROM categories) t
+WHERE NOT EXISTS (SELECT 1 FROM id_sequences WHERE seq_name = 'categories');
+
+INSERT INTO id_sequences (seq_name, next_val)
+SELECT 'books', t.next_val FROM (SELECT COALESCE(MAX(id), 0) + 1 AS next_val FROM books) t
+WHERE NOT EXISTS (SELECT 1 FROM id_sequences WHERE seq_name = 'books');
+
+INSERT INTO id_sequences (seq_name, next_val)
+SELECT 'orders', t.next_val FROM (SELECT COALESCE(MAX(id), 0) + 1 AS next_val FROM orders) t
+WHERE NOT EXISTS (SELECT 1 FROM id_sequences WHERE seq_name = 'orders');
+
+INSERT INTO id_sequences (seq_name, next_val)
+SELECT 'order_items', t.next_val FROM (SELECT COALESCE(MAX(id), 0) + 1 AS next_val FROM order_items) t
+WHERE NOT EXISTS (SELECT 1 FROM id_sequences WHERE seq_name = 'order_items');
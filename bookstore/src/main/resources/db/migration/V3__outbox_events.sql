@@ -0,0 +1,16 @@
+-- Sự kiện chờ xử lý sau khi đặt đơn (OutboxEvent / OutboxDispatcher), ghi cùng transaction với đơn
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id              BIGINT AUTO_INCREMENT PRIMARY KEY,
+    aggregate_id    BIGINT NOT NULL,
+    type            VARCHAR(50) NOT NULL,
+    payload         TEXT NOT NULL,
+    created_at      DATETIME(6) NOT NULL,
+    attempts        INT NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME(6) NULL,
+    processed_at    DATETIME(6) NULL,
+    failed_at       DATETIME(6) NULL,
+    last_error      VARCHAR(500) NULL,
+    done_handlers   VARCHAR(500) NULL,
+    KEY idx_outbox_pending (processed_at, failed_at, id),
+    KEY idx_outbox_aggregate (aggregate_id)
+);
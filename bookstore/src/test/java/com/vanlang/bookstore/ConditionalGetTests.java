@@ -0,0 +1,116 @@
+package com.vanlang.bookstore;
+
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.model.Category;
+import com.vanlang.bookstore.repository.CategoryRepository;
+import com.vanlang.bookstore.service.BookService;
+import com.vanlang.bookstore.service.CategoryService;
+import com.vanlang.bookstore.service.StockReservationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Trang chi tiết sách / danh mục trả 304 khi không đổi, và 200 khi sách đổi hoặc khác phiên.
+ * Giữ hàng lúc checkout chỉ làm trang chi tiết của đúng cuốn đó render lại.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class ConditionalGetTests {
+
+	@Autowired MockMvc mvc;
+	@Autowired BookService bookService;
+	@Autowired CategoryService categoryService;
+	@Autowired CategoryRepository categoryRepository;
+	@Autowired StockReservationService stockReservations;
+
+	private Category category;
+	private Book book;
+
+	@BeforeEach
+	void seed() {
+		category = categoryRepository.findBySlug("etag-test").orElseGet(() -> {
+			Category c = new Category();
+			c.setName("ETag test");
+			c.setSlug("etag-test");
+			return categoryService.create(c);
+		});
+		Book b = new Book();
+		b.setTitle("Sách ETag");
+		b.setPrice(BigDecimal.valueOf(10_000));
+		b.setStock(5);
+		b.setCategory(category);
+		book = bookService.saveBook(b);
+	}
+
+	@Test
+	void bookDetailRevalidates() throws Exception {
+		MockHttpSession session = new MockHttpSession();
+		String url = "/books/" + book.getId();
+
+		String etag = mvc.perform(get(url).session(session))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader("ETag");
+		assertThat(etag).isNotBlank();
+
+		mvc.perform(get(url).session(session).header("If-None-Match", etag))
+				.andExpect(status().isNotModified());
+
+		// sửa sách -> trang phải render lại
+		book.setPrice(BigDecimal.valueOf(12_000));
+		bookService.saveBook(book);
+		mvc.perform(get(url).session(session).header("If-None-Match", etag))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void categoryPageIsPerSession() throws Exception {
+		MockHttpSession session = new MockHttpSession();
+		String url = "/categories/" + category.getSlug(); // trang danh mục cần đăng nhập
+
+		String etag = mvc.perform(get(url).session(session).with(user("bob")))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader("ETag");
+		mvc.perform(get(url).session(session).with(user("bob")).header("If-None-Match", etag))
+				.andExpect(status().isNotModified());
+
+		// phiên khác (VD vừa đăng nhập -> session mới, CSRF mới) không được dùng lại bản cũ
+		mvc.perform(get(url).session(new MockHttpSession()).with(user("bob")).header("If-None-Match", etag))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void holdOnlyRevalidatesThatBook() throws Exception {
+		MockHttpSession session = new MockHttpSession();
+		String detail = "/books/" + book.getId();
+		String page = "/categories/" + category.getSlug();
+
+		String detailTag = mvc.perform(get(detail).session(session)).andReturn().getResponse().getHeader("ETag");
+		String pageTag = mvc.perform(get(page).session(session).with(user("bob"))).andReturn().getResponse().getHeader("ETag");
+
+		stockReservations.reserve("etag-holder", Map.of(book.getId(), 2), Map.of(book.getId(), 5));
+		try {
+			// số còn bán trên trang chi tiết đổi -> 200; trang danh mục không hiện tồn kho -> vẫn 304
+			mvc.perform(get(detail).session(session).header("If-None-Match", detailTag))
+					.andExpect(status().isOk());
+			mvc.perform(get(page).session(session).with(user("bob")).header("If-None-Match", pageTag))
+					.andExpect(status().isNotModified());
+		} finally {
+			stockReservations.release("etag-holder");
+		}
+	}
+}
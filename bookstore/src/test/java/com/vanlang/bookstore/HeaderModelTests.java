@@ -0,0 +1,79 @@
+package com.vanlang.bookstore;
+
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.model.User;
+import com.vanlang.bookstore.repository.BookRepository;
+import com.vanlang.bookstore.repository.UserRepository;
+import com.vanlang.bookstore.support.SqlStatementCounter;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Đầu trang (số món trong giỏ, tên người dùng) tính 1 lần / request từ HeaderModel:
+ * người dùng đọc qua UserSummaryCache, giỏ của khách theo cookie không bị trang cache dùng chung che mất.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class HeaderModelTests {
+
+	private static final Pattern BADGE = Pattern.compile("fa-shopping-bag[^<]*</i>\\s*<span[^>]*>\\s*(\\d+)\\s*<");
+
+	@Autowired MockMvc mvc;
+	@Autowired UserRepository userRepository;
+	@Autowired BookRepository bookRepository;
+
+	@Test
+	void userSummaryIsReadOncePerTtl() throws Exception {
+		userRepository.findByUsername("header-bob").orElseGet(() -> userRepository.save(User.builder()
+				.username("header-bob").fullName("Bob Trần").email("header-bob@example.com")
+				.password("x").role(User.Role.USER).build()));
+
+		mvc.perform(get("/orders").with(user("header-bob"))).andExpect(status().isOk());
+
+		SqlStatementCounter.reset();
+		String html = mvc.perform(get("/orders").with(user("header-bob")))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		assertThat(SqlStatementCounter.count()).as("chỉ còn query danh sách đơn").isEqualTo(1);
+		assertThat(html).contains("Bob Trần");
+	}
+
+	@Test
+	void guestCartBadgeIsNotServedFromSharedPageCache() throws Exception {
+		Book book = new Book();
+		book.setTitle("Sách đầu trang");
+		book.setPrice(BigDecimal.valueOf(40_000));
+		book.setStock(10);
+		book = bookRepository.save(book);
+
+		assertThat(badge(mvc.perform(get("/books")).andReturn().getResponse().getContentAsString())).isZero();
+
+		Cookie cart = mvc.perform(post("/cart/add").param("bookId", book.getId().toString()).param("quantity", "2").with(csrf()))
+				.andReturn().getResponse().getCookie("CART_ID");
+		String html = mvc.perform(get("/books").cookie(cart)).andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		assertThat(badge(html)).isEqualTo(2);
+	}
+
+	private static int badge(String html) {
+		var m = BADGE.matcher(html);
+		assertThat(m.find()).as("có badge giỏ hàng").isTrue();
+		return Integer.parseInt(m.group(1));
+	}
+}
@@ -0,0 +1,58 @@
+package com.vanlang.bookstore;
+
+import com.vanlang.bookstore.model.Category;
+import com.vanlang.bookstore.repository.CategoryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Khối id (id_sequences, pooled-lo): migration cho bảng đã có dữ liệu bắt đầu sau MAX(id),
+ * next_val là id đầu của khối kế tiếp, 1 lần hỏi DB đủ cho cả khối.
+ */
+// context riêng: generator chưa giữ khối id nào của categories
+@SpringBootTest(properties = {"bookstore.page-cache.enabled=false", "bookstore.catalog-cache.max-entries=63"})
+@ActiveProfiles("h2")
+class IdSequenceTests {
+
+	@Autowired CategoryRepository categoryRepository;
+	@Autowired JdbcTemplate jdbc;
+	@Autowired DataSource dataSource;
+
+	@Test
+	void blocksStartAfterExistingRows() {
+		// bảng cũ (AUTO_INCREMENT) chưa có dòng trong id_sequences
+		jdbc.update("DELETE FROM id_sequences WHERE seq_name = 'categories'");
+		jdbc.update("INSERT INTO categories (id, name, slug) VALUES (41, 'Cũ', 'cu')");
+		new ResourceDatabasePopulator(new ClassPathResource("db/migration/V2__id_sequences.sql")).execute(dataSource);
+		assertThat(nextVal()).isEqualTo(42);
+
+		try {
+			assertThat(categoryRepository.save(category("Mới 1")).getId()).isEqualTo(42);
+			assertThat(categoryRepository.save(category("Mới 2")).getId()).isEqualTo(43);
+			assertThat(nextVal()).isEqualTo(92);
+		} finally {
+			jdbc.update("DELETE FROM categories WHERE id IN (41, 42, 43)");
+		}
+	}
+
+	// ===== helpers =====
+
+	private long nextVal() {
+		return jdbc.queryForObject("SELECT next_val FROM id_sequences WHERE seq_name = 'categories'", Long.class);
+	}
+
+	private static Category category(String name) {
+		Category c = new Category();
+		c.setName(name);
+		return c;
+	}
+}
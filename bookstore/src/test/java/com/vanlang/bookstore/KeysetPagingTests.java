@@ -0,0 +1,128 @@
+package com.vanlang.bookstore;
+
+import com.vanlang.bookstore.dto.BookCard;
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.model.Category;
+import com.vanlang.bookstore.repository.CategoryRepository;
+import com.vanlang.bookstore.service.BookService;
+import com.vanlang.bookstore.service.BookService.BookSlice;
+import com.vanlang.bookstore.service.CategoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Phân trang keyset (id desc): cursor Trước / Sau ở các trang đầu, giữa, cuối,
+ * và link trên trang giữ đúng đường dẫn đang xem (/books/c/{slug} hay /categories/{slug}).
+ */
+@SpringBootTest(properties = "bookstore.page-cache.enabled=false")
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class KeysetPagingTests {
+
+	private static final String SLUG = "keyset-test";
+
+	@Autowired MockMvc mvc;
+	@Autowired BookService bookService;
+	@Autowired CategoryService categoryService;
+	@Autowired CategoryRepository categoryRepository;
+
+	private Category category;
+	private List<Long> ids; // mới nhất trước
+
+	@BeforeEach
+	void seed() {
+		category = categoryRepository.findBySlug(SLUG).orElseGet(() -> {
+			Category c = new Category();
+			c.setName("Keyset test");
+			c.setSlug(SLUG);
+			c = categoryService.create(c);
+			for (int i = 1; i <= 5; i++) {
+				Book b = new Book();
+				b.setTitle("Sách keyset " + i);
+				b.setPrice(BigDecimal.valueOf(10_000));
+				b.setStock(5);
+				b.setCategory(c);
+				bookService.saveBook(b);
+			}
+			return c;
+		});
+		ids = ids(bookService.getLatestSlice(category.getId(), null, null, 10));
+		assertThat(ids).hasSize(5).isSortedAccordingTo((a, b) -> Long.compare(b, a));
+	}
+
+	@Test
+	void cursorsWalkForwardAndBack() {
+		BookSlice first = bookService.getLatestSlice(category.getId(), null, null, 2);
+		assertThat(ids(first)).containsExactly(ids.get(0), ids.get(1));
+		assertThat(first.hasPrevious()).isFalse();
+		assertThat(first.nextCursor()).isEqualTo(ids.get(1));
+
+		BookSlice middle = bookService.getLatestSlice(category.getId(), first.nextCursor(), null, 2);
+		assertThat(ids(middle)).containsExactly(ids.get(2), ids.get(3));
+		assertThat(middle.prevCursor()).isEqualTo(ids.get(2));
+		assertThat(middle.nextCursor()).isEqualTo(ids.get(3));
+
+		BookSlice last = bookService.getLatestSlice(category.getId(), middle.nextCursor(), null, 2);
+		assertThat(ids(last)).containsExactly(ids.get(4));
+		assertThat(last.hasNext()).isFalse();
+		assertThat(last.prevCursor()).isEqualTo(ids.get(4));
+
+		// quay lại: từ trang cuối về trang giữa, từ trang giữa về trang đầu (không còn Trước)
+		BookSlice back = bookService.getLatestSlice(category.getId(), null, last.prevCursor(), 2);
+		assertThat(ids(back)).containsExactly(ids.get(2), ids.get(3));
+		assertThat(back.prevCursor()).isEqualTo(ids.get(2));
+		BookSlice backToFirst = bookService.getLatestSlice(category.getId(), null, back.prevCursor(), 2);
+		assertThat(ids(backToFirst)).containsExactly(ids.get(0), ids.get(1));
+		assertThat(backToFirst.hasPrevious()).isFalse();
+	}
+
+	@Test
+	void edgesFallBackSafely() {
+		// after vượt quá cuốn mới nhất -> về trang đầu
+		BookSlice beyondNewest = bookService.getLatestSlice(category.getId(), null, ids.get(0), 2);
+		assertThat(ids(beyondNewest)).containsExactly(ids.get(0), ids.get(1));
+		assertThat(beyondNewest.hasPrevious()).isFalse();
+
+		// before cuốn cũ nhất -> trang rỗng, không còn Sau
+		BookSlice pastOldest = bookService.getLatestSlice(category.getId(), ids.get(4), null, 2);
+		assertThat(pastOldest.isEmpty()).isTrue();
+		assertThat(pastOldest.hasNext()).isFalse();
+
+		// vừa đủ 1 trang -> không có Sau
+		BookSlice exact = bookService.getLatestSlice(category.getId(), null, null, 5);
+		assertThat(ids(exact)).containsExactlyElementsOf(ids);
+		assertThat(exact.hasNext()).isFalse();
+	}
+
+	@Test
+	void pagerLinksKeepTheCurrentPath() throws Exception {
+		String books = mvc.perform(get("/books/c/" + SLUG).param("size", "2"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		assertThat(books).contains("/books/c/" + SLUG + "?sort=latest&amp;size=2&amp;before=" + ids.get(1));
+
+		String categories = mvc.perform(get("/categories/" + SLUG).param("size", "2").with(user("keyset-viewer")))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		assertThat(categories)
+				.contains("/categories/" + SLUG + "?sort=latest&amp;size=2&amp;before=" + ids.get(1))
+				.doesNotContain("/books/c/" + SLUG + "?sort=latest");
+	}
+
+	private static List<Long> ids(BookSlice slice) {
+		return slice.content().stream().map(BookCard::id).toList();
+	}
+}
@@ -0,0 +1,98 @@
+package com.vanlang.bookstore;
+
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.model.OutboxEvent;
+import com.vanlang.bookstore.model.Order;
+import com.vanlang.bookstore.model.OrderItem;
+import com.vanlang.bookstore.repository.BookRepository;
+import com.vanlang.bookstore.repository.OrderRepository;
+import com.vanlang.bookstore.repository.OutboxEventRepository;
+import com.vanlang.bookstore.support.SqlStatementCounter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Lưu 1 đơn 20 dòng: số lần gửi SQL tới DB (mỗi câu / mỗi lô batch là 1 lần) không tăng theo số dòng.
+ * Mốc so sánh đo trong cùng lần chạy: 21 dòng vào bảng IDENTITY (outbox_events) phải INSERT từng dòng để lấy id.
+ */
+@SpringBootTest(properties = "bookstore.page-cache.enabled=false")
+@ActiveProfiles("h2")
+class OrderInsertBatchingTests {
+
+	private static final int LINES = 20;
+
+	@Autowired OrderRepository orderRepository;
+	@Autowired BookRepository bookRepository;
+	@Autowired OutboxEventRepository outboxEventRepository;
+	@Autowired PlatformTransactionManager transactionManager;
+
+	@Test
+	void orderWithManyLinesIsBatched() {
+		List<Book> books = new ArrayList<>();
+		for (int i = 0; i < LINES; i++) books.add(newBook());
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+		tx.executeWithoutResult(s -> orderRepository.save(newOrder(books))); // lần đầu: lấy khối id
+		SqlStatementCounter.reset();
+		tx.executeWithoutResult(s -> orderRepository.save(newOrder(books)));
+		int pooled = SqlStatementCounter.count();
+
+		// cùng số dòng (1 + 20) vào bảng IDENTITY
+		List<OutboxEvent> rows = new ArrayList<>();
+		for (int i = 0; i <= LINES; i++) rows.add(identityRow());
+		SqlStatementCounter.reset();
+		List<OutboxEvent> saved = tx.execute(s -> outboxEventRepository.saveAll(rows));
+		int identity = SqlStatementCounter.count();
+		outboxEventRepository.deleteAll(saved);
+
+		assertThat(identity).isGreaterThanOrEqualTo(LINES + 1);
+		assertThat(pooled).isLessThanOrEqualTo(2);
+	}
+
+	// ===== helpers =====
+
+	private static Order newOrder(List<Book> books) {
+		Order o = new Order();
+		o.setOrderNumber("BT-" + UUID.randomUUID());
+		o.setCustomerName("Khách batch");
+		o.setCustomerPhone("0900000000");
+		o.setShippingAddress("Đà Nẵng");
+		for (Book b : books) {
+			OrderItem it = new OrderItem();
+			it.setBook(b);
+			it.setQuantity(1);
+			it.setPrice(10_000L);
+			o.addItem(it);
+		}
+		return o;
+	}
+
+	private static OutboxEvent identityRow() {
+		OutboxEvent e = new OutboxEvent();
+		e.setAggregateId(0L);
+		e.setType("BATCH-BASELINE"); // không có handler -> dispatcher không đụng tới
+		e.setPayload("{}");
+		e.setCreatedAt(LocalDateTime.now());
+		return e;
+	}
+
+	private Book newBook() {
+		Book b = new Book();
+		b.setTitle("Sách batch");
+		b.setPrice(new BigDecimal("10000"));
+		b.setStock(100);
+		return bookRepository.save(b);
+	}
+}
@@ -0,0 +1,118 @@
+package com.vanlang.bookstore;
+
+import com.vanlang.bookstore.cache.PageCacheFilter;
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.service.BookService;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Cache trang cho khách ẩn danh: HIT lần 2, CSRF token vẫn đúng theo phiên, xoá khi sách đổi;
+ * khách có hàng trong giỏ (theo cookie) không dùng cache.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class PageCacheTests {
+
+	private static final Pattern CSRF = Pattern.compile("name=\"_csrf\" value=\"([^\"]+)\"");
+
+	@Autowired MockMvc mvc;
+	@Autowired BookService bookService;
+	@Autowired PageCacheFilter pageCache;
+
+	private Book book;
+
+	@BeforeEach
+	void seed() {
+		pageCache.invalidateAll();
+		Book b = new Book();
+		b.setTitle("Sách cache trang");
+		b.setPrice(BigDecimal.valueOf(20_000));
+		b.setStock(3);
+		book = bookService.saveBook(b);
+	}
+
+	@Test
+	void anonymousPageServedFromCacheWithOwnCsrfToken() throws Exception {
+		String url = "/books/" + book.getId();
+		mvc.perform(get(url)).andExpect(status().isOk()).andExpect(header().string("X-Page-Cache", "MISS"));
+
+		MockHttpSession session = new MockHttpSession();
+		String html = mvc.perform(get(url).session(session))
+				.andExpect(status().isOk())
+				.andExpect(header().string("X-Page-Cache", "HIT"))
+				.andReturn().getResponse().getContentAsString();
+		assertThat(html).contains("Sách cache trang");
+
+		// token trong trang lấy từ cache phải dùng được cho phiên này (không bị 403)
+		Matcher m = CSRF.matcher(html);
+		assertThat(m.find()).isTrue();
+		int status = mvc.perform(post("/cart/add").session(session)
+						.param("_csrf", m.group(1)).param("bookId", String.valueOf(book.getId())).param("quantity", "1"))
+				.andReturn().getResponse().getStatus();
+		assertThat(status).isNotEqualTo(403);
+	}
+
+	@Test
+	void catalogChangeAndLoggedInUsersBypassCache() throws Exception {
+		mvc.perform(get("/books"));
+		mvc.perform(get("/books")).andExpect(header().string("X-Page-Cache", "HIT"));
+
+		mvc.perform(get("/books").with(user("bob"))).andExpect(header().doesNotExist("X-Page-Cache"));
+
+		book.setTitle("Sách cache trang (sửa)");
+		bookService.saveBook(book);
+		mvc.perform(get("/books")).andExpect(header().string("X-Page-Cache", "MISS"));
+	}
+
+	@Test
+	void guestWithItemsInCartBypassesCacheByCookie() throws Exception {
+		mvc.perform(get("/books"));
+		mvc.perform(get("/books")).andExpect(header().string("X-Page-Cache", "HIT"));
+
+		var added = mvc.perform(post("/cart/add").with(csrf())
+						.param("bookId", String.valueOf(book.getId())).param("quantity", "2"))
+				.andReturn().getResponse();
+		Cookie cartId = added.getCookie("CART_ID");
+		assertThat(added.getCookie("CART_COUNT").getValue()).isEqualTo("2");
+		mvc.perform(get("/books").cookie(cartId, added.getCookie("CART_COUNT")))
+				.andExpect(header().doesNotExist("X-Page-Cache"));
+		// cookie giỏ có từ trước, chưa có cookie đếm: không biết giỏ trống hay không -> không dùng cache
+		mvc.perform(get("/books").cookie(cartId)).andExpect(header().doesNotExist("X-Page-Cache"));
+
+		var removed = mvc.perform(post("/cart/remove").with(csrf()).cookie(cartId)
+						.param("bookId", String.valueOf(book.getId())))
+				.andReturn().getResponse();
+		assertThat(removed.getCookie("CART_COUNT").getValue()).isEqualTo("0");
+		mvc.perform(get("/books").cookie(cartId, removed.getCookie("CART_COUNT")))
+				.andExpect(header().string("X-Page-Cache", "HIT"));
+	}
+
+	@Test
+	void encodedParametersDoNotShareAKey() throws Exception {
+		// trang render cho keyword "x&page=5" không được trả cho ?keyword=x&page=5
+		mvc.perform(get("/search?keyword=x%26page%3D5")).andExpect(header().string("X-Page-Cache", "MISS"));
+		mvc.perform(get("/search?keyword=x&page=5")).andExpect(header().string("X-Page-Cache", "MISS"));
+		mvc.perform(get("/search?keyword=x%26page%3D5")).andExpect(header().string("X-Page-Cache", "HIT"));
+	}
+}
@@ -0,0 +1,134 @@
+package com.vanlang.bookstore;
+
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.model.Category;
+import com.vanlang.bookstore.model.Order;
+import com.vanlang.bookstore.model.OrderItem;
+import com.vanlang.bookstore.model.User;
+import com.vanlang.bookstore.repository.BookRepository;
+import com.vanlang.bookstore.repository.CategoryRepository;
+import com.vanlang.bookstore.repository.OrderRepository;
+import com.vanlang.bookstore.repository.UserRepository;
+import com.vanlang.bookstore.service.CategoryService;
+import com.vanlang.bookstore.support.SqlStatementCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Mỗi trang chính phải render được khi open-in-view = false (không LazyInitializationException)
+ * và không vượt quá số câu SQL cho phép (bắt N+1).
+ */
+@SpringBootTest(properties = "spring.jpa.open-in-view=false")
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class QueryBudgetTests {
+
+	private static final String ALICE = "alice-budget";
+
+	@Autowired MockMvc mvc;
+	@Autowired CategoryRepository categoryRepository;
+	@Autowired CategoryService categoryService;
+	@Autowired BookRepository bookRepository;
+	@Autowired UserRepository userRepository;
+	@Autowired OrderRepository orderRepository;
+
+	private Category category;
+	private Book book;
+	private Order order;
+
+	@BeforeEach
+	void seed() {
+		category = categoryRepository.findBySlug("budget-van-hoc").orElseGet(() -> {
+			Category c = new Category();
+			c.setName("Budget Văn học");
+			c.setSlug("budget-van-hoc");
+			c = categoryService.create(c);
+			for (int i = 0; i < 15; i++) {
+				Book b = new Book();
+				b.setTitle("Sách ngân sách " + i);
+				b.setAuthor("Tác giả " + i);
+				b.setDescription("Mô tả dài " + i);
+				b.setPrice(BigDecimal.valueOf(50_000 + i));
+				b.setStock(10);
+				b.setCategory(c);
+				b.setFeatured(i % 2 == 0);
+				b.setNewArrival(i % 3 == 0);
+				b.setBestSeller(i % 5 == 0);
+				bookRepository.save(b);
+			}
+			return c;
+		});
+		book = bookRepository.findAll(PageRequest.of(0, 1)).getContent().get(0);
+
+		User alice = userRepository.findByUsername(ALICE).orElseGet(() -> userRepository.save(User.builder()
+				.username(ALICE).email(ALICE + "@example.com").password("x").role(User.Role.USER).build()));
+
+		order = orderRepository.findByOrderNumber("ORD-BUDGET-1").orElseGet(() -> {
+			Order o = new Order();
+			o.setOrderNumber("ORD-BUDGET-1");
+			o.setUser(alice);
+			o.setCustomerName("Alice");
+			o.setCustomerPhone("0900000000");
+			o.setShippingAddress("HCM");
+			o.setStatus("PLACED");
+			o.setCreatedAt(LocalDateTime.now());
+			for (Book b : bookRepository.findAll().subList(0, 3)) {
+				OrderItem it = new OrderItem();
+				it.setBook(b);
+				it.setQuantity(1);
+				it.setPrice(b.getPrice().longValue());
+				o.addItem(it);
+			}
+			return orderRepository.save(o);
+		});
+	}
+
+	private void assertBudget(RequestBuilder request, int maxStatements) throws Exception {
+		SqlStatementCounter.reset();
+		mvc.perform(request).andExpect(status().isOk());
+		assertThat(SqlStatementCounter.count())
+				.as("Số câu SQL cho request")
+				.isLessThanOrEqualTo(maxStatements);
+	}
+
+	@Test
+	void storefrontPages() throws Exception {
+		assertBudget(get("/"), 4);
+		assertBudget(get("/books"), 2);
+		assertBudget(get("/books").param("sort", "priceAsc"), 3);
+		assertBudget(get("/books/c/" + category.getSlug()), 3);
+		assertBudget(get("/books/" + book.getId()), 3);
+		assertBudget(get("/books/tag/featured"), 2);
+		assertBudget(get("/search").param("keyword", "ngan sach"), 2);
+		assertBudget(get("/categories/" + category.getSlug()).with(user(ALICE)), 3);
+	}
+
+	@Test
+	void orderPages() throws Exception {
+		assertBudget(get("/orders").with(user(ALICE)), 2);
+		assertBudget(get("/orders/" + order.getOrderNumber()).with(user(ALICE)), 1);
+	}
+
+	@Test
+	void adminPages() throws Exception {
+		assertBudget(get("/admin/orders").with(user("admin").roles("ADMIN")), 1);
+		assertBudget(get("/admin/orders/" + order.getId()).with(user("admin").roles("ADMIN")), 1);
+		assertBudget(get("/admin/categories").with(user("admin").roles("ADMIN")), 2);
+		assertBudget(get("/admin/books/edit/" + book.getId()).with(user("admin").roles("ADMIN")), 2);
+	}
+}
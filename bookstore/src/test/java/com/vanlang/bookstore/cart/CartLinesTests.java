@@ -0,0 +1,127 @@
+package com.vanlang.bookstore.cart;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Giỏ gọn trong session: giữ thứ tự thêm vào (cả sau khi xoá / dồn mảng), nhiều tab sửa cùng lúc không mất cập nhật, tổng số cuốn / tổng tiền theo sát mọi thay đổi,
+ * và kích thước khi serialize nhỏ.
+ */
+class CartLinesTests {
+
+	@Test
+	void totalsFollowEveryChange() {
+		CartLines cart = new CartLines();
+		cart.add(1L, 2, 45_000L);
+		cart.add(2L, 1, 30_000L);
+		assertThat(cart.totalItems()).isEqualTo(3);
+		assertThat(cart.totalPrice()).isEqualTo(120_000L);
+
+		cart.setQuantity(2L, 4);
+		cart.add(1L, 1, 50_000L); // hết khuyến mãi: chốt lại giá mới
+		assertThat(cart.totalPrice()).isEqualTo(3 * 50_000L + 4 * 30_000L);
+
+		cart.add(3L, 1, 10_000L);
+		cart.remove(1L);
+		assertThat(cart.lines()).extracting(CartLines.Line::bookId).containsExactly(2L, 3L);
+		assertThat(cart.totalItems()).isEqualTo(5);
+		assertThat(cart.totalPrice()).isEqualTo(130_000L);
+
+		cart.setQuantity(3L, 0);
+		cart.removeAll(List.of(2L));
+		assertThat(cart.isEmpty()).isTrue();
+		assertThat(cart.totalPrice()).isZero();
+	}
+
+	@Test
+	void keepsInsertionOrderThroughRemovals() {
+		CartLines cart = new CartLines();
+		for (long id = 1; id <= 100; id++) cart.add(id, 1, 1_000L);
+		for (long id = 1; id <= 100; id++) {
+			if (id % 3 != 0) cart.remove(id); // đủ nhiều để dồn mảng
+		}
+		cart.add(1L, 2, 1_000L);
+
+		List<Long> expected = new ArrayList<>();
+		for (long id = 3; id <= 99; id += 3) expected.add(id);
+		expected.add(1L);
+		assertThat(cart.lines()).extracting(CartLines.Line::bookId).containsExactlyElementsOf(expected);
+		assertThat(cart.quantityOf(1L)).isEqualTo(2);
+		assertThat(cart.quantityOf(2L)).isZero();
+		assertThat(cart.totalItems()).isEqualTo(35);
+		assertThat(cart.totalPrice()).isEqualTo(35_000L);
+	}
+
+	@Test
+	void concurrentTabsDoNotLoseUpdates() throws Exception {
+		CartLines cart = new CartLines();
+		int threads = 8, perThread = 5_000;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> done = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			int seed = t;
+			done.add(pool.submit(() -> {
+				start.await();
+				for (int i = 0; i < perThread; i++) {
+					long id = (seed * 31L + i) % 50;
+					cart.add(id, 1, 10_000L);
+					if (i % 10 == 9) { // thêm rồi bỏ 1 dòng riêng của tab: xoá / dồn mảng xen kẽ
+						cart.add(1_000 + seed, 3, 10_000L);
+						cart.setQuantity(1_000 + seed, 0);
+					}
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> f : done) f.get(30, TimeUnit.SECONDS);
+		pool.shutdown();
+
+		assertThat(cart.totalItems()).isEqualTo(threads * perThread);
+		assertThat(cart.totalPrice()).isEqualTo(threads * perThread * 10_000L);
+		assertThat(cart.lines().stream().mapToInt(CartLines.Line::quantity).sum()).isEqualTo(threads * perThread);
+	}
+
+	@Test
+	void serializedCartIsSmall() throws Exception {
+		CartLines cart = new CartLines();
+		for (long id = 1; id <= 20; id++) cart.add(id, 1, 129_000L);
+		ByteArrayOutputStream bytes = serialize(cart);
+		assertThat(bytes.size()).isLessThan(1024);
+
+		// mỗi dòng thêm chỉ tốn id + số lượng + giá trong mảng nguyên thuỷ (20 byte, tính cả phần dư khi mảng gấp đôi
+		// là 32), không phải 1 object / dòng
+		CartLines bigger = new CartLines();
+		for (long id = 1; id <= 40; id++) bigger.add(id, 1, 129_000L);
+		assertThat((serialize(bigger).size() - bytes.size()) / 20.0).isLessThanOrEqualTo(32.0);
+
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			CartLines copy = (CartLines) in.readObject();
+			copy.add(7L, 1, 129_000L); // index dựng lại sau khi đọc
+			assertThat(copy.quantityOf(7L)).isEqualTo(2);
+			assertThat(copy.size()).isEqualTo(20);
+		}
+	}
+
+	private static ByteArrayOutputStream serialize(CartLines cart) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(cart);
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,101 @@
+package com.vanlang.bookstore.cart;
+
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.repository.BookRepository;
+import com.vanlang.bookstore.service.CartService;
+import com.vanlang.bookstore.support.SqlStatementCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Kiểm tra lại giỏ bằng 1 query: giá đổi thì cập nhật giỏ, ngừng bán / đã xoá thì bỏ dòng, thiếu hàng thì báo.
+ */
+@SpringBootTest(properties = "bookstore.page-cache.enabled=false")
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class CartRevalidationTests {
+
+	private static final String BUYER = "revalidate-buyer";
+
+	@Autowired MockMvc mvc;
+	@Autowired BookRepository bookRepository;
+	@Autowired CartService cartService;
+	@Autowired CartCache cartCache;
+
+	@AfterEach
+	void clearAuth() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void oneQueryReportsPriceStockAndAvailability() throws Exception {
+		Book repriced = book("Đổi giá", 100_000, 10);
+		Book disabled = book("Ngừng bán", 50_000, 10);
+		Book scarce = book("Còn ít", 30_000, 1);
+		Book fine = book("Bình thường", 20_000, 5);
+		cartCache.update("u:" + BUYER, cart -> {
+			cart.add(repriced.getId(), 1, 100_000L);
+			cart.add(disabled.getId(), 1, 50_000L);
+			cart.add(scarce.getId(), 2, 30_000L);
+			cart.add(fine.getId(), 1, 20_000L);
+			cart.add(987_654L, 1, 10_000L); // sách đã bị xoá khỏi catalog
+		});
+
+		repriced.setDiscountPrice(BigDecimal.valueOf(90_000));
+		bookRepository.save(repriced);
+		disabled.setEnabled(false);
+		bookRepository.save(disabled);
+
+		SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(BUYER, null, "ROLE_USER"));
+		SqlStatementCounter.reset();
+		CartCheck check = cartService.revalidate(null);
+		assertThat(SqlStatementCounter.count()).isEqualTo(1);
+
+		assertThat(check.changes()).extracting(CartCheck.Change::bookId, CartCheck.Change::kind).containsExactly(
+				tuple(repriced.getId(), CartCheck.Kind.PRICE_CHANGED),
+				tuple(disabled.getId(), CartCheck.Kind.UNAVAILABLE),
+				tuple(scarce.getId(), CartCheck.Kind.NOT_ENOUGH_STOCK),
+				tuple(987_654L, CartCheck.Kind.UNAVAILABLE));
+		assertThat(check.shortIds()).containsExactly(scarce.getId());
+		assertThat(check.stock()).containsEntry(fine.getId(), 5).containsEntry(scarce.getId(), 1);
+
+		CartLines cart = cartCache.get("u:" + BUYER);
+		assertThat(cart.lines()).extracting(CartLines.Line::bookId)
+				.containsExactly(repriced.getId(), scarce.getId(), fine.getId());
+		assertThat(cart.totalPrice()).isEqualTo(90_000L + 2 * 30_000L + 20_000L);
+
+		// lần 2 (trừ dòng thiếu hàng): giá trong giỏ đã theo DB, không còn gì để báo
+		assertThat(cartService.revalidate(List.of(repriced.getId(), fine.getId())).clean()).isTrue();
+
+		mvc.perform(get("/cart").with(user(BUYER)))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("Còn ít&quot; chỉ còn 1 cuốn (giỏ có 2)")))
+				.andExpect(content().string(containsString("Không đủ hàng")));
+	}
+
+	private Book book(String title, long price, int stock) {
+		Book b = new Book();
+		b.setTitle(title);
+		b.setPrice(BigDecimal.valueOf(price));
+		b.setStock(stock);
+		return bookRepository.save(b);
+	}
+}
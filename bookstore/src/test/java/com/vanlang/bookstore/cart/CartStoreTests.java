@@ -0,0 +1,136 @@
+package com.vanlang.bookstore.cart;
+
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.model.User;
+import com.vanlang.bookstore.repository.BookRepository;
+import com.vanlang.bookstore.repository.UserRepository;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Giỏ hàng ngoài session (store trong bộ nhớ): CartCache gom nhiều thay đổi thành 1 lần ghi, đọc từ near-cache,
+ * node giữ bản cũ không ghi đè được thay đổi của node khác, giỏ khách gộp vào tài khoản khi đăng nhập.
+ * Bảng cart_items thật: xem JdbcCartStoreTests.
+ */
+@SpringBootTest(properties = "bookstore.page-cache.enabled=false")
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class CartStoreTests {
+
+	@Autowired MockMvc mvc;
+	@Autowired BookRepository bookRepository;
+	@Autowired UserRepository userRepository;
+	@Autowired PasswordEncoder passwordEncoder;
+	@Autowired CartCache cartCache;
+
+	@Test
+	void staleNodeCannotResurrectABoughtLine() {
+		CountingStore store = new CountingStore();
+		CartCache nodeA = new CartCache(store, 10, 100, 60_000, 30); // không start(): tự gọi flush()
+		CartCache nodeB = new CartCache(store, 10, 100, 60_000, 30);
+
+		nodeA.update("u:stale", cart -> {
+			cart.add(1L, 1, 1_000L);
+			cart.add(2L, 1, 2_000L);
+		});
+		nodeA.flush();
+		assertThat(nodeB.get("u:stale").size()).isEqualTo(2);
+
+		// node A mua xong cuốn 1; node B vẫn giữ bản cũ trong near-cache rồi thêm cuốn 3
+		nodeA.update("u:stale", cart -> cart.remove(1L));
+		nodeA.flush();
+		nodeB.update("u:stale", cart -> cart.add(3L, 1, 3_000L));
+		assertThat(nodeB.get("u:stale").size()).isEqualTo(3); // chưa ghi: B chưa biết
+		nodeB.flush();
+
+		assertThat(store.load("u:stale").lines()).extracting(CartLines.Line::bookId).containsExactly(2L, 3L);
+		assertThat(nodeB.get("u:stale").lines()).extracting(CartLines.Line::bookId).containsExactly(2L, 3L);
+		assertThat(store.saves.get()).isEqualTo(4); // lần ghi đầu của B lệch version, nạp lại rồi ghi lại 1 lần
+	}
+
+	@Test
+	void writesAreCoalescedAndReadsComeFromNearCache() {
+		CountingStore store = new CountingStore();
+		CartCache nodeA = new CartCache(store, 10, 100, 60_000, 30);
+		CartCache nodeB = new CartCache(store, 10, 100, 60_000, 30);
+
+		for (long id = 1; id <= 50; id++) {
+			long bookId = id;
+			nodeA.update("u:coalesce", cart -> cart.add(bookId, 1, 1_000L));
+		}
+		nodeA.update("u:coalesce", cart -> cart.remove(99L)); // không đổi gì
+		nodeA.flush();
+		nodeA.flush();
+		assertThat(store.saves.get()).isEqualTo(1);
+
+		for (int i = 0; i < 10; i++) {
+			assertThat(nodeB.get("u:coalesce").totalItems()).isEqualTo(50);
+		}
+		assertThat(store.loads.get()).isEqualTo(2); // 1 lần cho mỗi node, sau đó đọc từ near-cache
+	}
+
+	@Test
+	void guestCartMergesIntoAccountAtLogin() throws Exception {
+		Book book = new Book();
+		book.setTitle("Sách giỏ khách");
+		book.setPrice(BigDecimal.valueOf(80_000));
+		book.setStock(10);
+		book = bookRepository.save(book);
+		User user = userRepository.findByUsername("cart-merge").orElseGet(() -> userRepository.save(User.builder()
+				.username("cart-merge").email("cart-merge@example.com")
+				.password(passwordEncoder.encode("secret1")).role(User.Role.USER).enabled(true).build()));
+
+		long bookId = book.getId();
+		cartCache.update("u:" + user.getUsername(), cart -> cart.add(bookId, 1, 80_000L));
+
+		Cookie cartCookie = mvc.perform(post("/cart/add").param("bookId", book.getId().toString()).param("quantity", "2").with(csrf()))
+				.andExpect(status().is3xxRedirection())
+				.andReturn().getResponse().getCookie("CART_ID");
+		assertThat(cartCookie).isNotNull();
+		String guestKey = "a:" + cartCookie.getValue();
+		assertThat(cartCache.get(guestKey).quantityOf(book.getId())).isEqualTo(2);
+
+		Cookie cleared = mvc.perform(post("/login").param("username", "cart-merge").param("password", "secret1")
+						.cookie(cartCookie).with(csrf()))
+				.andExpect(status().is3xxRedirection())
+				.andReturn().getResponse().getCookie("CART_ID");
+
+		assertThat(cleared).isNotNull();
+		assertThat(cleared.getMaxAge()).isZero();
+		assertThat(cartCache.get(guestKey).isEmpty()).isTrue();
+		assertThat(cartCache.get("u:cart-merge").quantityOf(book.getId())).isEqualTo(3);
+	}
+
+	/** Đếm số lần đọc / ghi xuống store */
+	private static class CountingStore extends InMemoryCartStore {
+		final AtomicInteger loads = new AtomicInteger();
+		final AtomicInteger saves = new AtomicInteger();
+
+		@Override
+		public Snapshot load(String cartKey) {
+			loads.incrementAndGet();
+			return super.load(cartKey);
+		}
+
+		@Override
+		public boolean save(String cartKey, long version, List<CartLines.Line> before, List<CartLines.Line> after) {
+			saves.incrementAndGet();
+			return super.save(cartKey, version, before, after);
+		}
+	}
+}
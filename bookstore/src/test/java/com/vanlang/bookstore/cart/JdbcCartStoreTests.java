@@ -0,0 +1,102 @@
+package com.vanlang.bookstore.cart;
+
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.repository.BookRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Giỏ hàng trên bảng cart_items thật (bookstore.cart.store=jdbc như production):
+ * giữ thứ tự dòng, thay đổi từ request xuống bảng ở lần flush, node giữ bản cũ không chèn lại dòng node khác đã xoá.
+ */
+@SpringBootTest(properties = {"bookstore.cart.store=jdbc", "bookstore.page-cache.enabled=false"})
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class JdbcCartStoreTests {
+
+	@Autowired MockMvc mvc;
+	@Autowired JdbcTemplate jdbc;
+	@Autowired CartStore store;
+	@Autowired CartCache cartCache;
+	@Autowired BookRepository bookRepository;
+
+	@Test
+	void keepsLineOrderAndVersion() {
+		assertThat(store).isInstanceOf(JdbcCartStore.class);
+		List<CartLines.Line> lines = List.of(
+				new CartLines.Line(9L, 1, 10_000L),
+				new CartLines.Line(3L, 2, 25_000L),
+				new CartLines.Line(5L, 1, 7_000L));
+		assertThat(store.save("u:jdbc-order", 0L, List.of(), lines)).isTrue();
+		assertThat(store.save("a:jdbc-old-guest", 0L, List.of(), List.of(new CartLines.Line(1L, 1, 1L)))).isTrue();
+
+		CartStore.Snapshot saved = store.load("u:jdbc-order");
+		assertThat(saved.lines()).containsExactlyElementsOf(lines);
+		assertThat(saved.version()).isEqualTo(1L);
+
+		List<CartLines.Line> next = List.of(lines.get(1), lines.get(2), new CartLines.Line(9L, 4, 10_000L));
+		assertThat(store.save("u:jdbc-order", 0L, lines, next)).as("version cũ").isFalse();
+		assertThat(store.save("u:jdbc-order", 1L, lines, List.of(lines.get(1), lines.get(2)))).isTrue();
+		assertThat(store.save("u:jdbc-order", 2L, List.of(lines.get(1), lines.get(2)), next)).isTrue();
+		assertThat(store.load("u:jdbc-order").lines()).containsExactlyElementsOf(next); // dòng thêm lại xếp cuối
+		assertThat(store.load("u:jdbc-order").version()).isEqualTo(3L);
+
+		assertThat(store.purgeAnonymous(LocalDateTime.now().plusMinutes(1))).isEqualTo(1);
+		assertThat(store.load("a:jdbc-old-guest")).isEqualTo(CartStore.Snapshot.EMPTY);
+		assertThat(store.load("u:jdbc-order").lines()).hasSize(3);
+	}
+
+	@Test
+	void requestsReachTheTableOnFlush() throws Exception {
+		Book book = new Book();
+		book.setTitle("Sách giỏ jdbc");
+		book.setPrice(BigDecimal.valueOf(45_000));
+		book.setStock(10);
+		book = bookRepository.save(book);
+
+		mvc.perform(post("/cart/add").param("bookId", book.getId().toString()).param("quantity", "2")
+						.with(user("jdbc-cart")).with(csrf()))
+				.andExpect(status().is3xxRedirection());
+
+		cartCache.flush();
+		assertThat(jdbc.queryForObject("SELECT quantity FROM cart_items WHERE cart_key = ? AND book_id = ?",
+				Integer.class, "u:jdbc-cart", book.getId())).isEqualTo(2);
+		assertThat(cartCache.get("u:jdbc-cart").totalPrice()).isEqualTo(90_000L);
+	}
+
+	@Test
+	void staleNodeDoesNotResurrectABoughtLine() {
+		CartCache otherNode = new CartCache(store, 10, 100, 60_000, 30);
+		cartCache.update("u:jdbc-stale", cart -> {
+			cart.add(1L, 1, 1_000L);
+			cart.add(2L, 1, 2_000L);
+		});
+		cartCache.flush();
+		assertThat(otherNode.get("u:jdbc-stale").size()).isEqualTo(2);
+
+		// node này mua xong cuốn 1; node kia vẫn giữ bản cũ rồi thêm cuốn 3
+		cartCache.update("u:jdbc-stale", cart -> cart.remove(1L));
+		cartCache.flush();
+		otherNode.update("u:jdbc-stale", cart -> cart.add(3L, 1, 3_000L));
+		otherNode.flush();
+
+		assertThat(jdbc.queryForList("SELECT book_id FROM cart_items WHERE cart_key = ? ORDER BY line_no",
+				Long.class, "u:jdbc-stale")).containsExactly(2L, 3L);
+		assertThat(otherNode.get("u:jdbc-stale").lines()).extracting(CartLines.Line::bookId).containsExactly(2L, 3L);
+	}
+}
@@ -0,0 +1,84 @@
+package com.vanlang.bookstore.config;
+
+import com.vanlang.bookstore.service.UploadStorage;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * URL có hash -> cache 1 năm immutable; URL không hash -> no-cache + ETag (304).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class StaticResourceCachingTests {
+
+	@Autowired MockMvc mvc;
+	@Autowired UploadStorage uploadStorage;
+
+	@Test
+	void pagesLinkFingerprintedCssServedImmutable() throws Exception {
+		String html = mvc.perform(get("/")).andReturn().getResponse().getContentAsString();
+		Matcher m = Pattern.compile("/css/coquette-style-[0-9a-f]{32}\\.css").matcher(html);
+		assertThat(m.find()).as("link css có hash").isTrue();
+
+		mvc.perform(get(m.group()))
+				.andExpect(status().isOk())
+				.andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"))
+				.andExpect(header().exists("ETag"));
+	}
+
+	@Test
+	void plainUrlRevalidatesWithEtagAndSupportsRange() throws Exception {
+		String etag = mvc.perform(get("/css/coquette-style.css"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("Cache-Control", "no-cache, public"))
+				.andReturn().getResponse().getHeader("ETag");
+		assertThat(etag).isNotBlank();
+
+		mvc.perform(get("/css/coquette-style.css").header("If-None-Match", etag))
+				.andExpect(status().isNotModified());
+		mvc.perform(get("/css/coquette-style.css").header("Range", "bytes=0-9"))
+				.andExpect(status().isPartialContent())
+				.andExpect(header().string("Content-Range", org.hamcrest.Matchers.startsWith("bytes 0-9/")));
+	}
+
+	@Test
+	void uploadsGetContentHashedNamesImmutableCachingAndOldFileRemoved() throws Exception {
+		try {
+			String url1 = uploadStorage.store(new MockMultipartFile("f", "a.png", "image/png", new byte[]{1, 2, 3}), "test-cache", "7");
+			String url2 = uploadStorage.store(new MockMultipartFile("f", "a.png", "image/png", new byte[]{4, 5, 6}), "test-cache", "7");
+			assertThat(url1).matches("/uploads/test-cache/7-[0-9a-f]{16}\\.png").isNotEqualTo(url2);
+
+			mvc.perform(get(url1))
+					.andExpect(status().isOk())
+					.andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"));
+
+			// thay ảnh: file cũ và biến thể của nó bị xoá, ảnh mới còn nguyên
+			Path oldFile = UploadStorage.ROOT.resolve(url1.substring("/uploads/".length()));
+			Path oldVariant = oldFile.resolveSibling(oldFile.getFileName().toString().replace(".png", "-320.jpg"));
+			Files.write(oldVariant, new byte[]{7});
+			uploadStorage.deleteReplaced(url1, url2);
+			assertThat(oldFile).doesNotExist();
+			assertThat(oldVariant).doesNotExist();
+			assertThat(UploadStorage.ROOT.resolve(url2.substring("/uploads/".length()))).exists();
+		} finally {
+			FileSystemUtils.deleteRecursively(UploadStorage.ROOT.resolve("test-cache"));
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package com.vanlang.bookstore.inventory;
+
+import com.vanlang.bookstore.cache.CatalogCache;
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.repository.BookRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tồn kho sách hot trong bộ nhớ: không bán lố khi nhiều thread cùng trừ,
+ * flusher ghi đúng xuống DB (kể cả khi DB bị sửa từ ngoài giữa 2 lần flush),
+ * và phần chưa flush được khôi phục từ nhật ký khi tiến trình chết.
+ * Lần bán chỉ vào nhật ký khi đơn commit; admin sửa tồn kho là cộng / trừ, không ghi đè phần đã bán.
+ */
+@SpringBootTest(properties = "bookstore.page-cache.enabled=false")
+@ActiveProfiles("h2")
+class HotStockServiceTests {
+
+	@Autowired BookRepository bookRepository;
+	@Autowired PlatformTransactionManager transactionManager;
+	@Autowired CatalogCache catalogCache;
+
+	@TempDir Path dir;
+
+	@Test
+	void stripedCounterNeverOversells() throws Exception {
+		int stock = 10_000;
+		int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+		StripedCounter counter = new StripedCounter(threads, stock);
+		AtomicInteger sold = new AtomicInteger();
+
+		runConcurrently(threads, () -> {
+			for (int i = 0; i < 5_000; i++) {
+				if (counter.tryTake(1 + (i % 3), 0)) sold.addAndGet(1 + (i % 3));
+			}
+		});
+
+		assertThat(sold.get() + counter.sum()).isEqualTo(stock);
+		assertThat(counter.sum()).isBetween(0, 2); // đơn cuối cần 2-3 cuốn có thể không đủ
+	}
+
+	@Test
+	void journalReplaySkipsFlushedAndSupersededChanges() throws Exception {
+		Path file = dir.resolve("replay.journal");
+		Files.writeString(file, String.join("\n",
+				"D 1 1 -2",
+				"D 2 1 -3",
+				"P 3 1:10:5",
+				"C 3",
+				"D 4 1 -1",          // chưa flush
+				"D 5 2 -7",
+				"S 6 2 50",          // admin đặt lại -> bỏ D 5
+				"D 7 2 -4",
+				"P 8 1:5:4,2:50:46", // chưa có C
+				"D 9 2 -1",
+				"D 10 1"             // dòng ghi dở
+		));
+
+		InventoryJournal.Replay replay = InventoryJournal.read(file);
+		// P 8 chưa vào DB (DB vẫn là giá trị cũ)
+		assertThat(replay.resolve(Map.of(1L, 5, 2L, 50))).isEqualTo(Map.of(1L, 4, 2L, 45));
+		// P 8 đã commit nhưng chưa kịp ghi C: chỉ còn D 9
+		assertThat(replay.resolve(Map.of(1L, 4, 2L, 46))).isEqualTo(Map.of(2L, 45));
+	}
+
+	@Test
+	void flushesToDatabaseAndRecoversAfterCrash() throws Exception {
+		Long id = newBook(1_000);
+		Path journal = dir.resolve("hot.journal");
+
+		HotStockService first = service(id, journal);
+		first.start();
+		int threads = 8;
+		AtomicInteger sold = new AtomicInteger();
+		runConcurrently(threads, () -> {
+			for (int i = 0; i < 100; i++) {
+				if (first.take(Map.of(id, 1), Map.of()).isEmpty()) sold.incrementAndGet();
+			}
+		});
+		assertThat(sold.get()).isEqualTo(800);
+		assertThat(first.stockOr(id, null)).isEqualTo(200);
+
+		first.flush();
+		assertThat(stockInDb(id)).isEqualTo(200);
+
+		// bán thêm rồi "chết" trước lần flush kế tiếp
+		first.take(Map.of(id, 30), Map.of());
+		first.restock(Map.of(id, 5));
+		assertThat(stockInDb(id)).isEqualTo(200);
+
+		HotStockService second = service(id, journal);
+		second.start();
+		assertThat(stockInDb(id)).isEqualTo(175);
+		assertThat(second.stockOr(id, null)).isEqualTo(175);
+
+		// khởi động lại lần nữa: không cộng / trừ 2 lần
+		second.stop();
+		HotStockService third = service(id, journal);
+		third.start();
+		assertThat(stockInDb(id)).isEqualTo(175);
+		third.stop();
+	}
+
+	@Test
+	void outsideUpdateBetweenFlushesKeepsTheSoldUnits() throws Exception {
+		Long id = newBook(100);
+		Path journal = dir.resolve("outside.journal");
+		HotStockService hot = service(id, journal);
+		hot.start();
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+		hot.take(Map.of(id, 10), Map.of());
+		hot.flush();
+		assertThat(stockInDb(id)).isEqualTo(90);
+
+		// nhập kho tay +30 thẳng vào DB giữa 2 lần flush
+		tx.executeWithoutResult(status -> bookRepository.compareAndSetStock(id, 90, 120));
+		hot.take(Map.of(id, 5), Map.of());
+		hot.flush();
+		assertThat(stockInDb(id)).isEqualTo(115);
+		assertThat(hot.stockOr(id, null)).isEqualTo(115);
+
+		// khởi động lại: nhật ký khớp DB, không cộng / trừ thêm
+		hot.stop();
+		HotStockService restarted = service(id, journal);
+		restarted.start();
+		assertThat(stockInDb(id)).isEqualTo(115);
+		assertThat(restarted.stockOr(id, null)).isEqualTo(115);
+		restarted.stop();
+	}
+
+	@Test
+	void saleIsJournaledOnlyWhenTheOrderCommits() throws Exception {
+		Long id = newBook(100);
+		Path journal = dir.resolve("commit.journal");
+		HotStockService hot = service(id, journal);
+		hot.start();
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+		tx.executeWithoutResult(status -> {
+			assertThat(hot.take(Map.of(id, 10), Map.of())).isEmpty();
+			assertThat(hot.stockOr(id, null)).isEqualTo(90); // người khác thấy ngay
+			status.setRollbackOnly();
+		});
+		assertThat(hot.stockOr(id, null)).isEqualTo(100);
+		assertThat(deltaLines(journal)).isEmpty();
+
+		tx.executeWithoutResult(status -> hot.take(Map.of(id, 10), Map.of()));
+		assertThat(hot.stockOr(id, null)).isEqualTo(90);
+		assertThat(deltaLines(journal)).singleElement().asString().endsWith(" " + id + " -10");
+		hot.stop();
+	}
+
+	@Test
+	void adminEditIsADeltaAgainstTheShownStock() throws Exception {
+		Long id = newBook(100);
+		HotStockService hot = service(id, dir.resolve("admin.journal"));
+		hot.start();
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+		int shown = hot.stockOr(id, null);          // admin mở form: 100
+		hot.take(Map.of(id, 10), Map.of());          // trong lúc đó bán 10
+
+		// chỉ sửa tên: tồn kho không đổi
+		tx.executeWithoutResult(status -> save(hot, id, b -> b.setTitle("Sách khuyến mãi (sửa)"), shown));
+		assertThat(hot.stockOr(id, null)).isEqualTo(90);
+
+		// nhập thêm 5 so với số đang hiện -> +5 vào bộ đếm, không đặt lại thành 105
+		tx.executeWithoutResult(status -> save(hot, id, b -> b.setStock(shown + 5), shown));
+		assertThat(hot.stockOr(id, null)).isEqualTo(95);
+
+		// không có số đã hiện (VD lưu từ chỗ khác): bộ đếm giữ nguyên
+		tx.executeWithoutResult(status -> save(hot, id, b -> b.setStock(1), null));
+		assertThat(hot.stockOr(id, null)).isEqualTo(95);
+
+		// lưu bị rollback: không cộng
+		tx.executeWithoutResult(status -> {
+			save(hot, id, b -> b.setStock(shown + 50), shown);
+			status.setRollbackOnly();
+		});
+		assertThat(hot.stockOr(id, null)).isEqualTo(95);
+
+		// cột stock không bị ghi đè -> flusher vẫn ghi được phần đã bán / nhập thêm
+		hot.flush();
+		assertThat(stockInDb(id)).isEqualTo(95);
+		assertThat(bookRepository.findById(id).orElseThrow().getTitle()).isEqualTo("Sách khuyến mãi (sửa)");
+		hot.stop();
+	}
+
+	@Test
+	void adminSaveDoesNotBlockTheFlusherNorLoseSales() throws Exception {
+		Long id = newBook(100);
+		HotStockService hot = service(id, dir.resolve("admin-flush.journal"));
+		hot.start();
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+		int shown = hot.stockOr(id, null);
+
+		// transaction của admin đang mở: flusher (thread khác) không phải chờ, ghi xong phần vừa bán
+		ExecutorService other = Executors.newSingleThreadExecutor();
+		tx.executeWithoutResult(status -> {
+			save(hot, id, b -> b.setTitle("Sách khuyến mãi (sửa lúc flush)"), shown);
+			hot.take(Map.of(id, 10), Map.of());
+			try {
+				other.submit(hot::flush).get(5, TimeUnit.SECONDS);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		other.shutdown();
+		assertThat(stockInDb(id)).as("lần lưu của admin ghi lại bản chụp cũ").isEqualTo(100);
+
+		// lần flush sau nhận ra và ghi lại giá trị đúng, bộ đếm không bị kéo theo bản chụp
+		hot.flush();
+		assertThat(stockInDb(id)).isEqualTo(90);
+		assertThat(hot.stockOr(id, null)).isEqualTo(90);
+		assertThat(bookRepository.findById(id).orElseThrow().getTitle()).isEqualTo("Sách khuyến mãi (sửa lúc flush)");
+		hot.stop();
+	}
+
+	// ===== helpers =====
+
+	private HotStockService service(Long id, Path journal) {
+		// flush-interval 1 giờ: test tự gọi flush()
+		return new HotStockService(true, String.valueOf(id), 4, 3_600_000, journal.toString(), false, 1024,
+				bookRepository, transactionManager, catalogCache);
+	}
+
+	private void save(HotStockService hot, Long id, Consumer<Book> edit, Integer stockShown) {
+		Book b = bookRepository.findById(id).orElseThrow();
+		b.setStock(stockShown == null ? b.getStock() : stockShown); // form hiện số trong bộ đếm
+		edit.accept(b);
+		hot.beforeSave(b, stockShown);
+		bookRepository.save(b);
+	}
+
+	private static List<String> deltaLines(Path journal) throws Exception {
+		return Files.readAllLines(journal).stream().filter(l -> l.startsWith("D ")).toList();
+	}
+
+	private Long newBook(int stock) {
+		Book b = new Book();
+		b.setTitle("Sách khuyến mãi");
+		b.setPrice(new BigDecimal("100000"));
+		b.setStock(stock);
+		return bookRepository.save(b).getId();
+	}
+
+	private int stockInDb(Long id) {
+		return bookRepository.findById(id).orElseThrow().getStock();
+	}
+
+	private static void runConcurrently(int threads, Runnable task) throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			futures.add(pool.submit(() -> {
+				start.await();
+				task.run();
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> f : futures) f.get(1, TimeUnit.MINUTES);
+		pool.shutdown();
+	}
+}
@@ -0,0 +1,170 @@
+package com.vanlang.bookstore.outbox;
+
+import com.vanlang.bookstore.model.OutboxEvent;
+import com.vanlang.bookstore.repository.OutboxEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Outbox: sự kiện chỉ tồn tại khi transaction commit, xử lý đúng thứ tự trong 1 đơn,
+ * lỗi thì thử lại (chỉ handler chưa xong) và sự kiện sau của đơn đó phải chờ; loại chưa có handler để nguyên.
+ */
+@SpringBootTest(properties = {
+		"bookstore.outbox.enabled=false", // không poll nền, test tự gọi drain()
+		"bookstore.outbox.retry-base-ms=1",
+		"bookstore.page-cache.enabled=false",
+		// DB riêng: poller nền của các context test khác (cùng jdbc:h2:mem:bookstore) không chen vào
+		// bảng outbox mà test đang drain() / deleteAll()
+		"spring.datasource.url=jdbc:h2:mem:outbox-test;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("h2")
+class OutboxDispatcherTests {
+
+	static final String TYPE = "TEST";
+	static final String PAIR = "TEST-PAIR";
+
+	/** Ghi lại payload theo thứ tự xử lý; payload bắt đầu bằng "fail-once" thì lỗi lần đầu */
+	@TestConfiguration
+	static class Handlers {
+		static final List<String> seen = new CopyOnWriteArrayList<>();
+		static final Set<String> failed = ConcurrentHashMap.newKeySet();
+		static final List<String> pairCalls = new CopyOnWriteArrayList<>();
+
+		@Bean
+		OutboxHandler recordingHandler() {
+			return new OutboxHandler() {
+				@Override
+				public String type() {
+					return TYPE;
+				}
+
+				@Override
+				public void handle(OutboxEvent event) {
+					String p = event.getPayload();
+					if (p.contains("fail-once") && failed.add(p)) throw new IllegalStateException("lỗi tạm thời");
+					seen.add(p);
+				}
+			};
+		}
+
+		@Bean
+		OutboxHandler confirmHandler() {
+			return pairHandler("confirm", false);
+		}
+
+		@Bean
+		OutboxHandler alertHandler() {
+			return pairHandler("alert", true);
+		}
+
+		private static OutboxHandler pairHandler(String name, boolean failOnce) {
+			return new OutboxHandler() {
+				@Override
+				public String type() {
+					return PAIR;
+				}
+
+				@Override
+				public String name() {
+					return name;
+				}
+
+				@Override
+				public void handle(OutboxEvent event) {
+					pairCalls.add(name);
+					if (failOnce && failed.add(name + event.getId())) throw new IllegalStateException("lỗi tạm thời");
+				}
+			};
+		}
+	}
+
+	@Autowired OutboxPublisher publisher;
+	@Autowired OutboxDispatcher dispatcher;
+	@Autowired OutboxEventRepository repository;
+	@Autowired PlatformTransactionManager transactionManager;
+
+	@BeforeEach
+	void clean() throws Exception {
+		dispatcher.drain();
+		repository.deleteAll();
+		Handlers.seen.clear();
+		Handlers.pairCalls.clear();
+	}
+
+	@Test
+	void rolledBackTransactionPublishesNothing() {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			publisher.publish(1L, TYPE, Map.of("v", "rollback"));
+			status.setRollbackOnly();
+		});
+		assertThat(repository.count()).isZero();
+	}
+
+	@Test
+	void retriesFailedEventAndKeepsPerOrderOrder() throws Exception {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			publisher.publish(10L, TYPE, Map.of("v", "a1-fail-once"));
+			publisher.publish(10L, TYPE, Map.of("v", "a2"));
+			publisher.publish(20L, TYPE, Map.of("v", "b1"));
+		});
+
+		assertThat(dispatcher.drain()).isEqualTo(1);
+		assertThat(Handlers.seen).singleElement().asString().contains("b1");
+		assertThat(dispatcher.stats().pending()).isEqualTo(2);
+
+		Thread.sleep(20); // hết backoff
+		assertThat(dispatcher.drain()).isEqualTo(2);
+		assertThat(Handlers.seen).hasSize(3);
+		assertThat(Handlers.seen.get(1)).contains("a1");
+		assertThat(Handlers.seen.get(2)).contains("a2");
+
+		OutboxDispatcher.Stats stats = dispatcher.stats();
+		assertThat(stats.pending()).isZero();
+		assertThat(stats.retried()).isGreaterThanOrEqualTo(1);
+		assertThat(repository.findAll()).allSatisfy(e -> assertThat(e.getProcessedAt()).isNotNull());
+	}
+
+	@Test
+	void retryRunsOnlyTheHandlersThatFailed() throws Exception {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+				publisher.publish(30L, PAIR, Map.of("v", "pair")));
+
+		assertThat(dispatcher.drain()).isZero();
+		Thread.sleep(20); // hết backoff
+		assertThat(dispatcher.drain()).isEqualTo(1);
+
+		// handler "confirm" (VD gửi mail xác nhận) chạy đúng 1 lần dù "alert" lỗi và được thử lại
+		assertThat(Handlers.pairCalls).containsExactly("confirm", "alert", "alert");
+		assertThat(repository.findAll()).singleElement().satisfies(e -> assertThat(e.getProcessedAt()).isNotNull());
+	}
+
+	@Test
+	void eventWithoutHandlerStaysPending() throws Exception {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			publisher.publish(40L, "NOT-YET-HANDLED", Map.of("v", "x"));
+			publisher.publish(41L, TYPE, Map.of("v", "handled"));
+		});
+
+		assertThat(dispatcher.drain()).isEqualTo(1);
+		OutboxEvent unhandled = repository.findAll().stream()
+				.filter(e -> e.getType().equals("NOT-YET-HANDLED")).findFirst().orElseThrow();
+		assertThat(unhandled.getProcessedAt()).isNull();
+		assertThat(unhandled.getFailedAt()).isNull();
+		assertThat(dispatcher.stats().pending()).isEqualTo(1);
+	}
+}
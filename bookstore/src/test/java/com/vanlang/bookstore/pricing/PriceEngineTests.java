@@ -0,0 +1,76 @@
+package com.vanlang.bookstore.pricing;
+
+import com.vanlang.bookstore.cart.CartLines;
+import com.vanlang.bookstore.dto.BookCard;
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.model.CartItem;
+import com.vanlang.bookstore.service.CartService;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Giá bán quy đổi đúng (discount ưu tiên, làm tròn về đồng),
+ * và tổng giỏ 50 dòng bằng long (tính lại hay lấy sẵn trong CartLines) khớp cách cũ (BigDecimal mỗi lần render).
+ */
+class PriceEngineTests {
+
+	@Test
+	void resolvesDiscountAndRounds() {
+		assertThat(PriceEngine.unitPrice(book(1L, "120000", null))).isEqualTo(120_000L);
+		assertThat(PriceEngine.unitPrice(book(1L, "120000", "99999.5"))).isEqualTo(100_000L);
+		assertThat(PriceEngine.lineTotal(100_000L, 3)).isEqualTo(300_000L);
+		assertThatThrownBy(() -> PriceEngine.lineTotal(Long.MAX_VALUE / 2, 3)).isInstanceOf(ArithmeticException.class);
+	}
+
+	@Test
+	void fiftyLineCartMatchesBigDecimalTotal() {
+		CartLines lines = new CartLines();
+		List<CartItem> items = new ArrayList<>();
+		List<Book> books = new ArrayList<>();
+		for (long id = 1; id <= 50; id++) {
+			Book b = book(id, "129000", id % 3 == 0 ? "99000" : null);
+			int qty = 1 + (int) (id % 4);
+			long unit = PriceEngine.unitPrice(b);
+			lines.add(id, qty, unit);
+			items.add(new CartItem(new BookCard(id, b.getTitle(), null, b.getPrice(), b.getDiscountPrice(), null, null), qty, unit));
+			books.add(b);
+		}
+		CartService cart = new CartService(null, null);
+
+		BigDecimal old = BigDecimal.ZERO;
+		for (int i = 0; i < books.size(); i++) {
+			old = old.add(unitPriceOld(books.get(i)).multiply(BigDecimal.valueOf(items.get(i).getQuantity())));
+		}
+		assertThat(cart.calculateSubtotal(items)).isEqualTo(old.longValueExact());
+		assertThat(lines.totalPrice()).isEqualTo(old.longValueExact());
+
+		// tổng lấy sẵn theo sát thay đổi, không cần tính lại cả giỏ
+		lines.setQuantity(3L, 10);
+		lines.remove(50L);
+		long expected = 0;
+		for (CartLines.Line l : lines.lines()) expected += l.unitPrice() * l.quantity();
+		assertThat(lines.totalPrice()).isEqualTo(expected);
+	}
+
+	// ===== helpers =====
+
+	// Cách tính cũ của CartItem.getSubtotal
+	private static BigDecimal unitPriceOld(Book b) {
+		return b.getDiscountPrice() != null ? b.getDiscountPrice() : b.getPrice();
+	}
+
+	private static Book book(Long id, String price, String discount) {
+		Book b = new Book();
+		b.setId(id);
+		b.setTitle("Sách " + id);
+		b.setPrice(new BigDecimal(price));
+		b.setDiscountPrice(discount == null ? null : new BigDecimal(discount));
+		return b;
+	}
+}
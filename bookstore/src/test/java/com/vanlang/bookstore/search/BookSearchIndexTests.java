@@ -0,0 +1,96 @@
+package com.vanlang.bookstore.search;
+
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.repository.BookRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookSearchIndexTests {
+
+	private static Book book(long id, String title, String author, String publisher, String isbn) {
+		Book b = new Book();
+		b.setId(id);
+		b.setTitle(title);
+		b.setAuthor(author);
+		b.setPublisher(publisher);
+		b.setIsbn(isbn);
+		return b;
+	}
+
+	@Test
+	void foldsVietnameseDiacritics() {
+		BookSearchIndex index = new BookSearchIndex(null);
+		index.index(book(1, "Tiếng Việt thực hành", "Nguyễn Đức Dân", "NXB Giáo Dục", null));
+		index.index(book(2, "Đắc Nhân Tâm", "Dale Carnegie", "NXB Tổng Hợp", "978-604-58-0000-1"));
+
+		assertThat(index.search("tieng viet")).containsExactly(1L);
+		assertThat(index.search("dac nhan")).containsExactly(2L);
+		assertThat(index.search("nguyen duc")).containsExactly(1L);
+		assertThat(index.search("9786045800001")).containsExactly(2L);
+	}
+
+	@Test
+	void ranksTitleAboveAuthorAndMatchesPrefix() {
+		BookSearchIndex index = new BookSearchIndex(null);
+		index.index(book(1, "Lịch sử Việt Nam", "Trần Trọng Kim", null, null));
+		index.index(book(2, "Việt Nam sử lược", "Kim Dung", null, null));
+		index.index(book(3, "Kim Đồng", "Tô Hoài", null, null));
+
+		List<Long> hits = index.search("kim");
+		assertThat(hits).containsExactlyInAnyOrder(1L, 2L, 3L);
+		assertThat(hits.get(0)).isEqualTo(3L);
+		assertThat(index.search("viet na")).containsExactlyInAnyOrder(1L, 2L);
+	}
+
+	@Test
+	void updatesIncrementally() {
+		BookSearchIndex index = new BookSearchIndex(null);
+		index.index(book(1, "Dế Mèn phiêu lưu ký", "Tô Hoài", null, null));
+		assertThat(index.search("de men")).containsExactly(1L);
+
+		index.index(book(1, "Vợ chồng A Phủ", "Tô Hoài", null, null));
+		assertThat(index.search("de men")).isEmpty();
+		assertThat(index.search("a phu")).containsExactly(1L);
+
+		index.remove(1L);
+		assertThat(index.search("to hoai")).isEmpty();
+		assertThat(index.size()).isZero();
+	}
+
+	@Test
+	void updatesDuringRebuildSurviveTheSwap() {
+		BookRepository repo = mock(BookRepository.class);
+		BookSearchIndex index = new BookSearchIndex(repo);
+		index.index(book(3, "Số đỏ", "Vũ Trọng Phụng", null, null));
+
+		// DB trả bản cũ của cuốn 1, 2, 3; trong lúc đọc thì cuốn 1 được sửa, cuốn 2 bị xoá, cuốn 4 được thêm
+		when(repo.findSearchRowsAfter(anyLong(), any())).thenAnswer(inv -> {
+			index.index(book(1, "Truyện Kiều", "Nguyễn Du", null, null));
+			index.remove(2L);
+			index.index(book(4, "Tắt đèn", "Ngô Tất Tố", null, null));
+			List<Object[]> rows = new ArrayList<>();
+			rows.add(new Object[]{1L, "Lục Vân Tiên", "Nguyễn Đình Chiểu", null, null});
+			rows.add(new Object[]{2L, "Chí Phèo", "Nam Cao", null, null});
+			rows.add(new Object[]{3L, "Số đỏ", "Vũ Trọng Phụng", null, null});
+			return rows;
+		});
+
+		index.rebuild();
+
+		assertThat(index.search("truyen kieu")).containsExactly(1L);
+		assertThat(index.search("luc van tien")).isEmpty();
+		assertThat(index.search("chi pheo")).isEmpty();
+		assertThat(index.search("tat den")).containsExactly(4L);
+		assertThat(index.search("so do")).containsExactly(3L);
+		assertThat(index.size()).isEqualTo(3);
+		assertThat(index.isReady()).isTrue();
+	}
+}
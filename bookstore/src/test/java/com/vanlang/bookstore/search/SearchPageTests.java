@@ -0,0 +1,62 @@
+package com.vanlang.bookstore.search;
+
+import com.vanlang.bookstore.dto.BookCard;
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.service.BookService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Ô tìm kiếm để trống / chỉ có khoảng trắng: liệt kê mọi sách (mới nhất trước) như trước khi có BookSearchIndex;
+ * có từ khoá thì vẫn lọc theo index.
+ */
+@SpringBootTest(properties = "bookstore.page-cache.enabled=false")
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class SearchPageTests {
+
+	@Autowired MockMvc mvc;
+	@Autowired BookService bookService;
+
+	@Test
+	void blankKeywordListsAllBooks() throws Exception {
+		Book first = newBook("Dế mèn phiêu lưu ký");
+		Book latest = newBook("Tắt đèn");
+
+		for (String blank : new String[]{"", "   "}) {
+			var page = bookService.searchBooks(blank, 0, 1000);
+			assertThat(page.getContent()).extracting(BookCard::id).contains(first.getId(), latest.getId());
+			assertThat(page.getContent().get(0).id()).isEqualTo(latest.getId());
+		}
+		assertThat(bookService.searchBooks("tat den", 0, 1000).getContent())
+				.extracting(BookCard::id).contains(latest.getId()).doesNotContain(first.getId());
+
+		// form tìm kiếm ở đầu trang gửi tới /search
+		mvc.perform(get("/search").param("keyword", " "))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("Dế mèn phiêu lưu ký")));
+		mvc.perform(get("/search").param("keyword", ""))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("Tắt đèn")));
+	}
+
+	private Book newBook(String title) {
+		Book b = new Book();
+		b.setTitle(title);
+		b.setPrice(BigDecimal.valueOf(50_000));
+		b.setStock(3);
+		return bookService.saveBook(b);
+	}
+}
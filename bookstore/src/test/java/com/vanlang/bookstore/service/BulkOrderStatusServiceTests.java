@@ -0,0 +1,166 @@
+package com.vanlang.bookstore.service;
+
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.model.Order;
+import com.vanlang.bookstore.model.OrderItem;
+import com.vanlang.bookstore.repository.BookRepository;
+import com.vanlang.bookstore.repository.OrderRepository;
+import com.vanlang.bookstore.support.SqlStatementCounter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Chuyển trạng thái hàng loạt: kho được cộng / trừ gộp theo sách, total tính lại đúng,
+ * đơn thiếu hàng khi khôi phục chỉ làm hỏng chính nó, không làm hỏng cả lô;
+ * huỷ / khôi phục 1 đơn nhiều dòng tốn số câu SQL cố định.
+ */
+@SpringBootTest(properties = "bookstore.page-cache.enabled=false")
+@ActiveProfiles("h2")
+class BulkOrderStatusServiceTests {
+
+	private static final int ORDERS = 1_200;
+
+	@Autowired OrderService orderService;
+	@Autowired OrderRepository orderRepository;
+	@Autowired BookRepository bookRepository;
+
+	@Test
+	void cancelsAndRestoresInChunks() throws Exception {
+		Long a = newBook(10_000);
+		Long b = newBook(10_000);
+		List<Long> ids = newOrders(a, b);
+		BulkOrderStatusService bulk = new BulkOrderStatusService(500, 4, orderService);
+
+		var shipped = await(bulk, bulk.start(ids, "SHIPPED").id());
+		assertThat(shipped.updated()).isEqualTo(ORDERS);
+
+		// 1 lô 500 đơn tốn số câu SQL như 1 đơn, không tăng theo số đơn
+		SqlStatementCounter.reset();
+		assertThat(orderService.updateStatuses(ids.subList(0, 500), "DONE")).isEqualTo(500);
+		assertThat(SqlStatementCounter.count()).isLessThanOrEqualTo(4);
+
+		var canceled = await(bulk, bulk.start(ids, "CANCELED").id());
+		assertThat(canceled.updated()).isEqualTo(ORDERS);
+		assertThat(canceled.processed()).isEqualTo(ORDERS);
+		assertThat(canceled.failed()).isZero();
+		assertThat(stock(a)).isEqualTo(10_000 + ORDERS);
+		assertThat(stock(b)).isEqualTo(10_000 + 2 * ORDERS);
+		assertThat(orderRepository.findById(ids.get(0)).orElseThrow().getTotal()).isZero();
+
+		// chỉ còn đủ sách b cho 5 đơn (mỗi đơn 2 cuốn)
+		Book book = bookRepository.findById(b).orElseThrow();
+		book.setStock(10);
+		bookRepository.save(book);
+
+		var restored = await(bulk, bulk.start(ids, "PAID").id());
+		assertThat(restored.updated()).isEqualTo(5);
+		assertThat(restored.failed()).isEqualTo(ORDERS - 5);
+		assertThat(restored.errors()).isNotEmpty();
+		assertThat(stock(b)).isZero();
+		assertThat(stock(a)).isEqualTo(10_000 + ORDERS - 5);
+
+		Order first = orderRepository.findById(ids.get(0)).orElseThrow();
+		assertThat(first.getStatus()).isEqualTo("PAID");
+		assertThat(first.getTotal()).isEqualTo(100_000L + 2 * 50_000L);
+	}
+
+	@Test
+	void singleOrderTransitionIsConstantRoundTrips() {
+		List<Book> books = new ArrayList<>();
+		Order o = newOrder();
+		for (int i = 0; i < 50; i++) {
+			Book book = bookRepository.getReferenceById(newBook(10));
+			books.add(book);
+			o.addItem(item(book, 2, 1_000L));
+		}
+		Long id = orderRepository.save(o).getId();
+
+		SqlStatementCounter.reset();
+		orderService.updateStatus(id, "CANCELED");
+		assertThat(SqlStatementCounter.count()).isLessThanOrEqualTo(4);
+		assertThat(stock(books.get(49).getId())).isEqualTo(12);
+
+		SqlStatementCounter.reset();
+		orderService.updateStatus(id, "PLACED");
+		assertThat(SqlStatementCounter.count()).isLessThanOrEqualTo(4);
+		assertThat(stock(books.get(0).getId())).isEqualTo(10);
+		assertThat(orderRepository.findById(id).orElseThrow().getTotal()).isEqualTo(50 * 2 * 1_000L);
+
+		// thiếu hàng khi khôi phục: không đổi gì cả
+		orderService.updateStatus(id, "CANCELED");
+		Book short0 = bookRepository.findById(books.get(0).getId()).orElseThrow();
+		short0.setStock(1);
+		bookRepository.save(short0);
+		assertThatThrownBy(() -> orderService.updateStatus(id, "PAID"))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining(short0.getTitle());
+		assertThat(orderRepository.findById(id).orElseThrow().getStatus()).isEqualTo("CANCELED");
+		assertThat(stock(books.get(1).getId())).isEqualTo(12);
+	}
+
+	// ===== helpers =====
+
+	private static BulkOrderStatusService.Progress await(BulkOrderStatusService bulk, String jobId) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 120_000;
+		while (System.currentTimeMillis() < deadline) {
+			var p = bulk.progress(jobId).orElseThrow();
+			if (p.finished()) return p;
+			Thread.sleep(20);
+		}
+		throw new AssertionError("bulk job not finished: " + jobId);
+	}
+
+	private List<Long> newOrders(Long a, Long b) {
+		Book bookA = bookRepository.getReferenceById(a);
+		Book bookB = bookRepository.getReferenceById(b);
+		List<Order> orders = new ArrayList<>();
+		for (int i = 0; i < ORDERS; i++) {
+			Order o = newOrder();
+			o.setTotal(200_000L);
+			o.addItem(item(bookA, 1, 100_000L));
+			o.addItem(item(bookB, 2, 50_000L));
+			orders.add(o);
+		}
+		return orderRepository.saveAll(orders).stream().map(Order::getId).toList();
+	}
+
+	private static Order newOrder() {
+		Order o = new Order();
+		o.setOrderNumber("B-" + UUID.randomUUID());
+		o.setCustomerName("Khách hàng loạt");
+		o.setCustomerPhone("0900000000");
+		o.setShippingAddress("Hà Nội");
+		o.setStatus("PLACED");
+		return o;
+	}
+
+	private static OrderItem item(Book book, int quantity, long price) {
+		OrderItem it = new OrderItem();
+		it.setBook(book);
+		it.setQuantity(quantity);
+		it.setPrice(price);
+		return it;
+	}
+
+	private Long newBook(int stock) {
+		Book b = new Book();
+		b.setTitle("Sách giao hàng loạt");
+		b.setPrice(new BigDecimal("100000"));
+		b.setStock(stock);
+		return bookRepository.save(b).getId();
+	}
+
+	private int stock(Long id) {
+		return bookRepository.findById(id).orElseThrow().getStock();
+	}
+}
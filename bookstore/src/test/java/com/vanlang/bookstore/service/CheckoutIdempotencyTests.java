@@ -0,0 +1,110 @@
+package com.vanlang.bookstore.service;
+
+import com.vanlang.bookstore.model.Order;
+import com.vanlang.bookstore.repository.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CheckoutIdempotencyTests {
+
+	private static final String USER = "an@example.com";
+
+	private final OrderRepository orderRepository = mock(OrderRepository.class);
+	private final CheckoutIdempotency idempotency = new CheckoutIdempotency(30, 100, 10, orderRepository);
+
+	{
+		when(orderRepository.findByIdempotencyKeyForUser(anyString(), anyString())).thenReturn(Optional.empty());
+	}
+
+	@Test
+	void concurrentAndLaterDuplicatesGetTheSameOrder() throws Exception {
+		String key = idempotency.newKey();
+		AtomicInteger placed = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		List<Future<Order>> results = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			results.add(pool.submit(() -> {
+				start.await();
+				return idempotency.submit(USER, key, k -> {
+					placed.incrementAndGet();
+					sleep(200); // lần gửi đầu còn đang chạy khi các lần sau tới
+					return order(1L, k);
+				});
+			}));
+		}
+		start.countDown();
+		for (Future<Order> f : results) assertThat(f.get(5, TimeUnit.SECONDS).getId()).isEqualTo(1L);
+		pool.shutdown();
+
+		Order again = idempotency.submit(USER, key, k -> order(placed.incrementAndGet(), k));
+		assertThat(again.getId()).isEqualTo(1L);
+		assertThat(placed.get()).isEqualTo(1);
+	}
+
+	@Test
+	void failedSubmitCanBeRetried() {
+		String key = idempotency.newKey();
+		assertThatThrownBy(() -> idempotency.submit(USER, key, k -> {
+			throw new IllegalStateException("Không đủ hàng");
+		})).hasMessage("Không đủ hàng");
+
+		assertThat(idempotency.submit(USER, key, k -> order(2L, k)).getId()).isEqualTo(2L);
+	}
+
+	@Test
+	void databaseConstraintCatchesKeysTheCacheForgot() {
+		String key = UUID.randomUUID().toString();
+		Order existing = order(3L, key);
+		when(orderRepository.findByIdempotencyKeyForUser(key, USER)).thenReturn(Optional.empty(), Optional.of(existing));
+
+		Order result = idempotency.submit(USER, key, k -> {
+			throw new DataIntegrityViolationException("uk_orders_idempotency_key");
+		});
+		assertThat(result).isSameAs(existing);
+	}
+
+	@Test
+	void keyOfAnotherUserDoesNotReturnTheirOrder() {
+		String key = idempotency.newKey();
+		assertThat(idempotency.submit(USER, key, k -> order(4L, k)).getId()).isEqualTo(4L);
+
+		// DB đã có đơn với key này nhưng của người khác: không lấy ra, lỗi trùng key giữ nguyên
+		DataIntegrityViolationException duplicate = new DataIntegrityViolationException("uk_orders_idempotency_key");
+		assertThatThrownBy(() -> idempotency.submit("other@example.com", key, k -> {
+			throw duplicate;
+		})).isSameAs(duplicate);
+	}
+
+	private static Order order(long id, String key) {
+		Order o = new Order();
+		o.setId(id);
+		o.setIdempotencyKey(key);
+		return o;
+	}
+
+	private static void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
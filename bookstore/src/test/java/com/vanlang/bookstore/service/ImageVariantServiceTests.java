@@ -0,0 +1,99 @@
+package com.vanlang.bookstore.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Biến thể ảnh: đủ các cỡ, srcset / pick đúng, tìm lại trên đĩa sau restart,
+ * chỉ tin tên có hash nội dung và không nhớ mãi kết quả "chưa có".
+ */
+class ImageVariantServiceTests {
+
+	private static final String COVER = "/uploads/books/12-0123456789abcdef.png";
+
+	@TempDir Path root;
+
+	private final List<ImageVariantService> services = new ArrayList<>();
+
+	@AfterEach
+	void shutdown() {
+		services.forEach(ImageVariantService::shutdown);
+	}
+
+	@Test
+	void generatesEveryWidthAndBuildsSrcset() throws Exception {
+		writeImage(COVER, 1000, 1500);
+		ImageVariantService service = service(Duration.ofSeconds(30));
+
+		service.submit(COVER, ImageVariantService.Kind.BOOK).get(10, TimeUnit.SECONDS);
+
+		String base = "/uploads/books/12-0123456789abcdef";
+		assertThat(service.srcset(COVER))
+				.isEqualTo(base + "-160.jpg 160w, " + base + "-320.jpg 320w, " + base + "-640.jpg 640w");
+		assertThat(service.pick(COVER, 200)).isEqualTo(base + "-320.jpg");
+		assertThat(service.pick(COVER, 2000)).isEqualTo(COVER);
+
+		BufferedImage detail = ImageIO.read(file(base + "-640.jpg").toFile());
+		assertThat(detail.getWidth()).isEqualTo(640);
+		assertThat(detail.getHeight()).isEqualTo(960);
+	}
+
+	@Test
+	void rediscoversHashedVariantsButIgnoresLegacyNames() throws Exception {
+		writeImage(COVER, 400, 600);
+		service(Duration.ofSeconds(30)).submit(COVER, ImageVariantService.Kind.BOOK).get(10, TimeUnit.SECONDS);
+
+		// ảnh cũ không hash: 7-320.jpg có thể là của ảnh trước -> không dùng
+		writeImage("/uploads/books/7.png", 400, 600);
+		writeImage("/uploads/books/7-320.jpg", 320, 480);
+
+		ImageVariantService restarted = service(Duration.ofSeconds(30));
+		assertThat(restarted.srcset(COVER)).contains("-160.jpg 160w", "-320.jpg 320w", "-640.jpg 640w");
+		assertThat(restarted.srcset("/uploads/books/7.png")).isNull();
+		assertThat(restarted.pick("/uploads/books/7.png", 320)).isEqualTo("/uploads/books/7.png");
+	}
+
+	@Test
+	void missingVariantsAreRecheckedAndGenerationWins() throws Exception {
+		writeImage(COVER, 800, 1200);
+		ImageVariantService service = service(Duration.ZERO);
+		assertThat(service.srcset(COVER)).isNull();
+
+		// node khác (hoặc lần chạy trước bị ngắt) mới ghi được 1 cỡ
+		writeImage("/uploads/books/12-0123456789abcdef-160.jpg", 160, 240);
+		assertThat(service.srcset(COVER)).isEqualTo("/uploads/books/12-0123456789abcdef-160.jpg 160w");
+
+		// sinh xong thì có đủ cỡ, kể cả khi vừa có bản quét dở trong registry
+		service.submit(COVER, ImageVariantService.Kind.BOOK).get(10, TimeUnit.SECONDS);
+		assertThat(service.srcset(COVER)).contains("160w", "320w", "640w");
+	}
+
+	private ImageVariantService service(Duration negativeTtl) {
+		ImageVariantService s = new ImageVariantService(root, negativeTtl);
+		services.add(s);
+		return s;
+	}
+
+	private void writeImage(String url, int width, int height) throws Exception {
+		Path p = file(url);
+		Files.createDirectories(p.getParent());
+		String format = url.endsWith(".jpg") ? "jpeg" : "png";
+		ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, p.toFile());
+	}
+
+	private Path file(String url) {
+		return root.resolve(url.substring("/uploads/".length()));
+	}
+}
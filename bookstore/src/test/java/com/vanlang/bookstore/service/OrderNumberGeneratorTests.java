@@ -0,0 +1,109 @@
+package com.vanlang.bookstore.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderNumberGeneratorTests {
+
+	// đồng hồ đứng yên: ép toàn bộ mã rơi vào cùng 1 giây -> kiểm tra cả nhánh "mượn giây"
+	private static final Clock FROZEN = Clock.fixed(Instant.parse("2026-10-18T16:59:59Z"), ZoneOffset.UTC);
+
+	@Test
+	void formatAndChecksum() {
+		OrderNumberGenerator gen = new OrderNumberGenerator(7, ZoneOffset.ofHours(7), FROZEN);
+		String n = gen.next();
+
+		assertThat(n).matches("ORD-20261018-[0-9A-Z]{9}"); // 23:59:59 giờ VN
+		assertThat(OrderNumberGenerator.isValid(n)).isTrue();
+
+		// đổi bất kỳ 1 ký tự nào sau tiền tố -> checksum báo sai
+		for (int i = 4; i < n.length(); i++) {
+			if (n.charAt(i) == '-') continue;
+			char c = n.charAt(i) == '1' ? '2' : '1';
+			String typo = n.substring(0, i) + c + n.substring(i + 1);
+			assertThat(OrderNumberGenerator.isValid(typo)).as(typo).isFalse();
+		}
+		assertThat(OrderNumberGenerator.isValid("ORD-20261018-ABCDE")).isFalse(); // định dạng cũ
+	}
+
+	@Test
+	void uniqueAcrossThreadsAndNodes() throws Exception {
+		int nodes = 3, threadsPerNode = 8, perThread = 5_000; // 40.000 mã / node >> 4096 / giây
+		Set<String> seen = ConcurrentHashMap.newKeySet();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(nodes * threadsPerNode);
+		List<Future<?>> futures = new ArrayList<>();
+
+		for (int node = 0; node < nodes; node++) {
+			OrderNumberGenerator gen = new OrderNumberGenerator(node, ZoneOffset.ofHours(7), FROZEN);
+			for (int t = 0; t < threadsPerNode; t++) {
+				futures.add(pool.submit(() -> {
+					start.await();
+					for (int i = 0; i < perThread; i++) {
+						assertThat(seen.add(gen.next())).isTrue();
+					}
+					return null;
+				}));
+			}
+		}
+		start.countDown();
+		for (Future<?> f : futures) f.get(1, TimeUnit.MINUTES);
+		pool.shutdown();
+
+		assertThat(seen).hasSize(nodes * threadsPerNode * perThread);
+		// mượn sang giây sau nửa đêm -> sang ngày mới, vẫn hợp lệ
+		assertThat(seen).anyMatch(s -> s.startsWith("ORD-20261019-"));
+		assertThat(seen).allMatch(OrderNumberGenerator::isValid);
+	}
+
+	/** Trong 1 node mã luôn tăng (kể cả khi "mượn giây"), theo thứ tự từng thread nhận được */
+	@Test
+	void increasingWithinANode() throws Exception {
+		OrderNumberGenerator gen = new OrderNumberGenerator(1, ZoneOffset.ofHours(7), FROZEN);
+		int threads = 8, perThread = 20_000;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<List<String>>> futures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			futures.add(pool.submit(() -> {
+				start.await();
+				List<String> mine = new ArrayList<>(perThread);
+				for (int i = 0; i < perThread; i++) mine.add(gen.next());
+				return mine;
+			}));
+		}
+		start.countDown();
+		List<String> all = new ArrayList<>();
+		for (Future<List<String>> f : futures) {
+			List<String> mine = f.get(1, TimeUnit.MINUTES);
+			// bảng chữ Crockford xếp theo ASCII -> so chuỗi (bỏ ký tự kiểm tra) = so số
+			for (int i = 1; i < mine.size(); i++) {
+				assertThat(body(mine.get(i))).isGreaterThan(body(mine.get(i - 1)));
+			}
+			all.addAll(mine);
+		}
+		pool.shutdown();
+
+		assertThat(all).doesNotHaveDuplicates().hasSize(threads * perThread);
+		String last = all.stream().map(OrderNumberGeneratorTests::body).max(String::compareTo).orElseThrow();
+		assertThat(body(gen.next())).isGreaterThan(last);
+	}
+
+	private static String body(String orderNumber) {
+		return orderNumber.substring(0, orderNumber.length() - 1);
+	}
+}
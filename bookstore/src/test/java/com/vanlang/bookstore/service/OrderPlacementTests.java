@@ -0,0 +1,85 @@
+package com.vanlang.bookstore.service;
+
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.model.Order;
+import com.vanlang.bookstore.repository.BookRepository;
+import com.vanlang.bookstore.repository.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Mã đơn trùng (node id trùng giữa các node): đơn rollback rồi đặt lại 1 lần với mã mới,
+ * kho chỉ bị trừ 1 lần và giỏ chỉ mất các món khi đơn đã commit.
+ */
+@SpringBootTest(properties = "bookstore.page-cache.enabled=false")
+@ActiveProfiles("h2")
+class OrderPlacementTests {
+
+	@Autowired OrderService orderService;
+	@Autowired CartService cartService;
+	@Autowired BookRepository bookRepository;
+	@Autowired OrderRepository orderRepository;
+	@MockitoSpyBean OrderNumberGenerator orderNumberGenerator;
+
+	@AfterEach
+	void logout() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void duplicateOrderNumberIsRetriedOnceWithAFreshNumber() {
+		Book book = newBook();
+		login("placement-first");
+		cartService.addItem(book, 1);
+		Order first = orderService.placeOrder("placement-first", form(), List.of(book.getId()));
+
+		login("placement-second");
+		cartService.addItem(book, 2);
+		doReturn(first.getOrderNumber()).doCallRealMethod().when(orderNumberGenerator).next();
+
+		Order second = orderService.placeOrder("placement-second", form(), List.of(book.getId()));
+
+		assertThat(second.getOrderNumber()).isNotEqualTo(first.getOrderNumber());
+		assertThat(OrderNumberGenerator.isValid(second.getOrderNumber())).isTrue();
+		assertThat(orderRepository.findByOrderNumber(second.getOrderNumber())).isPresent();
+		verify(orderNumberGenerator, times(3)).next();
+		assertThat(bookRepository.findById(book.getId()).orElseThrow().getStock()).isEqualTo(10 - 1 - 2);
+		assertThat(cartService.getItems()).isEmpty();
+	}
+
+	private Book newBook() {
+		Book b = new Book();
+		b.setTitle("Sách đặt đơn");
+		b.setPrice(BigDecimal.valueOf(30_000));
+		b.setStock(10);
+		return bookRepository.save(b);
+	}
+
+	private static void login(String username) {
+		SecurityContextHolder.getContext().setAuthentication(UsernamePasswordAuthenticationToken.authenticated(
+				username, "x", AuthorityUtils.createAuthorityList("ROLE_USER")));
+	}
+
+	private static Order form() {
+		Order f = new Order();
+		f.setCustomerName("Khách đặt đơn");
+		f.setCustomerPhone("0900000000");
+		f.setShippingAddress("1 Lê Lợi");
+		return f;
+	}
+}
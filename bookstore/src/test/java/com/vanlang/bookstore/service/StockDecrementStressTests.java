@@ -0,0 +1,155 @@
+package com.vanlang.bookstore.service;
+
+import com.vanlang.bookstore.cache.CatalogCache;
+import com.vanlang.bookstore.dto.BookCard;
+import com.vanlang.bookstore.model.Book;
+import com.vanlang.bookstore.repository.BookRepository;
+import com.vanlang.bookstore.support.SqlStatementCounter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Nhiều thread cùng mua 1 cuốn "hot": không bao giờ bán quá tồn kho,
+ * và đơn thất bại không trừ cuốn còn lại trong cùng đơn (all-or-nothing).
+ * Bán hàng không xoá cache kệ sách, chỉ đổi version tồn kho của cuốn được bán.
+ * DB riêng + pool nhiều connection để các UPDATE thật sự tranh nhau khoá dòng.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:stock-stress;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=20000",
+		"spring.datasource.hikari.maximum-pool-size=16",
+		"spring.datasource.hikari.connection-timeout=60000",
+		"bookstore.page-cache.enabled=false"
+})
+@ActiveProfiles("h2")
+class StockDecrementStressTests {
+
+	private static final int HOT_STOCK = 100;
+	private static final int OTHER_STOCK = 100_000;
+	private static final int THREADS = 32;
+	private static final int ORDERS_PER_THREAD = 25;
+
+	@Autowired BookService bookService;
+	@Autowired BookRepository bookRepository;
+	@Autowired CatalogCache catalogCache;
+
+	@Test
+	void noOversellUnderContention() throws Exception {
+		Long hot = newBook("Sách hot", HOT_STOCK);
+		Long other = newBook("Sách kèm", OTHER_STOCK);
+
+		AtomicInteger hotSold = new AtomicInteger();
+		AtomicInteger okOrders = new AtomicInteger();
+		AtomicInteger rejected = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> futures = new ArrayList<>();
+
+		for (int t = 0; t < THREADS; t++) {
+			int qty = 1 + (t % 3);
+			futures.add(pool.submit(() -> {
+				start.await();
+				for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+					try {
+						bookService.decrementStock(Map.of(other, 1, hot, qty));
+						hotSold.addAndGet(qty);
+						okOrders.incrementAndGet();
+					} catch (IllegalStateException e) {
+						rejected.incrementAndGet();
+					}
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> f : futures) f.get(2, TimeUnit.MINUTES); // lỗi khác (deadlock, timeout) làm test fail
+		pool.shutdown();
+
+		int hotLeft = bookRepository.findById(hot).orElseThrow().getStock();
+		int otherLeft = bookRepository.findById(other).orElseThrow().getStock();
+
+		assertThat(hotLeft).isGreaterThanOrEqualTo(0);
+		assertThat(hotSold.get()).isLessThanOrEqualTo(HOT_STOCK);
+		assertThat(hotLeft).isEqualTo(HOT_STOCK - hotSold.get());
+		// cầu (32 x 25 đơn) vượt xa tồn kho -> hết hàng, chỉ còn lẻ ít hơn 1 đơn lớn nhất
+		assertThat(hotLeft).isLessThan(3);
+		assertThat(rejected.get()).isPositive();
+		// đơn bị từ chối không được trừ cuốn kèm theo
+		assertThat(otherLeft).isEqualTo(OTHER_STOCK - okOrders.get());
+	}
+
+	@Test
+	void failedOrderRollsBackEveryLine() {
+		Long a = newBook("Đủ hàng", 5);
+		Long b = newBook("Thiếu hàng", 1);
+
+		assertThatThrownBy(() -> bookService.decrementStock(Map.of(a, 2, b, 2)))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("Thiếu hàng")
+				.hasMessageNotContaining("Đủ hàng");
+
+		assertThat(bookRepository.findById(a).orElseThrow().getStock()).isEqualTo(5);
+		assertThat(bookRepository.findById(b).orElseThrow().getStock()).isEqualTo(1);
+	}
+
+	@Test
+	void shortageMessageUsesStockBeforeThePartialUpdate() {
+		// a được trừ (4 >= 2 + 1 đang giữ) còn 2: nhìn tồn kho sau câu UPDATE thì giống dòng thiếu hàng
+		Long a = newBook("Vừa đủ khi giữ", 4);
+		Long b = newBook("Không đủ cho đơn", 1);
+
+		assertThatThrownBy(() -> bookService.decrementStock(Map.of(a, 2, b, 2), Map.of(a, 1)))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("Không đủ cho đơn")
+				.hasMessageNotContaining("Vừa đủ khi giữ");
+
+		assertThat(bookRepository.findById(a).orElseThrow().getStock()).isEqualTo(4);
+	}
+
+	@Test
+	void saleKeepsShelvesAndBumpsOnlyTheSoldBooks() {
+		Long a = newBook("Bán 1 cuốn", 5);
+		Long last = newBook("Cuốn cuối cùng", 1);
+		bookService.getFeaturedBooks();
+		assertThat(bookService.getLatestBooks(1000)).extracting(BookCard::id).contains(a, last);
+		long catalog = catalogCache.version();
+		long lastStock = catalogCache.stockVersion(last);
+
+		bookService.decrementStock(Map.of(a, 1));
+		assertThat(catalogCache.version()).isEqualTo(catalog);
+		assertThat(catalogCache.stockVersion(a)).isPositive();
+		assertThat(catalogCache.stockVersion(last)).isEqualTo(lastStock);
+		SqlStatementCounter.reset();
+		bookService.getFeaturedBooks();
+		assertThat(SqlStatementCounter.count()).as("kệ nổi bật vẫn trong cache").isZero();
+
+		// bán hết -> rời kệ "còn hàng"
+		bookService.decrementStock(Map.of(last, 1));
+		assertThat(bookService.getLatestBooks(1000)).extracting(BookCard::id).contains(a).doesNotContain(last);
+		bookService.restock(Map.of(last, 1));
+		assertThat(bookService.getLatestBooks(1000)).extracting(BookCard::id).contains(last);
+	}
+
+	private Long newBook(String title, int stock) {
+		Book b = new Book();
+		b.setTitle(title);
+		b.setPrice(BigDecimal.valueOf(30_000));
+		b.setStock(stock);
+		return bookService.saveBook(b).getId();
+	}
+}
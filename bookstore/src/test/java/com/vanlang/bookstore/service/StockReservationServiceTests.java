@@ -0,0 +1,70 @@
+package com.vanlang.bookstore.service;
+
+import com.vanlang.bookstore.cache.CatalogCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockReservationServiceTests {
+
+	private final CatalogCache catalogCache = new CatalogCache(300, 64, 100);
+	private StockReservationService reservations;
+
+	@AfterEach
+	void stop() {
+		if (reservations != null) reservations.stop();
+	}
+
+	private StockReservationService start(long ttlSeconds) {
+		reservations = new StockReservationService(ttlSeconds, catalogCache);
+		reservations.start();
+		return reservations;
+	}
+
+	@Test
+	void holdsReduceAvailabilityForOthers() {
+		StockReservationService r = start(600);
+		long catalog = catalogCache.version();
+		long before = catalogCache.stockVersion(1L);
+
+		assertThat(r.reserve("alice", Map.of(1L, 3), Map.of(1L, 5))).isEmpty();
+		assertThat(r.available(1L, 5)).isEqualTo(2);
+		// trang chi tiết cuốn này phải render lại, các trang khác giữ cache
+		assertThat(catalogCache.stockVersion(1L)).isGreaterThan(before);
+		assertThat(catalogCache.stockVersion(2L)).isZero();
+		assertThat(catalogCache.version()).isEqualTo(catalog);
+
+		// bob chỉ còn 2 cuốn để giữ
+		assertThat(r.reserve("bob", Map.of(1L, 3), Map.of(1L, 5))).containsExactly(1L);
+		assertThat(r.reserve("bob", Map.of(1L, 2), Map.of(1L, 5))).isEmpty();
+		assertThat(r.heldByOthers("alice", List.of(1L))).containsEntry(1L, 2);
+
+		// alice mở lại checkout với số lượng khác: thay lần giữ cũ, không cộng dồn
+		assertThat(r.reserve("alice", Map.of(1L, 1), Map.of(1L, 5))).isEmpty();
+		assertThat(r.heldCount(1L)).isEqualTo(3);
+
+		long held = catalogCache.stockVersion(1L);
+		r.release("alice");
+		r.release("bob");
+		assertThat(r.heldCount(1L)).isZero();
+		assertThat(catalogCache.stockVersion(1L)).isGreaterThan(held);
+	}
+
+	@Test
+	void expiredHoldsAreReclaimed() throws Exception {
+		StockReservationService r = start(1);
+		r.reserve("alice", Map.of(7L, 4), Map.of(7L, 4));
+		assertThat(r.available(7L, 4)).isZero();
+
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (r.heldCount(7L) > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertThat(r.heldCount(7L)).isZero();
+		assertThat(r.find("alice")).isEmpty();
+	}
+}
@@ -0,0 +1,30 @@
+package com.vanlang.bookstore.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Đếm số câu SQL Hibernate chuẩn bị (đăng ký qua hibernate.session_factory.statement_inspector).
+ * Chỉ đếm trên thread đã gọi reset() (thread của test / MockMvc), bỏ qua job nền như outbox poller.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+	private static final AtomicInteger COUNT = new AtomicInteger();
+	private static volatile Thread owner;
+
+	@Override
+	public String inspect(String sql) {
+		if (Thread.currentThread() == owner) COUNT.incrementAndGet();
+		return sql;
+	}
+
+	public static void reset() {
+		owner = Thread.currentThread();
+		COUNT.set(0);
+	}
+
+	public static int count() {
+		return COUNT.get();
+	}
+}